@@ -1,8 +1,16 @@
 package com.tradeexchange.api;
 
+import com.tradeexchange.api.dto.UserRow;
+import com.tradeexchange.common.DatabaseMaintenance;
+import com.tradeexchange.common.ListingTags;
+import com.tradeexchange.common.SessionResolver;
+import com.tradeexchange.common.json.JsonRowStreamer;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.*;
 
@@ -10,32 +18,44 @@ import java.util.*;
 @RequestMapping("/api/admin")
 public class AdminController {
   private final JdbcTemplate jdbc;
-  public AdminController(JdbcTemplate jdbc){ this.jdbc = jdbc; }
+  private final SessionResolver sessions;
+  private final ListingTags listingTags;
+  private final TransactionTemplate tx;
+  private final CatalogFacets facets;
+  private final ProviderLocations locations;
+  private final ProviderDetailCache detailCache;
+  private final ProviderReviews reviews;
+  private final Backups backups;
+  private final DatabaseMaintenance maintenance;
+  private final OrderRollups orderRollups;
+  private final JsonRowStreamer rows;
+  private final Bookings bookings;
+  public AdminController(JdbcTemplate jdbc, JsonRowStreamer rows, SessionResolver sessions, ListingTags listingTags, TransactionTemplate tx, CatalogFacets facets, ProviderLocations locations, ProviderDetailCache detailCache, ProviderReviews reviews, Backups backups, DatabaseMaintenance maintenance, OrderRollups orderRollups, Bookings bookings){
+    this.jdbc = jdbc;
+    this.rows = rows;
+    this.sessions = sessions;
+    this.listingTags = listingTags;
+    this.tx = tx;
+    this.facets = facets;
+    this.locations = locations;
+    this.detailCache = detailCache;
+    this.reviews = reviews;
+    this.backups = backups;
+    this.maintenance = maintenance;
+    this.orderRollups = orderRollups;
+    this.bookings = bookings;
+  }
 
+  // Streamed row by row; GET /export/users is the NDJSON/CSV download
   @GetMapping("/users")
-  public ResponseEntity<?> users(){
-    try{
-      var rows = jdbc.query("SELECT id,name,email,role,providerPlayerId FROM users", rs -> {
-        java.util.List<java.util.Map<String,Object>> out = new java.util.ArrayList<>();
-        while (rs.next()){
-          java.util.Map<String,Object> m = new java.util.LinkedHashMap<>();
-          m.put("id", rs.getString(1));
-          m.put("name", rs.getString(2));
-          m.put("email", rs.getString(3));
-          m.put("role", rs.getString(4));
-          m.put("providerId", rs.getString(5));
-          out.add(m);
-        }
-        return out;
-      });
-      return ResponseEntity.ok(rows);
-    }catch(Exception e){ return ResponseEntity.ok(java.util.List.of()); }
+  public ResponseEntity<StreamingResponseBody> users(){
+    return rows.array("SELECT " + UserRow.COLUMNS + " FROM users", ps -> {}, UserRow.MAPPER);
   }
 
   @DeleteMapping("/users/{id}")
   public ResponseEntity<?> deleteUser(@PathVariable String id){
     try{
-      jdbc.update("DELETE FROM sessions WHERE userId=?", id);
+      sessions.closeAll(id);
       jdbc.update("DELETE FROM users WHERE id=?", id);
       return ResponseEntity.ok(java.util.Map.of("ok", true));
     }catch(Exception e){ return ResponseEntity.status(500).body(java.util.Map.of("error","Failed")); }
@@ -44,12 +64,25 @@ public class AdminController {
   @DeleteMapping("/providers/{id}")
   public ResponseEntity<?> deleteProvider(@PathVariable String id){
     try{
-      jdbc.update("DELETE FROM listings WHERE providerId=?", id);
-      jdbc.update("DELETE FROM provider_reviews WHERE providerId=?", id);
-      jdbc.update("DELETE FROM orders WHERE providerId=?", id);
+      tx.executeWithoutResult(status -> {
+        listingTags.removeProvider(id);
+        jdbc.update("DELETE FROM listings WHERE providerId=?", id);
+      });
+      tx.executeWithoutResult(status -> {
+        jdbc.update("DELETE FROM provider_reviews WHERE providerId=?", id);
+        reviews.remove(id);
+      });
+      tx.executeWithoutResult(status -> {
+        orderRollups.removeHot(id);
+        jdbc.update("DELETE FROM orders WHERE providerId=?", id);
+      });
+      bookings.removeProvider(id);
       jdbc.update("DELETE FROM players WHERE id=?", id);
       // Optionally unlink users.providerPlayerId
       jdbc.update("UPDATE users SET providerPlayerId=NULL WHERE providerPlayerId=?", id);
+      facets.removeProvider(id);
+      locations.remove(id);
+      detailCache.invalidate(id);
       return ResponseEntity.ok(java.util.Map.of("ok", true));
     }catch(Exception e){ return ResponseEntity.status(500).body(java.util.Map.of("error","Failed")); }
   }
@@ -57,9 +90,86 @@ public class AdminController {
   @DeleteMapping("/listings/{id}")
   public ResponseEntity<?> deleteListing(@PathVariable String id){
     try{
-      jdbc.update("DELETE FROM listings WHERE id=?", id);
+      String providerId = jdbc.query("SELECT providerId FROM listings WHERE id=?", ps -> ps.setString(1, id), rs -> rs.next() ? rs.getString(1) : null);
+      tx.executeWithoutResult(status -> {
+        listingTags.remove(id);
+        jdbc.update("DELETE FROM listings WHERE id=?", id);
+      });
+      facets.removeListing(id);
+      detailCache.invalidate(providerId);
       return ResponseEntity.ok(java.util.Map.of("ok", true));
     }catch(Exception e){ return ResponseEntity.status(500).body(java.util.Map.of("error","Failed")); }
   }
+
+  @GetMapping("/cache")
+  public ResponseEntity<?> cacheStats(@RequestHeader(value = "Authorization", required = false) String authz){
+    if (!isAdmin(authz)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Forbidden"));
+    return ResponseEntity.ok(java.util.Map.of("providers", detailCache.stats()));
+  }
+
+  // Starts an online snapshot in the background; poll GET /backups for its manifest
+  @PostMapping("/backups")
+  public ResponseEntity<?> startBackup(@RequestHeader(value = "Authorization", required = false) String authz){
+    if (!isAdmin(authz)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Forbidden"));
+    Optional<String> id = backups.start();
+    if (id.isEmpty()) return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Backup already running", "id", backups.inProgress().orElse("")));
+    return ResponseEntity.accepted().body(Map.of("ok", true, "id", id.get()));
+  }
+
+  @GetMapping("/backups")
+  public ResponseEntity<?> listBackups(@RequestHeader(value = "Authorization", required = false) String authz){
+    if (!isAdmin(authz)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Forbidden"));
+    Map<String,Object> body = new LinkedHashMap<>();
+    body.put("running", backups.inProgress().orElse(null));
+    body.put("snapshots", backups.list());
+    return ResponseEntity.ok(body);
+  }
+
+  // Checkpoint, optimize and vacuum timings plus reclaimed space per database file
+  @GetMapping("/maintenance")
+  public ResponseEntity<?> maintenanceStats(@RequestHeader(value = "Authorization", required = false) String authz){
+    if (!isAdmin(authz)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Forbidden"));
+    return ResponseEntity.ok(maintenance.stats());
+  }
+
+  // Order counts, amounts and completion/refund rates for a date range, answered from order_rollups
+  @GetMapping("/reports/orders")
+  public ResponseEntity<?> orderReport(@RequestHeader(value = "Authorization", required = false) String authz,
+                                       @RequestParam(value = "from", required = false) String from,
+                                       @RequestParam(value = "to", required = false) String to,
+                                       @RequestParam(value = "groupBy", required = false, defaultValue = "day") String groupBy,
+                                       @RequestParam(value = "providerId", required = false) String providerId){
+    if (!isAdmin(authz)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Forbidden"));
+    OrderRollups.GroupBy group;
+    java.time.LocalDate start, end;
+    try{
+      group = OrderRollups.GroupBy.valueOf(groupBy.trim().toUpperCase(Locale.ROOT));
+      end = to == null || to.isBlank() ? java.time.LocalDate.now(java.time.ZoneOffset.UTC) : java.time.LocalDate.parse(to.trim());
+      start = from == null || from.isBlank() ? end.minusDays(29) : java.time.LocalDate.parse(from.trim());
+    }catch(Exception e){ return ResponseEntity.badRequest().body(Map.of("error", "Expected from/to as yyyy-MM-dd and groupBy day, provider or status")); }
+    if (start.isAfter(end)) return ResponseEntity.badRequest().body(Map.of("error", "from is after to"));
+
+    String provider = providerId == null || providerId.isBlank() ? null : providerId.trim();
+    List<OrderRollups.Bucket> buckets = orderRollups.query(start.toString(), end.toString(), group, provider);
+    Map<String,Object> body = new LinkedHashMap<>();
+    body.put("from", start.toString());
+    body.put("to", end.toString());
+    body.put("groupBy", group.name().toLowerCase(Locale.ROOT));
+    body.put("providerId", provider);
+    body.put("total", buckets.stream().mapToLong(OrderRollups.Bucket::orders).sum());
+    body.put("buckets", buckets);
+    return ResponseEntity.ok(body);
+  }
+
+  // Recomputes order_rollups from hot and archived orders; order writes only wait for the final swap
+  @PostMapping("/reports/orders/rebuild")
+  public ResponseEntity<?> rebuildOrderReport(@RequestHeader(value = "Authorization", required = false) String authz){
+    if (!isAdmin(authz)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Forbidden"));
+    return ResponseEntity.ok(orderRollups.rebuild());
+  }
+
+  private boolean isAdmin(String authz){
+    return sessions.fromAuthorization(authz).map(u -> "ADMIN".equalsIgnoreCase(u.role())).orElse(false);
+  }
 }
 
@@ -0,0 +1,147 @@
+package com.tradeexchange.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeexchange.api.dto.MessageRow;
+import com.tradeexchange.api.dto.OrderRow;
+import com.tradeexchange.common.ArchiveDatabase;
+import com.tradeexchange.common.ShardedSqlite;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves cold rows out of the hot tables into {@link ArchiveDatabase}: completed and refunded orders,
+ * chat messages (from every message shard) and interactions older than {@code app.archive.after}.
+ * Each batch is copied on a connection with the archive attached and then deleted from the hot
+ * table, with a pause between batches so request-path writers never wait behind a long move. The hot
+ * files run in WAL mode, where a transaction spanning attached files is not atomic across them, so
+ * the copy commits before the delete: a crash in between leaves rows in both tiers (which readers
+ * already tolerate and the next run finishes), never in neither.
+ *
+ * {@link #horizon} is the newest timestamp in each archived table; readers page the hot table first
+ * and only read the archive once their cursor reaches it (see {@link com.tradeexchange.common.TieredPages}).
+ * Archived messages keep their own FTS5 index, so {@link MessageSearch} still finds them.
+ */
+@Component
+public class Archiver {
+
+  public static final String ORDERS = "orders";
+  public static final String MESSAGES = "messages";
+  public static final String INTERACTIONS = "interactions";
+
+  static final String INTERACTION_COLUMNS = "id,userId,providerId,listingId,at,note,amount,kind";
+
+  private final JdbcTemplate jdbc;
+  private final ShardedSqlite messageShards;
+  private final ArchiveDatabase archive;
+  private final ObjectMapper json;
+  private final Duration after;
+  private final int batchSize;
+  private final long pauseMs;
+  private final Map<String, Long> horizons = new ConcurrentHashMap<>();
+
+  public Archiver(JdbcTemplate jdbc, ShardedSqlite messageShards, ArchiveDatabase archive, ObjectMapper json,
+                  @Value("${app.archive.after:P180D}") Duration after,
+                  @Value("${app.archive.batch:500}") int batchSize,
+                  @Value("${app.archive.pause-ms:50}") long pauseMs) {
+    this.jdbc = jdbc;
+    this.messageShards = messageShards;
+    this.archive = archive;
+    this.json = json;
+    this.after = after;
+    this.batchSize = Math.max(1, batchSize);
+    this.pauseMs = Math.max(0, pauseMs);
+  }
+
+  @PostConstruct
+  public void initialize() {
+    JdbcTemplate cold = archive.jdbc();
+    cold.execute("CREATE TABLE IF NOT EXISTS orders (id TEXT PRIMARY KEY, userName TEXT, service TEXT, status TEXT, amount REAL NOT NULL DEFAULT 0, createdAt INTEGER, providerId TEXT, listingId TEXT, conversationId TEXT, reqDetails TEXT, reqDate TEXT, reqTime TEXT, reqAck INTEGER NOT NULL DEFAULT 0)");
+    cold.execute("CREATE INDEX IF NOT EXISTS orders_created_at ON orders (createdAt)");
+    cold.execute("CREATE INDEX IF NOT EXISTS orders_provider_created_at ON orders (providerId, createdAt)");
+    cold.execute("CREATE INDEX IF NOT EXISTS orders_user_name_created_at ON orders (lower(userName), createdAt)");
+    cold.execute("CREATE TABLE IF NOT EXISTS messages (id TEXT PRIMARY KEY, conversationId TEXT NOT NULL, userId TEXT, role TEXT, content TEXT, createdAt INTEGER)");
+    cold.execute("CREATE INDEX IF NOT EXISTS messages_conversation_created_at ON messages (conversationId, createdAt, id)");
+    cold.execute("CREATE INDEX IF NOT EXISTS messages_created_at ON messages (createdAt)");
+    // Archived messages stay searchable; MessageSearch reads this index once a page reaches the horizon
+    MessageStore.createSearchIndex(cold);
+    cold.execute("CREATE TABLE IF NOT EXISTS interactions (id TEXT PRIMARY KEY, userId TEXT NOT NULL, providerId TEXT NOT NULL, listingId TEXT, at INTEGER NOT NULL, note TEXT DEFAULT '', amount REAL DEFAULT 0, kind TEXT)");
+    if (!Boolean.TRUE.equals(cold.query("SELECT 1 FROM pragma_table_info('interactions') WHERE name='kind'", rs -> { return rs.next(); }))) {
+      cold.execute("ALTER TABLE interactions ADD COLUMN kind TEXT");
+    }
+    cold.execute("CREATE INDEX IF NOT EXISTS interactions_user_at ON interactions (userId, at)");
+    cold.execute("CREATE INDEX IF NOT EXISTS interactions_at ON interactions (at)");
+    refreshHorizon(ORDERS, "createdAt");
+    refreshHorizon(MESSAGES, "createdAt");
+    refreshHorizon(INTERACTIONS, "at");
+  }
+
+  /** Newest archived timestamp in {@code table}, or null while nothing has been archived. */
+  public Long horizon(String table) {
+    return horizons.get(table);
+  }
+
+  public ArchiveDatabase database() {
+    return archive;
+  }
+
+  @Scheduled(initialDelayString = "PT1M", fixedDelayString = "${app.archive.interval:PT1H}")
+  public void run() {
+    long cutoff = System.currentTimeMillis() - after.toMillis();
+    try {
+      move(jdbc, ORDERS, OrderRow.COLUMNS, "createdAt", "status IN ('complete','refunded') AND createdAt < ?", cutoff);
+      for (ShardedSqlite.Shard shard : messageShards.all()) {
+        move(shard.jdbc(), MESSAGES, MessageRow.COLUMNS, "createdAt", "createdAt < ?", cutoff);
+      }
+      move(jdbc, INTERACTIONS, INTERACTION_COLUMNS, "at", "at < ?", cutoff);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception ignored) {
+    }
+  }
+
+  private void move(JdbcTemplate hot, String table, String columns, String at, String eligible, long cutoff) throws InterruptedException {
+    int moved;
+    do {
+      moved = archive.attached(hot, false, db -> {
+        List<String> ids = new ArrayList<>();
+        long newest = db.query("SELECT id, " + at + " FROM main." + table + " WHERE " + eligible + " ORDER BY " + at + " LIMIT ?",
+          rs -> {
+            long max = Long.MIN_VALUE;
+            while (rs.next()) {
+              ids.add(rs.getString(1));
+              max = Math.max(max, rs.getLong(2));
+            }
+            return max;
+          }, cutoff, batchSize);
+        if (ids.isEmpty()) return 0;
+        // Widen the horizon before the rows leave the hot table, so no reader can skip past them
+        horizons.merge(table, newest, Math::max);
+        String idList;
+        try {
+          idList = json.writeValueAsString(ids);
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+        // OR IGNORE, not OR REPLACE: a REPLACE delete skips the delete trigger that keeps archive.messages_fts in step
+        db.update("INSERT OR IGNORE INTO archive." + table + " (" + columns + ") SELECT " + columns + " FROM main." + table +
+          " WHERE id IN (SELECT value FROM json_each(?))", idList);
+        db.update("DELETE FROM main." + table + " WHERE id IN (SELECT value FROM json_each(?))", idList);
+        return ids.size();
+      });
+      if (moved == batchSize && pauseMs > 0) Thread.sleep(pauseMs);
+    } while (moved == batchSize);
+  }
+
+  private void refreshHorizon(String table, String at) {
+    Long newest = archive.jdbc().queryForObject("SELECT MAX(" + at + ") FROM " + table, Long.class);
+    if (newest == null) horizons.remove(table);
+    else horizons.put(table, newest);
+  }
+}
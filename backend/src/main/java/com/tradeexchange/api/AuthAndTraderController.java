@@ -1,12 +1,18 @@
 package com.tradeexchange.api;
 
+import com.tradeexchange.api.dto.ListingRow;
+import com.tradeexchange.common.IdGenerator;
+import com.tradeexchange.common.ListingTags;
 import com.tradeexchange.common.PasswordService;
 import com.tradeexchange.common.SessionResolver;
 import com.tradeexchange.common.SessionResolver.UserSession;
+import com.tradeexchange.common.json.JsonRowStreamer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
 import java.util.*;
@@ -18,14 +24,26 @@ public class AuthAndTraderController {
   private final JdbcTemplate jdbc;
   private final PasswordService passwords;
   private final SessionResolver sessions;
-  public AuthAndTraderController(JdbcTemplate jdbc, PasswordService passwords, SessionResolver sessions){
+  private final JsonRowStreamer rows;
+  private final IdGenerator ids;
+  private final ListingTags listingTags;
+  private final TransactionTemplate tx;
+  private final CatalogFacets facets;
+  private final ProviderDetailCache detailCache;
+  private final Bookings bookings;
+  public AuthAndTraderController(JdbcTemplate jdbc, PasswordService passwords, SessionResolver sessions, JsonRowStreamer rows, IdGenerator ids, ListingTags listingTags, TransactionTemplate tx, CatalogFacets facets, ProviderDetailCache detailCache, Bookings bookings){
     this.jdbc = jdbc;
     this.passwords = passwords;
     this.sessions = sessions;
+    this.rows = rows;
+    this.ids = ids;
+    this.listingTags = listingTags;
+    this.tx = tx;
+    this.facets = facets;
+    this.detailCache = detailCache;
+    this.bookings = bookings;
   }
 
-  static String rid(){ return UUID.randomUUID().toString().replace("-"," ").trim().replace(" ","").substring(0,12); }
-
   // ---- Auth endpoints compatible with frontend ----
   public record SignRequest(String name, String email, String password, String role){}
   public record SignInRequest(String email, String password){}
@@ -57,7 +75,7 @@ public class AuthAndTraderController {
       String providerId = null;
       String hash = passwords.hashPassword(password);
       if (existing == null) {
-        id = rid();
+        id = ids.next();
         jdbc.update(
           "INSERT INTO users (id,name,email,password,role,createdAt) VALUES (?,?,?,?,?,?)",
           id, name, email, hash, role, now
@@ -71,8 +89,7 @@ public class AuthAndTraderController {
         );
       }
 
-      String token = randomToken();
-      jdbc.update("INSERT OR REPLACE INTO sessions (token,userId) VALUES (?,?)", token, id);
+      String token = sessions.open(id);
       Map<String,Object> user = loadUser(id);
       if (user == null) {
         user = new LinkedHashMap<>();
@@ -116,8 +133,7 @@ public class AuthAndTraderController {
       }
 
       String id = String.valueOf(row.get("id"));
-      String token = randomToken();
-      jdbc.update("INSERT OR REPLACE INTO sessions (token,userId) VALUES (?,?)", token, id);
+      String token = sessions.open(id);
       Map<String,Object> user = loadUser(id);
       if (user == null) user = row;
       return ResponseEntity.ok(Map.of("token", token, "user", user));
@@ -127,10 +143,7 @@ public class AuthAndTraderController {
   @PostMapping("/signout")
   public ResponseEntity<?> signout(@RequestHeader(value="Authorization", required=false) String auth){
     try{
-      String token = sessions.extractToken(auth);
-      if (!token.isEmpty()){
-        jdbc.update("DELETE FROM sessions WHERE token=?", token);
-      }
+      sessions.close(sessions.extractToken(auth));
     }catch(Exception ignore){}
     return ResponseEntity.ok(Map.of("ok", true));
   }
@@ -155,9 +168,11 @@ public class AuthAndTraderController {
     try{
       UserSession user = session.get();
       String uid = user.id();
-      String pid = user.providerPlayerId();
+      // Signed tokens carry the provider id from sign-in time, so read the current link back
+      Map<String,Object> current = loadUser(uid);
+      String pid = current == null ? user.providerPlayerId() : (String) current.get("providerPlayerId");
       if (pid == null || pid.isBlank()){
-        pid = rid();
+        pid = ids.next();
         jdbc.update("INSERT INTO players (id,name,role,rating,jobs,bio) VALUES (?,?,?,?,?,?)",
           pid,
           Optional.ofNullable(user.name()).orElse("Trader"),
@@ -166,6 +181,7 @@ public class AuthAndTraderController {
           0,
           ""
         );
+        facets.refreshProvider(pid);
       }
       jdbc.update("UPDATE users SET role='TRADER', providerPlayerId=? WHERE id=?", pid, uid);
       Map<String,Object> updated = loadUser(uid);
@@ -173,6 +189,8 @@ public class AuthAndTraderController {
       resp.put("ok", true);
       resp.put("user", updated);
       resp.put("providerId", pid);
+      // Role and provider id changed; hand back a session that reflects them
+      resp.put("token", sessions.open(uid));
       return ResponseEntity.ok(resp);
     }catch(Exception e){ return ResponseEntity.status(500).body(Map.of("error","Failed")); }
   }
@@ -195,69 +213,62 @@ public class AuthAndTraderController {
     );
   }
 
-  private String randomToken(){
-    return UUID.randomUUID().toString().replace("-", "").substring(0, 24);
-  }
-
   // ---- Trader listings CRUD ----
   public record UpsertListing(String id, String providerId, String title, String description, String details, Double price, String status, String tags){}
 
   @GetMapping("/trader/listings")
-  public ResponseEntity<?> listListings(@RequestParam(value="providerId", required=false) String providerId){
-    try{
-      String sql = (providerId!=null && !providerId.isBlank()) ? "SELECT id,title,description,price,providerId,status,createdAt,tags FROM listings WHERE providerId=?" : "SELECT id,title,description,price,providerId,status,createdAt,tags FROM listings";
-      List<Map<String,Object>> rows = jdbc.query(sql, ps -> { if (providerId!=null && !providerId.isBlank()) ps.setString(1, providerId); }, rs -> {
-        List<Map<String,Object>> out = new ArrayList<>();
-        while (rs.next()){
-          out.add(Map.of(
-            "id", rs.getString("id"),
-            "title", rs.getString("title"),
-            "description", Optional.ofNullable(rs.getString("description")).orElse(""),
-            "price", Optional.ofNullable(rs.getObject("price")).orElse(0),
-            "providerId", rs.getString("providerId"),
-            "status", Optional.ofNullable(rs.getString("status")).orElse("LISTED"),
-            "createdAt", Optional.ofNullable(rs.getString("createdAt")).orElse(Instant.now().toString()),
-            "tags", Optional.ofNullable(rs.getString("tags")).orElse("")
-          ));
-        }
-        return out;
-      });
-      return ResponseEntity.ok(rows);
-    }catch(Exception e){ return ResponseEntity.ok(List.of()); }
+  public ResponseEntity<StreamingResponseBody> listListings(@RequestParam(value="providerId", required=false) String providerId){
+    boolean filtered = providerId!=null && !providerId.isBlank();
+    String sql = "SELECT " + ListingRow.COLUMNS + " FROM listings" + (filtered ? " WHERE providerId=?" : "");
+    return rows.array(sql, ps -> { if (filtered) ps.setString(1, providerId); }, ListingRow.MAPPER);
   }
 
   @PostMapping("/trader/listings")
   public ResponseEntity<?> createListing(@RequestBody UpsertListing req){
-    String id = rid();
+    String id = ids.next();
     String createdAt = Instant.now().toString();
-    jdbc.update("INSERT INTO listings (id,title,description,price,providerId,status,createdAt,tags) VALUES (?,?,?,?,?,?,?,?)",
-      id,
-      Optional.ofNullable(req.title()).orElse("Untitled"),
-      Optional.ofNullable(req.description()).orElse(""),
-      Optional.ofNullable(req.price()).orElse(0.0),
-      Optional.ofNullable(req.providerId()).orElse(""),
-      Optional.ofNullable(req.status()).orElse("LISTED"),
-      createdAt,
-      Optional.ofNullable(req.tags()).orElse("")
-    );
+    String tags = Optional.ofNullable(req.tags()).orElse("");
+    tx.executeWithoutResult(status -> {
+      jdbc.update("INSERT INTO listings (id,title,description,price,providerId,status,createdAt,tags) VALUES (?,?,?,?,?,?,?,?)",
+        id,
+        Optional.ofNullable(req.title()).orElse("Untitled"),
+        Optional.ofNullable(req.description()).orElse(""),
+        Optional.ofNullable(req.price()).orElse(0.0),
+        Optional.ofNullable(req.providerId()).orElse(""),
+        Optional.ofNullable(req.status()).orElse("LISTED"),
+        createdAt,
+        tags
+      );
+      listingTags.sync(id, tags);
+    });
+    facets.refreshListing(id);
+    detailCache.invalidate(req.providerId());
     Map<String,Object> row = new LinkedHashMap<>();
-    row.put("id", id); row.put("title", req.title()); row.put("description", req.description()); row.put("price", req.price()); row.put("providerId", req.providerId()); row.put("status", Optional.ofNullable(req.status()).orElse("LISTED")); row.put("createdAt", createdAt); row.put("tags", Optional.ofNullable(req.tags()).orElse(""));
+    row.put("id", id); row.put("title", req.title()); row.put("description", req.description()); row.put("price", req.price()); row.put("providerId", req.providerId()); row.put("status", Optional.ofNullable(req.status()).orElse("LISTED")); row.put("createdAt", createdAt); row.put("tags", tags);
     return ResponseEntity.ok(row);
   }
 
   @PutMapping("/trader/listings/{id}")
   public ResponseEntity<?> updateListing(@PathVariable String id, @RequestBody UpsertListing req){
-    jdbc.update("UPDATE listings SET title=?, description=?, price=?, providerId=?, status=?, tags=? WHERE id=?",
-      Optional.ofNullable(req.title()).orElse("Untitled"),
-      Optional.ofNullable(req.description()).orElse(""),
-      Optional.ofNullable(req.price()).orElse(0.0),
-      Optional.ofNullable(req.providerId()).orElse(""),
-      Optional.ofNullable(req.status()).orElse("LISTED"),
-      Optional.ofNullable(req.tags()).orElse(""),
-      id
-    );
+    String tags = Optional.ofNullable(req.tags()).orElse("");
+    String previousProvider = jdbc.query("SELECT providerId FROM listings WHERE id=?", ps -> ps.setString(1, id), rs -> rs.next() ? rs.getString(1) : null);
+    tx.executeWithoutResult(status -> {
+      int updated = jdbc.update("UPDATE listings SET title=?, description=?, price=?, providerId=?, status=?, tags=? WHERE id=?",
+        Optional.ofNullable(req.title()).orElse("Untitled"),
+        Optional.ofNullable(req.description()).orElse(""),
+        Optional.ofNullable(req.price()).orElse(0.0),
+        Optional.ofNullable(req.providerId()).orElse(""),
+        Optional.ofNullable(req.status()).orElse("LISTED"),
+        tags,
+        id
+      );
+      if (updated > 0) listingTags.sync(id, tags);
+    });
+    facets.refreshListing(id);
+    detailCache.invalidate(previousProvider);
+    detailCache.invalidate(req.providerId());
     Map<String,Object> row = new LinkedHashMap<>();
-    row.put("id", id); row.put("title", req.title()); row.put("description", req.description()); row.put("price", req.price()); row.put("providerId", req.providerId()); row.put("status", Optional.ofNullable(req.status()).orElse("LISTED")); row.put("tags", Optional.ofNullable(req.tags()).orElse(""));
+    row.put("id", id); row.put("title", req.title()); row.put("description", req.description()); row.put("price", req.price()); row.put("providerId", req.providerId()); row.put("status", Optional.ofNullable(req.status()).orElse("LISTED")); row.put("tags", tags);
     return ResponseEntity.ok(row);
   }
 
@@ -267,8 +278,8 @@ public class AuthAndTraderController {
   public ResponseEntity<?> checkout(@RequestBody CheckoutRequest req){
     // Record an order as paid and include customer details for the trader
     try{
-      String id = rid();
-      String createdAt = Instant.now().toString();
+      String id = ids.next();
+      long createdAt = System.currentTimeMillis();
       Double amount = Optional.ofNullable(req.amount()).orElse(0.0);
       String providerId = Optional.ofNullable(req.providerId()).orElse("");
       String listingId = Optional.ofNullable(req.listingId()).orElse("");
@@ -281,8 +292,14 @@ public class AuthAndTraderController {
       }).replaceAll("^(\n)+|\n+$","");
       String reqDate = Optional.ofNullable(req.date()).orElse("");
       String reqTime = Optional.ofNullable(req.time()).orElse("");
+      Optional<Bookings.Slot> slot;
+      try {
+        slot = bookings.slot(reqDate, reqTime);
+      } catch (IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+      }
 
-      jdbc.update("INSERT INTO orders (id,userName,service,status,amount,createdAt,providerId,listingId,conversationId,reqDetails,reqDate,reqTime,reqAck) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)",
+      Runnable write = () -> jdbc.update("INSERT INTO orders (id,userName,service,status,amount,createdAt,providerId,listingId,conversationId,reqDetails,reqDate,reqTime,reqAck) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)",
         id,
         userName,
         "Service purchase",
@@ -297,8 +314,14 @@ public class AuthAndTraderController {
         reqTime,
         1
       );
+      // A requested time is reserved with the order, or the checkout is refused with the times still free
+      if (slot.isEmpty() || providerId.isBlank()) write.run();
+      else {
+        Bookings.Reservation r = bookings.reserve(providerId, id, slot.get(), write);
+        if (r.outcome() != Bookings.Outcome.RESERVED) return ResponseEntity.status(HttpStatus.CONFLICT).body(bookings.refusal(providerId, r));
+      }
 
-      String txId = UUID.randomUUID().toString().replace("-","").substring(0,16);
+      String txId = ids.next();
       return ResponseEntity.ok(Map.of("ok", true, "orderId", id, "txId", txId));
     }catch(Exception e){
       return ResponseEntity.status(500).body(Map.of("error","Checkout failed"));
@@ -0,0 +1,204 @@
+package com.tradeexchange.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeexchange.common.ArchiveDatabase;
+import com.tradeexchange.common.ShardedSqlite;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Online snapshots of the main database, the message shards and the archive. Each file is copied
+ * with {@code VACUUM INTO}, which reads a single consistent snapshot: on the WAL-mode main database
+ * and shards that read never blocks writers, and unlike the backup API it is not restarted from page
+ * 0 whenever another connection writes, so a busy file still finishes. Every copy is then opened,
+ * checked with {@code PRAGMA quick_check} and its row counts recorded in the snapshot's
+ * {@code manifest.json}; only then is it optionally gzipped.
+ *
+ * Snapshots go to {@code <backup dir>/<yyyyMMdd-HHmmss>/}; the oldest are removed beyond
+ * {@code app.backup.keep}. One backup runs at a time, from the scheduler or {@link #start}.
+ */
+@Component
+public class Backups {
+
+  public record FileReport(String file, long bytes, boolean compressed, String check, Map<String, Long> rows) {}
+
+  public record Snapshot(String id, String status, String startedAt, String finishedAt, boolean verified, List<FileReport> files, String error) {}
+
+  private static final DateTimeFormatter ID = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+  private static final String MANIFEST = "manifest.json";
+
+  private final JdbcTemplate jdbc;
+  private final ShardedSqlite messageShards;
+  private final ArchiveDatabase archive;
+  private final ObjectMapper json;
+  private final Executor executor;
+  private final Path mainFile;
+  private final Path directory;
+  private final boolean scheduled;
+  private final boolean compress;
+  private final int keep;
+  private final AtomicReference<String> running = new AtomicReference<>();
+
+  public Backups(JdbcTemplate jdbc, DataSource dataSource, ShardedSqlite messageShards, ArchiveDatabase archive, ObjectMapper json,
+                 @Qualifier("applicationTaskExecutor") Executor executor,
+                 @Value("${app.backup.dir:}") String dir,
+                 @Value("${app.backup.scheduled:true}") boolean scheduled,
+                 @Value("${app.backup.compress:true}") boolean compress,
+                 @Value("${app.backup.keep:7}") int keep) {
+    this.jdbc = jdbc;
+    this.messageShards = messageShards;
+    this.archive = archive;
+    this.json = json;
+    this.executor = executor;
+    this.mainFile = Paths.get(((SQLiteDataSource) dataSource).getUrl().substring("jdbc:sqlite:".length())).toAbsolutePath();
+    this.directory = dir == null || dir.isBlank() ? mainFile.getParent().resolve("backups") : Paths.get(dir).toAbsolutePath();
+    this.scheduled = scheduled;
+    this.compress = compress;
+    this.keep = Math.max(1, keep);
+  }
+
+  @Scheduled(initialDelayString = "${app.backup.interval:P1D}", fixedDelayString = "${app.backup.interval:P1D}")
+  public void scheduledBackup() {
+    if (!scheduled) return;
+    String id = ID.format(Instant.now());
+    if (running.compareAndSet(null, id)) run(id);
+  }
+
+  /** Starts a backup in the background; empty when one is already running. */
+  public Optional<String> start() {
+    String id = ID.format(Instant.now());
+    if (!running.compareAndSet(null, id)) return Optional.empty();
+    try {
+      executor.execute(() -> run(id));
+    } catch (RuntimeException e) {
+      running.set(null);
+      throw e;
+    }
+    return Optional.of(id);
+  }
+
+  /** Id of the backup in progress, if any. */
+  public Optional<String> inProgress() {
+    return Optional.ofNullable(running.get());
+  }
+
+  /** Manifests of the kept snapshots, newest first. */
+  public List<Snapshot> list() {
+    List<Snapshot> out = new ArrayList<>();
+    for (Path dir : snapshotDirs()) {
+      try {
+        out.add(json.readValue(dir.resolve(MANIFEST).toFile(), Snapshot.class));
+      } catch (Exception ignored) {
+      }
+    }
+    Collections.reverse(out);
+    return out;
+  }
+
+  private void run(String id) {
+    String startedAt = Instant.now().toString();
+    Path target = directory.resolve(id);
+    List<FileReport> files = new ArrayList<>();
+    try {
+      Files.createDirectories(target);
+      files.add(copy(jdbc, mainFile.getFileName().toString(), target));
+      for (ShardedSqlite.Shard shard : messageShards.all()) files.add(copy(shard.jdbc(), shard.file().getFileName().toString(), target));
+      files.add(copy(archive.jdbc(), archive.file().getFileName().toString(), target));
+      boolean verified = files.stream().allMatch(f -> "ok".equals(f.check()));
+      write(target, new Snapshot(id, verified ? "complete" : "failed", startedAt, Instant.now().toString(), verified, files, null));
+      prune();
+    } catch (Exception e) {
+      try {
+        write(target, new Snapshot(id, "failed", startedAt, Instant.now().toString(), false, files, String.valueOf(e.getMessage())));
+      } catch (Exception ignored) {
+      }
+    } finally {
+      running.set(null);
+    }
+  }
+
+  private FileReport copy(JdbcTemplate source, String name, Path target) throws IOException {
+    Path out = target.resolve(name);
+    Files.deleteIfExists(out);
+    source.update("VACUUM INTO ?", out.toString());
+
+    String check;
+    Map<String, Long> rows = new TreeMap<>();
+    try (Connection snapshot = DriverManager.getConnection("jdbc:sqlite:" + out);
+         Statement st = snapshot.createStatement()) {
+      // Copies of WAL-mode files keep WAL mode; a snapshot should be a single self-contained file
+      st.execute("PRAGMA journal_mode=DELETE");
+      try (ResultSet rs = st.executeQuery("PRAGMA quick_check")) {
+        check = rs.next() ? rs.getString(1) : "no result";
+      }
+      List<String> tables = new ArrayList<>();
+      try (ResultSet rs = st.executeQuery("SELECT name FROM pragma_table_list WHERE schema='main' AND type='table' AND name NOT LIKE 'sqlite_%' ORDER BY name")) {
+        while (rs.next()) tables.add(rs.getString(1));
+      }
+      for (String table : tables) {
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM \"" + table.replace("\"", "\"\"") + "\"")) {
+          rows.put(table, rs.next() ? rs.getLong(1) : 0L);
+        }
+      }
+    } catch (SQLException e) {
+      check = String.valueOf(e.getMessage());
+    }
+
+    if (!compress) return new FileReport(name, Files.size(out), false, check, rows);
+    Path gz = target.resolve(name + ".gz");
+    try (InputStream in = Files.newInputStream(out); OutputStream zipped = new GZIPOutputStream(Files.newOutputStream(gz), 1 << 16)) {
+      in.transferTo(zipped);
+    }
+    Files.delete(out);
+    return new FileReport(gz.getFileName().toString(), Files.size(gz), true, check, rows);
+  }
+
+  private void write(Path target, Snapshot snapshot) throws IOException {
+    json.writerWithDefaultPrettyPrinter().writeValue(target.resolve(MANIFEST).toFile(), snapshot);
+  }
+
+  private void prune() {
+    List<Path> dirs = snapshotDirs();
+    for (int i = 0; i < dirs.size() - keep; i++) {
+      try (Stream<Path> files = Files.walk(dirs.get(i))) {
+        files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  // Oldest first; ids sort chronologically
+  private List<Path> snapshotDirs() {
+    List<Path> dirs = new ArrayList<>();
+    if (!Files.isDirectory(directory)) return dirs;
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, p -> Files.isDirectory(p) && p.getFileName().toString().matches("\\d{8}-\\d{6}"))) {
+      entries.forEach(dirs::add);
+    } catch (IOException ignored) {
+    }
+    dirs.sort(Comparator.comparing(Path::getFileName));
+    return dirs;
+  }
+}
@@ -0,0 +1,307 @@
+package com.tradeexchange.api;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Provider calendars: weekly opening hours in {@code provider_hours} and one booked slot per order in
+ * {@code bookings}. Times are wall-clock in {@code app.bookings.zone}, as entered on the checkout and
+ * consultation forms, and every booking lasts {@code app.bookings.slot-minutes}.
+ *
+ * Upcoming bookings are also held per provider in an interval index (start minute to end minute,
+ * never overlapping), so a conflict check is one floor lookup. A reservation takes the provider's lock
+ * stripe, checks the index, writes the order and its booking in one transaction and only then updates
+ * the index; two checkouts for the same slot serialize on the stripe and the second sees the first.
+ * A unique index on (providerId, day, startMinute) backs this up in the database.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class Bookings {
+
+  public enum Outcome { RESERVED, TAKEN, CLOSED }
+
+  /** A requested start, {@code minute} counted from midnight. */
+  public record Slot(LocalDate date, int minute) {
+    public String time() {
+      return clock(minute);
+    }
+  }
+
+  public record Reservation(Outcome outcome, Slot slot) {}
+
+  public record Hours(int day, int opens, int closes) {}
+
+  public record Booked(String orderId, String date, String time, String until) {}
+
+  private record Interval(String orderId, long end) {}
+
+  private static final int STRIPES = 64;
+  private static final long DAY_MINUTES = 24 * 60;
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final ZoneId zone;
+  private final int slotMinutes;
+  private final List<Hours> defaultHours;
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+  private final Map<String, TreeMap<Long, Interval>> index = new ConcurrentHashMap<>();
+
+  public Bookings(JdbcTemplate jdbc, TransactionTemplate tx,
+                  @Value("${app.bookings.zone:}") String zone,
+                  @Value("${app.bookings.slot-minutes:60}") int slotMinutes,
+                  @Value("${app.bookings.default-days:1,2,3,4,5}") List<Integer> defaultDays,
+                  @Value("${app.bookings.default-opens:09:00}") String defaultOpens,
+                  @Value("${app.bookings.default-closes:17:00}") String defaultCloses) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.zone = zone == null || zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+    this.slotMinutes = Math.max(5, Math.min(slotMinutes, 24 * 60));
+    List<Hours> hours = new ArrayList<>();
+    for (Integer day : defaultDays) hours.add(new Hours(day, minuteOf(defaultOpens), minuteOf(defaultCloses)));
+    this.defaultHours = List.copyOf(hours);
+    for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+  }
+
+  // Only bookings from yesterday on can conflict with anything still bookable
+  @PostConstruct
+  public void load() {
+    try {
+      jdbc.query("SELECT providerId, orderId, day, startMinute, endMinute FROM bookings WHERE day >= ?",
+        rs -> {
+          long start = key(LocalDate.parse(rs.getString(3)), rs.getInt(4));
+          long end = key(LocalDate.parse(rs.getString(3)), rs.getInt(5));
+          index.computeIfAbsent(rs.getString(1), k -> new TreeMap<>()).put(start, new Interval(rs.getString(2), end));
+        },
+        today().minusDays(1).toString());
+    } catch (Exception ignored) {
+    }
+  }
+
+  public int slotMinutes() {
+    return slotMinutes;
+  }
+
+  /**
+   * Parses the free-text date and time the order endpoints accept. Empty when either is blank (no
+   * slot requested); {@link IllegalArgumentException} when one is given but unreadable.
+   */
+  public Optional<Slot> slot(String date, String time) {
+    if (date == null || date.isBlank() || time == null || time.isBlank()) return Optional.empty();
+    LocalDate d;
+    try {
+      d = LocalDate.parse(date.trim());
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("date must be yyyy-MM-dd");
+    }
+    return Optional.of(new Slot(d, minuteOf(time)));
+  }
+
+  /**
+   * Books {@code slot} for {@code orderId}, running {@code write} (the order insert or update) in the
+   * same transaction. A booking the order already holds is moved. Nothing is written unless the slot is
+   * within the provider's hours, not in the past and free.
+   */
+  public Reservation reserve(String providerId, String orderId, Slot slot, Runnable write) {
+    long start = key(slot.date(), slot.minute());
+    long end = start + slotMinutes;
+    ReentrantLock lock = stripe(providerId);
+    lock.lock();
+    try {
+      if (!open(hours(providerId), slot) || start < key(today(), nowMinute())) return new Reservation(Outcome.CLOSED, slot);
+      TreeMap<Long, Interval> booked = index.computeIfAbsent(providerId, k -> new TreeMap<>());
+      if (overlaps(booked, orderId, start, end)) return new Reservation(Outcome.TAKEN, slot);
+      tx.executeWithoutResult(status -> {
+        write.run();
+        jdbc.update("DELETE FROM bookings WHERE orderId=?", orderId);
+        jdbc.update("INSERT INTO bookings (orderId, providerId, day, startMinute, endMinute) VALUES (?,?,?,?,?)",
+          orderId, providerId, slot.date().toString(), slot.minute(), slot.minute() + slotMinutes);
+      });
+      booked.values().removeIf(i -> i.orderId().equals(orderId));
+      booked.put(start, new Interval(orderId, end));
+      return new Reservation(Outcome.RESERVED, slot);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Error body for a refused reservation, with the free slots left that day so the client can offer them. */
+  public Map<String, Object> refusal(String providerId, Reservation r) {
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("error", r.outcome() == Outcome.TAKEN ? "That time is already booked" : "The provider is not available at that time");
+    body.put("date", r.slot().date().toString());
+    body.put("time", r.slot().time());
+    body.put("free", r.slot().date().isBefore(today()) ? List.of() : free(providerId, r.slot().date(), r.slot().date()).get(r.slot().date()));
+    return body;
+  }
+
+  /** Frees the order's slot, e.g. once it is denied or refunded. */
+  public void release(String orderId) {
+    String providerId = jdbc.query("SELECT providerId FROM bookings WHERE orderId=?", ps -> ps.setString(1, orderId), rs -> rs.next() ? rs.getString(1) : null);
+    if (providerId == null) return;
+    ReentrantLock lock = stripe(providerId);
+    lock.lock();
+    try {
+      jdbc.update("DELETE FROM bookings WHERE orderId=?", orderId);
+      TreeMap<Long, Interval> booked = index.get(providerId);
+      if (booked != null) booked.values().removeIf(i -> i.orderId().equals(orderId));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void removeProvider(String providerId) {
+    ReentrantLock lock = stripe(providerId);
+    lock.lock();
+    try {
+      jdbc.update("DELETE FROM bookings WHERE providerId=?", providerId);
+      jdbc.update("DELETE FROM provider_hours WHERE providerId=?", providerId);
+      index.remove(providerId);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Stored weekly hours, or the configured defaults when the provider has set none. */
+  public List<Hours> hours(String providerId) {
+    List<Hours> stored = jdbc.query("SELECT weekday, opens, closes FROM provider_hours WHERE providerId=? ORDER BY weekday, opens",
+      (rs, n) -> new Hours(rs.getInt(1), rs.getInt(2), rs.getInt(3)), providerId);
+    return stored.isEmpty() ? defaultHours : stored;
+  }
+
+  public boolean customHours(String providerId) {
+    return Boolean.TRUE.equals(jdbc.query("SELECT 1 FROM provider_hours WHERE providerId=? LIMIT 1", ps -> ps.setString(1, providerId), rs -> { return rs.next(); }));
+  }
+
+  /** Replaces the provider's weekly hours (empty restores the defaults); existing bookings are kept even if they now fall outside. */
+  public void setHours(String providerId, List<Hours> hours) {
+    for (Hours h : hours) {
+      if (h.day() < 1 || h.day() > 7) throw new IllegalArgumentException("day must be 1 (Monday) to 7 (Sunday)");
+      if (h.opens() < 0 || h.closes() > DAY_MINUTES || h.opens() >= h.closes()) throw new IllegalArgumentException("opens must be before closes");
+    }
+    ReentrantLock lock = stripe(providerId);
+    lock.lock();
+    try {
+      tx.executeWithoutResult(status -> {
+        jdbc.update("DELETE FROM provider_hours WHERE providerId=?", providerId);
+        jdbc.batchUpdate("INSERT OR REPLACE INTO provider_hours (providerId, weekday, opens, closes) VALUES (?,?,?,?)",
+          hours.stream().map(h -> new Object[]{ providerId, h.day(), h.opens(), h.closes() }).toList());
+      });
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Free slot start times per date, {@code from}..{@code to} inclusive; past times are left out. */
+  public Map<LocalDate, List<String>> free(String providerId, LocalDate from, LocalDate to) {
+    List<Hours> hours = hours(providerId);
+    long now = key(today(), nowMinute());
+    Map<LocalDate, List<String>> out = new LinkedHashMap<>();
+    ReentrantLock lock = stripe(providerId);
+    lock.lock();
+    try {
+      TreeMap<Long, Interval> booked = index.getOrDefault(providerId, new TreeMap<>());
+      for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+        List<String> slots = new ArrayList<>();
+        int weekday = date.getDayOfWeek().getValue();
+        for (Hours h : hours) {
+          if (h.day() != weekday) continue;
+          for (int minute = h.opens(); minute + slotMinutes <= h.closes(); minute += slotMinutes) {
+            long start = key(date, minute);
+            if (start >= now && !overlaps(booked, null, start, start + slotMinutes)) slots.add(clock(minute));
+          }
+        }
+        out.put(date, slots);
+      }
+    } finally {
+      lock.unlock();
+    }
+    return out;
+  }
+
+  public List<Booked> booked(String providerId, LocalDate from, LocalDate to) {
+    return jdbc.query("SELECT orderId, day, startMinute, endMinute FROM bookings WHERE providerId=? AND day BETWEEN ? AND ? ORDER BY day, startMinute",
+      (rs, n) -> new Booked(rs.getString(1), rs.getString(2), clock(rs.getInt(3)), clock(rs.getInt(4))),
+      providerId, from.toString(), to.toString());
+  }
+
+  public LocalDate today() {
+    return LocalDate.now(zone);
+  }
+
+  // Past days can no longer conflict; drop them so the index only holds what is still bookable
+  @Scheduled(cron = "0 15 0 * * *")
+  public void prune() {
+    long cutoff = key(today().minusDays(1), 0);
+    for (String providerId : index.keySet()) {
+      ReentrantLock lock = stripe(providerId);
+      lock.lock();
+      try {
+        TreeMap<Long, Interval> booked = index.get(providerId);
+        if (booked == null) continue;
+        booked.headMap(cutoff).clear();
+        if (booked.isEmpty()) index.remove(providerId);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  // Intervals never overlap, so walking back from the last start before `end` can stop at the first that ends by `start`
+  private static boolean overlaps(TreeMap<Long, Interval> booked, String orderId, long start, long end) {
+    for (Map.Entry<Long, Interval> e : booked.headMap(end, false).descendingMap().entrySet()) {
+      if (e.getValue().end() <= start) return false;
+      if (!e.getValue().orderId().equals(orderId)) return true;
+    }
+    return false;
+  }
+
+  private boolean open(List<Hours> hours, Slot slot) {
+    int weekday = slot.date().getDayOfWeek().getValue();
+    for (Hours h : hours) {
+      if (h.day() == weekday && slot.minute() >= h.opens() && slot.minute() + slotMinutes <= h.closes()) return true;
+    }
+    return false;
+  }
+
+  private ReentrantLock stripe(String providerId) {
+    return stripes[Math.floorMod(Objects.hashCode(providerId), STRIPES)];
+  }
+
+  private int nowMinute() {
+    LocalTime now = LocalDateTime.now(zone).toLocalTime();
+    return now.getHour() * 60 + now.getMinute();
+  }
+
+  private static long key(LocalDate date, int minute) {
+    return date.toEpochDay() * DAY_MINUTES + minute;
+  }
+
+  /** Minutes from midnight for {@code HH:mm}; {@code 24:00} is accepted as a closing time. */
+  public static int minuteOf(String time) {
+    if (time != null && time.trim().equals("24:00")) return (int) DAY_MINUTES;
+    try {
+      LocalTime t = LocalTime.parse(time.trim());
+      return t.getHour() * 60 + t.getMinute();
+    } catch (DateTimeParseException | NullPointerException e) {
+      throw new IllegalArgumentException("time must be HH:mm");
+    }
+  }
+
+  public static String clock(int minute) {
+    return minute >= DAY_MINUTES ? "24:00" : String.format("%02d:%02d", minute / 60, minute % 60);
+  }
+}
@@ -0,0 +1,134 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.common.SessionResolver;
+import com.tradeexchange.common.SessionResolver.UserSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api")
+public class BookingsController {
+  private static final int DEFAULT_DAYS = 7;
+  private static final int MAX_DAYS = 31;
+
+  private final JdbcTemplate jdbc;
+  private final SessionResolver sessions;
+  private final Bookings bookings;
+
+  public BookingsController(JdbcTemplate jdbc, SessionResolver sessions, Bookings bookings) {
+    this.jdbc = jdbc;
+    this.sessions = sessions;
+    this.bookings = bookings;
+  }
+
+  // Every free start time in one call, so the checkout page can offer only bookable times
+  @GetMapping("/providers/{id}/slots")
+  public ResponseEntity<?> slots(@PathVariable String id,
+                                 @RequestParam(value = "from", required = false) String from,
+                                 @RequestParam(value = "to", required = false) String to){
+    if (!Boolean.TRUE.equals(jdbc.query("SELECT 1 FROM players WHERE id=?", ps -> ps.setString(1, id), rs -> { return rs.next(); }))) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Provider not found"));
+    }
+    LocalDate[] range;
+    try {
+      range = range(from, to, true);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+    List<Map<String,Object>> days = new ArrayList<>();
+    bookings.free(id, range[0], range[1]).forEach((date, free) -> days.add(Map.of("date", date.toString(), "slots", free)));
+    Map<String,Object> out = new LinkedHashMap<>();
+    out.put("providerId", id);
+    out.put("slotMinutes", bookings.slotMinutes());
+    out.put("from", range[0].toString());
+    out.put("to", range[1].toString());
+    out.put("days", days);
+    return ResponseEntity.ok(out);
+  }
+
+  @GetMapping("/trader/availability")
+  public ResponseEntity<?> availability(@RequestHeader(value = "Authorization", required = false) String authz){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    String providerId = providerOf(session.get());
+    if (providerId == null) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not a trader"));
+    return ResponseEntity.ok(hoursBody(providerId));
+  }
+
+  public record HoursEntry(Integer day, String opens, String closes){}
+  public record SetHours(List<HoursEntry> hours){}
+  @PutMapping("/trader/availability")
+  public ResponseEntity<?> setAvailability(@RequestHeader(value = "Authorization", required = false) String authz, @RequestBody SetHours req){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    String providerId = providerOf(session.get());
+    if (providerId == null) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not a trader"));
+    try {
+      List<Bookings.Hours> hours = new ArrayList<>();
+      for (HoursEntry h : Optional.ofNullable(req.hours()).orElse(List.of())) {
+        if (h == null || h.day() == null) throw new IllegalArgumentException("day is required");
+        hours.add(new Bookings.Hours(h.day(), Bookings.minuteOf(h.opens()), Bookings.minuteOf(h.closes())));
+      }
+      bookings.setHours(providerId, hours);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+    return ResponseEntity.ok(hoursBody(providerId));
+  }
+
+  @GetMapping("/trader/bookings")
+  public ResponseEntity<?> booked(@RequestHeader(value = "Authorization", required = false) String authz,
+                                  @RequestParam(value = "from", required = false) String from,
+                                  @RequestParam(value = "to", required = false) String to){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    String providerId = providerOf(session.get());
+    if (providerId == null) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not a trader"));
+    try {
+      LocalDate[] range = range(from, to, false);
+      return ResponseEntity.ok(bookings.booked(providerId, range[0], range[1]));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+  }
+
+  private Map<String,Object> hoursBody(String providerId){
+    List<Map<String,Object>> hours = new ArrayList<>();
+    for (Bookings.Hours h : bookings.hours(providerId)) {
+      hours.add(Map.of("day", h.day(), "opens", Bookings.clock(h.opens()), "closes", Bookings.clock(h.closes())));
+    }
+    Map<String,Object> out = new LinkedHashMap<>();
+    out.put("providerId", providerId);
+    out.put("slotMinutes", bookings.slotMinutes());
+    out.put("custom", bookings.customHours(providerId));
+    out.put("hours", hours);
+    return out;
+  }
+
+  // yyyy-MM-dd bounds, inclusive; from defaults to today (and is clamped to it for free slots)
+  private LocalDate[] range(String from, String to, boolean upcoming){
+    LocalDate today = bookings.today();
+    try {
+      LocalDate start = from == null || from.isBlank() ? today : LocalDate.parse(from.trim());
+      if (upcoming && start.isBefore(today)) start = today;
+      LocalDate end = to == null || to.isBlank() ? start.plusDays(DEFAULT_DAYS - 1) : LocalDate.parse(to.trim());
+      if (end.isBefore(start)) throw new IllegalArgumentException("to must not be before from");
+      if (end.isAfter(start.plusDays(MAX_DAYS - 1))) throw new IllegalArgumentException("At most " + MAX_DAYS + " days per request");
+      return new LocalDate[]{ start, end };
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Dates must be yyyy-MM-dd");
+    }
+  }
+
+  private static String providerOf(UserSession user){
+    if (!"TRADER".equalsIgnoreCase(user.role())) return null;
+    String providerId = user.providerPlayerId();
+    return providerId == null || providerId.isBlank() ? null : providerId;
+  }
+}
@@ -0,0 +1,80 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.common.SessionResolver;
+import com.tradeexchange.common.SessionResolver.UserSession;
+import com.tradeexchange.common.bulk.Records;
+import com.tradeexchange.common.bulk.TableExport;
+import com.tradeexchange.common.json.JsonRowStreamer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+@RestController
+@RequestMapping("/api")
+public class BulkController {
+
+  // Exported columns per table; users never include credentials
+  private static final Map<String, String> EXPORTS = Map.of(
+    "users", "SELECT id, name, email, role, providerPlayerId FROM users ORDER BY id",
+    "providers", "SELECT id, name, role, rating, jobs, bio, location, website, phone, specialties, hourlyRate, availability, experienceYears, languages, certifications, createdAt, updatedAt FROM players ORDER BY id",
+    "listings", "SELECT id, title, description, price, providerId, status, createdAt, tags FROM listings ORDER BY id",
+    "orders", "SELECT id, userName, service, status, amount, createdAt, providerId, listingId, conversationId, reqDate, reqTime FROM orders ORDER BY createdAt, id"
+  );
+
+  private final SessionResolver sessions;
+  private final BulkImports imports;
+  private final TableExport export;
+  private final JsonRowStreamer rows;
+
+  public BulkController(SessionResolver sessions, BulkImports imports, TableExport export, JsonRowStreamer rows) {
+    this.sessions = sessions;
+    this.imports = imports;
+    this.export = export;
+    this.rows = rows;
+  }
+
+  // NDJSON or CSV body; traders import into their own profile, admins name providerId per row
+  @PostMapping("/trader/listings/import")
+  public ResponseEntity<?> importListings(@RequestHeader(value = "Authorization", required = false) String authz,
+                                          @RequestParam(value = "format", required = false) String format,
+                                          HttpServletRequest request) throws IOException {
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    UserSession user = session.get();
+    String owner;
+    if ("ADMIN".equalsIgnoreCase(user.role())) owner = null;
+    else if ("TRADER".equalsIgnoreCase(user.role()) && user.providerPlayerId() != null) owner = user.providerPlayerId();
+    else return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not a trader"));
+    return ResponseEntity.ok(imports.listings(request.getInputStream(), Records.Format.of(format, request.getContentType()), owner));
+  }
+
+  @PostMapping("/admin/providers/import")
+  public ResponseEntity<?> importProviders(@RequestHeader(value = "Authorization", required = false) String authz,
+                                           @RequestParam(value = "format", required = false) String format,
+                                           HttpServletRequest request) throws IOException {
+    if (!isAdmin(authz)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Forbidden"));
+    return ResponseEntity.ok(imports.providers(request.getInputStream(), Records.Format.of(format, request.getContentType())));
+  }
+
+  // Streamed as it is read; ?format=csv or ndjson (default)
+  @GetMapping("/admin/export/{table}")
+  public ResponseEntity<StreamingResponseBody> exportTable(@PathVariable String table,
+                                                           @RequestHeader(value = "Authorization", required = false) String authz,
+                                                           @RequestParam(value = "format", required = false) String format){
+    if (!isAdmin(authz)) return rows.error(HttpStatus.FORBIDDEN, "error", "Forbidden");
+    String sql = EXPORTS.get(table);
+    if (sql == null) return rows.error(HttpStatus.NOT_FOUND, "error", "Unknown table; expected one of " + String.join(", ", new TreeSet<>(EXPORTS.keySet())));
+    return export.stream(table, sql, Records.Format.of(format, null));
+  }
+
+  private boolean isAdmin(String authz){
+    return sessions.fromAuthorization(authz).map(u -> "ADMIN".equalsIgnoreCase(u.role())).orElse(false);
+  }
+}
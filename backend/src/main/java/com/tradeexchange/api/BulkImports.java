@@ -0,0 +1,251 @@
+package com.tradeexchange.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeexchange.common.IdGenerator;
+import com.tradeexchange.common.ListingTags;
+import com.tradeexchange.common.bulk.Records;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Bulk upserts of listings and providers from an NDJSON or CSV upload. Records are parsed one at a time
+ * and written in batches of {@code app.bulk.batch}, one transaction per batch, so memory stays flat
+ * however long the file is. A record that fails validation is reported by line and skipped. When a
+ * batch fails in the database, its rows are retried one per transaction so only the bad rows are
+ * rejected. Catalog indexes and caches are refreshed once, after the last batch.
+ */
+@Component
+public class BulkImports {
+
+  public record RowError(long line, String error) {}
+
+  public record Report(long received, long imported, long failed, List<RowError> errors, boolean errorsTruncated, long millis) {}
+
+  private record Row<T>(long line, T value) {}
+
+  private record Listing(String id, String title, String description, double price, String providerId, String status, String tags) {}
+
+  private record Provider(String id, String name, String bio, String location, String website, String phone, String specialties,
+                          Double hourlyRate, String availability, Integer experienceYears, String languages, String certifications) {}
+
+  @FunctionalInterface
+  private interface Parser<T> {
+    T parse(Records.Record record);
+  }
+
+  /** Writes one batch inside a transaction; returns an error per row that was not written, null for rows that were. */
+  @FunctionalInterface
+  private interface Writer<T> {
+    List<String> write(List<Row<T>> rows);
+  }
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final IdGenerator ids;
+  private final ObjectMapper json;
+  private final CatalogFacets facets;
+  private final CatalogSuggestions suggestions;
+  private final ProviderLocations locations;
+  private final ProviderDetailCache detailCache;
+  private final int batchSize;
+  private final int maxErrors;
+
+  public BulkImports(JdbcTemplate jdbc, TransactionTemplate tx, IdGenerator ids, ObjectMapper json,
+                     CatalogFacets facets, CatalogSuggestions suggestions, ProviderLocations locations, ProviderDetailCache detailCache,
+                     @Value("${app.bulk.batch:500}") int batchSize,
+                     @Value("${app.bulk.max-errors:1000}") int maxErrors) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.ids = ids;
+    this.json = json;
+    this.facets = facets;
+    this.suggestions = suggestions;
+    this.locations = locations;
+    this.detailCache = detailCache;
+    this.batchSize = Math.max(1, batchSize);
+    this.maxErrors = Math.max(0, maxErrors);
+  }
+
+  /**
+   * Listings keyed by {@code id} (generated when blank). With {@code owner} set, every row belongs to that
+   * provider and rows naming another provider's listing id are rejected; otherwise each row names its
+   * {@code providerId}.
+   */
+  public Report listings(InputStream body, Records.Format format, String owner) throws IOException {
+    String upsert = "INSERT INTO listings (id,title,description,price,providerId,status,createdAt,tags) VALUES (?,?,?,?,?,?,?,?) " +
+      "ON CONFLICT(id) DO UPDATE SET title=excluded.title, description=excluded.description, price=excluded.price, " +
+      "providerId=excluded.providerId, status=excluded.status, tags=excluded.tags" +
+      (owner == null ? "" : " WHERE listings.providerId = excluded.providerId");
+    Report report = run(body, format, record -> {
+      String title = text(record, "title");
+      if (title == null) throw new IllegalArgumentException("title is required");
+      String providerId = owner != null ? owner : text(record, "providerId");
+      if (providerId == null) throw new IllegalArgumentException("providerId is required");
+      double price = Optional.ofNullable(decimal(record, "price")).orElse(0.0);
+      if (price < 0) throw new IllegalArgumentException("price must not be negative");
+      String status = Optional.ofNullable(text(record, "status")).orElse("LISTED").toUpperCase(Locale.ROOT);
+      return new Listing(Optional.ofNullable(text(record, "id")).orElseGet(ids::next), title,
+        Optional.ofNullable(text(record, "description")).orElse(""), price, providerId, status,
+        Optional.ofNullable(record.get("tags")).orElse("").trim());
+    }, rows -> {
+      List<String> errors = new ArrayList<>(Collections.nCopies(rows.size(), null));
+      Set<String> known = knownProviders(rows.stream().map(r -> r.value().providerId()).toList());
+      String createdAt = Instant.now().toString();
+      List<Integer> positions = new ArrayList<>();
+      List<Object[]> args = new ArrayList<>();
+      for (int i = 0; i < rows.size(); i++) {
+        Listing l = rows.get(i).value();
+        if (!known.contains(l.providerId())) { errors.set(i, "Unknown provider " + l.providerId()); continue; }
+        positions.add(i);
+        args.add(new Object[]{ l.id(), l.title(), l.description(), l.price(), l.providerId(), l.status(), createdAt, l.tags() });
+      }
+      int[] counts = jdbc.batchUpdate(upsert, args);
+      List<Object[]> written = new ArrayList<>();
+      List<Object[]> tags = new ArrayList<>();
+      for (int k = 0; k < counts.length; k++) {
+        int i = positions.get(k);
+        if (counts[k] == 0) { errors.set(i, "Listing " + rows.get(i).value().id() + " belongs to another provider"); continue; }
+        Listing l = rows.get(i).value();
+        written.add(new Object[]{ l.id() });
+        for (String tag : ListingTags.parse(l.tags())) tags.add(new Object[]{ tag, l.id() });
+      }
+      // Replacing a listing's tag rows outright; tag_counts follows through its triggers
+      jdbc.batchUpdate("DELETE FROM listing_tags WHERE listingId=?", written);
+      jdbc.batchUpdate("INSERT OR IGNORE INTO listing_tags (tag,listingId) VALUES (?,?)", tags);
+      return errors;
+    });
+    if (report.imported() > 0) {
+      facets.reload();
+      suggestions.markDirty();
+      if (owner != null) detailCache.invalidate(owner); else detailCache.clear();
+    }
+    return report;
+  }
+
+  /** Provider profiles keyed by {@code id} (generated when blank); rating and jobs are left to reviews and orders. */
+  public Report providers(InputStream body, Records.Format format) throws IOException {
+    Report report = run(body, format, record -> {
+      String name = text(record, "name");
+      if (name == null) throw new IllegalArgumentException("name is required");
+      Double hourlyRate = decimal(record, "hourlyRate");
+      if (hourlyRate != null && hourlyRate < 0) throw new IllegalArgumentException("hourlyRate must not be negative");
+      Double years = decimal(record, "experienceYears");
+      return new Provider(Optional.ofNullable(text(record, "id")).orElseGet(ids::next), name,
+        text(record, "bio"), text(record, "location"), text(record, "website"), text(record, "phone"), text(record, "specialties"),
+        hourlyRate, text(record, "availability"), years == null ? null : years.intValue(), text(record, "languages"), text(record, "certifications"));
+    }, rows -> {
+      String now = Instant.now().toString();
+      List<Object[]> args = new ArrayList<>();
+      for (Row<Provider> row : rows) {
+        Provider p = row.value();
+        args.add(new Object[]{ p.id(), p.name(), p.bio(), p.location(), p.website(), p.phone(), p.specialties(), p.hourlyRate(),
+          p.availability(), p.experienceYears(), p.languages(), p.certifications(), now, now });
+      }
+      jdbc.batchUpdate("INSERT INTO players (id,name,role,rating,jobs,bio,location,website,phone,specialties,hourlyRate,availability,experienceYears,languages,certifications,createdAt,updatedAt) " +
+        "VALUES (?,?,'PROVIDER',0,0,?,?,?,?,?,?,?,?,?,?,?,?) " +
+        "ON CONFLICT(id) DO UPDATE SET name=excluded.name, bio=excluded.bio, location=excluded.location, website=excluded.website, " +
+        "phone=excluded.phone, specialties=excluded.specialties, hourlyRate=excluded.hourlyRate, availability=excluded.availability, " +
+        "experienceYears=excluded.experienceYears, languages=excluded.languages, certifications=excluded.certifications, updatedAt=excluded.updatedAt", args);
+      return Collections.nCopies(rows.size(), null);
+    });
+    if (report.imported() > 0) {
+      facets.reload();
+      suggestions.markDirty();
+      locations.reindexAll();
+      detailCache.clear();
+    }
+    return report;
+  }
+
+  private <T> Report run(InputStream body, Records.Format format, Parser<T> parser, Writer<T> writer) throws IOException {
+    long started = System.nanoTime();
+    long[] counts = new long[3]; // received, imported, failed
+    List<RowError> errors = new ArrayList<>();
+    boolean[] truncated = { false };
+    java.util.function.BiConsumer<Long, String> fail = (line, error) -> {
+      counts[2]++;
+      if (errors.size() < maxErrors) errors.add(new RowError(line, error)); else truncated[0] = true;
+    };
+
+    List<Row<T>> batch = new ArrayList<>(batchSize);
+    try (Records records = Records.open(body, format, json)) {
+      Records.Record record;
+      while ((record = records.next()) != null) {
+        counts[0]++;
+        if (record.error() != null) { fail.accept(record.line(), record.error()); continue; }
+        try {
+          batch.add(new Row<>(record.line(), parser.parse(record)));
+        } catch (IllegalArgumentException e) {
+          fail.accept(record.line(), e.getMessage());
+          continue;
+        }
+        if (batch.size() >= batchSize) {
+          flush(batch, writer, counts, fail);
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) flush(batch, writer, counts, fail);
+    }
+    return new Report(counts[0], counts[1], counts[2], errors, truncated[0], (System.nanoTime() - started) / 1_000_000);
+  }
+
+  private <T> void flush(List<Row<T>> batch, Writer<T> writer, long[] counts, java.util.function.BiConsumer<Long, String> fail) {
+    List<String> outcome;
+    try {
+      outcome = tx.execute(status -> writer.write(batch));
+    } catch (RuntimeException e) {
+      // Find the rows the database refused; the others go in one per transaction
+      for (Row<T> row : batch) {
+        try {
+          String error = tx.execute(status -> writer.write(List.of(row))).get(0);
+          if (error == null) counts[1]++; else fail.accept(row.line(), error);
+        } catch (RuntimeException rowError) {
+          fail.accept(row.line(), rootMessage(rowError));
+        }
+      }
+      return;
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      if (outcome.get(i) == null) counts[1]++; else fail.accept(batch.get(i).line(), outcome.get(i));
+    }
+  }
+
+  private Set<String> knownProviders(List<String> providerIds) {
+    try {
+      return new HashSet<>(jdbc.queryForList("SELECT id FROM players WHERE id IN (SELECT value FROM json_each(?))", String.class,
+        json.writeValueAsString(new HashSet<>(providerIds))));
+    } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String text(Records.Record record, String field) {
+    String value = record.get(field);
+    return value == null || value.isBlank() ? null : value.trim();
+  }
+
+  private static Double decimal(Records.Record record, String field) {
+    String value = text(record, field);
+    if (value == null) return null;
+    try {
+      double d = Double.parseDouble(value);
+      if (Double.isNaN(d) || Double.isInfinite(d)) throw new NumberFormatException();
+      return d;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(field + " is not a number: " + value);
+    }
+  }
+
+  private static String rootMessage(Throwable e) {
+    Throwable root = e;
+    while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+    return String.valueOf(root.getMessage());
+  }
+}
@@ -0,0 +1,119 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.api.dto.ListingRow;
+import com.tradeexchange.api.dto.PlayerRow;
+import com.tradeexchange.common.ListingTags;
+import com.tradeexchange.common.facets.FacetIndex;
+import com.tradeexchange.common.facets.FacetIndex.Doc;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facet indexes over listings and providers, loaded once at startup and then updated row by row
+ * from the listing, profile, order and admin write paths. A failed refresh leaves the previous
+ * entry in place; the next write to the same row repairs it. Every write also marks the typeahead
+ * index for a background rebuild.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class CatalogFacets {
+
+  private static final String LISTING_SELECT = "SELECT " + ListingRow.COLUMNS + ", (SELECT rating FROM players p WHERE p.id = listings.providerId) FROM listings";
+  private static final String PLAYER_SELECT = "SELECT " + PlayerRow.COLUMNS + ", languages, specialties, onLocation, studioAvailable, experienceYears FROM players";
+
+  private static final RowMapper<Doc<ListingRow>> LISTING_DOC = (rs, n) -> {
+    ListingRow row = ListingRow.MAPPER.mapRow(rs, n);
+    return new Doc<>(row.id(), row,
+      Map.of(
+        "tag", ListingTags.parse(row.tags()),
+        "provider", ListingTags.parse(row.providerId()),
+        "status", ListingTags.parse(row.status())),
+      Map.of(
+        "price", row.price(),
+        "rating", rs.getDouble(9)));
+  };
+
+  private static final RowMapper<Doc<PlayerRow>> PLAYER_DOC = (rs, n) -> {
+    PlayerRow row = PlayerRow.MAPPER.mapRow(rs, n);
+    return new Doc<>(row.id(), row,
+      Map.of(
+        "role", ListingTags.parse(row.role()),
+        "language", ListingTags.parse(rs.getString(9)),
+        "specialty", ListingTags.parse(rs.getString(10)),
+        "onLocation", List.of(String.valueOf(rs.getInt(11) != 0)),
+        "studioAvailable", List.of(String.valueOf(rs.getInt(12) != 0))),
+      Map.of(
+        "hourlyRate", row.hourlyRate(),
+        "rating", row.rating(),
+        "experienceYears", (double) rs.getInt(13),
+        "jobs", (double) row.jobs()));
+  };
+
+  private final JdbcTemplate jdbc;
+  private final CatalogSuggestions suggestions;
+  private final FacetIndex<ListingRow> listings = new FacetIndex<>(List.of("tag", "provider", "status"), List.of("price", "rating"));
+  private final FacetIndex<PlayerRow> providers = new FacetIndex<>(
+    List.of("role", "language", "specialty", "onLocation", "studioAvailable"),
+    List.of("hourlyRate", "rating", "experienceYears", "jobs"));
+
+  public CatalogFacets(JdbcTemplate jdbc, CatalogSuggestions suggestions) {
+    this.jdbc = jdbc;
+    this.suggestions = suggestions;
+  }
+
+  public FacetIndex<ListingRow> listings() {
+    return listings;
+  }
+
+  public FacetIndex<PlayerRow> providers() {
+    return providers;
+  }
+
+  @PostConstruct
+  public void reload() {
+    try {
+      providers.reset(jdbc.query(PLAYER_SELECT, PLAYER_DOC));
+      listings.reset(jdbc.query(LISTING_SELECT, LISTING_DOC));
+    } catch (Exception ignored) {
+    }
+  }
+
+  public void refreshListing(String id) {
+    suggestions.markDirty();
+    try {
+      List<Doc<ListingRow>> found = jdbc.query(LISTING_SELECT + " WHERE id=?", LISTING_DOC, id);
+      if (found.isEmpty()) listings.remove(id); else listings.put(found.get(0));
+    } catch (Exception ignored) {
+    }
+  }
+
+  public void removeListing(String id) {
+    suggestions.markDirty();
+    listings.remove(id);
+  }
+
+  /** Re-reads the provider and its listings (which carry the provider's rating). */
+  public void refreshProvider(String providerId) {
+    if (providerId == null || providerId.isBlank()) return;
+    suggestions.markDirty();
+    try {
+      List<Doc<PlayerRow>> found = jdbc.query(PLAYER_SELECT + " WHERE id=?", PLAYER_DOC, providerId);
+      if (found.isEmpty()) providers.remove(providerId); else providers.put(found.get(0));
+      for (String id : listings.idsWith("provider", providerId.toLowerCase())) refreshListing(id);
+    } catch (Exception ignored) {
+    }
+  }
+
+  public void removeProvider(String providerId) {
+    if (providerId == null) return;
+    suggestions.markDirty();
+    for (String id : listings.idsWith("provider", providerId.toLowerCase())) listings.remove(id);
+    providers.remove(providerId);
+  }
+}
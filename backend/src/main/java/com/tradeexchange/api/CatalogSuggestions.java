@@ -0,0 +1,120 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.common.ListingTags;
+import com.tradeexchange.common.PrefixTrie;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Typeahead over provider names, listing titles, tags and specialties. The whole catalog is folded
+ * into an immutable {@link PrefixTrie} that is swapped in atomically; catalog writes only mark it
+ * dirty and a background task rebuilds it, so lookups never wait on a write or a query.
+ *
+ * Every word of a suggestion is a key, so "harp" finds "Morgan Harper". Weights come from the
+ * provider's rating and completed jobs; tags and specialties add up the weights of what carries them.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class CatalogSuggestions {
+
+  public record Suggestion(String text, String type, String id, double weight) {}
+
+  private record Snapshot(PrefixTrie trie, List<Suggestion> suggestions) {}
+
+  static final int MAX_RESULTS = 10;
+  private static final int MAX_KEY = 48;
+
+  private final JdbcTemplate jdbc;
+  private final AtomicBoolean dirty = new AtomicBoolean();
+  private volatile Snapshot snapshot = new Snapshot(PrefixTrie.builder(MAX_RESULTS).build(), List.of());
+
+  public CatalogSuggestions(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  public List<Suggestion> suggest(String query, int limit) {
+    String prefix = normalize(query);
+    if (prefix.isEmpty()) return List.of();
+    Snapshot current = snapshot;
+    int[] hits = current.trie().top(prefix, Math.max(1, Math.min(MAX_RESULTS, limit)));
+    List<Suggestion> out = new ArrayList<>(hits.length);
+    for (int hit : hits) out.add(current.suggestions().get(hit));
+    return out;
+  }
+
+  public void markDirty() {
+    dirty.set(true);
+  }
+
+  @Scheduled(fixedDelayString = "${app.suggest.rebuild-delay:PT2S}")
+  public void rebuildIfDirty() {
+    if (dirty.getAndSet(false)) rebuild();
+  }
+
+  @PostConstruct
+  public void rebuild() {
+    try {
+      snapshot = load();
+    } catch (Exception e) {
+      dirty.set(true);
+    }
+  }
+
+  private Snapshot load() {
+    List<Suggestion> suggestions = new ArrayList<>();
+    Map<String, Double> providerWeight = new HashMap<>();
+    Map<String, Double> specialties = new HashMap<>();
+    Map<String, String> specialtyText = new HashMap<>();
+    jdbc.query("SELECT id, name, rating, jobs, specialties FROM players", rs -> {
+      String id = rs.getString(1);
+      double weight = popularity(rs.getDouble(3), rs.getLong(4));
+      providerWeight.put(id, weight);
+      String name = rs.getString(2);
+      if (name != null && !name.isBlank()) suggestions.add(new Suggestion(name.trim(), "provider", id, weight));
+      String raw = rs.getString(5);
+      if (raw == null) return;
+      for (String s : raw.split(",")) {
+        String text = s.trim();
+        if (text.isEmpty()) continue;
+        String key = normalize(text);
+        specialties.merge(key, weight, Double::sum);
+        specialtyText.putIfAbsent(key, text);
+      }
+    });
+    Map<String, Double> tags = new HashMap<>();
+    jdbc.query("SELECT id, title, providerId, tags FROM listings", rs -> {
+      double weight = providerWeight.getOrDefault(rs.getString(3), 0.0);
+      String title = rs.getString(2);
+      if (title != null && !title.isBlank()) suggestions.add(new Suggestion(title.trim(), "listing", rs.getString(1), weight));
+      for (String tag : ListingTags.parse(rs.getString(4))) tags.merge(tag, weight, Double::sum);
+    });
+    tags.forEach((tag, weight) -> suggestions.add(new Suggestion(tag, "tag", tag, weight)));
+    specialties.forEach((key, weight) -> suggestions.add(new Suggestion(specialtyText.get(key), "specialty", key, weight)));
+
+    PrefixTrie.Builder builder = PrefixTrie.builder(MAX_RESULTS);
+    for (int i = 0; i < suggestions.size(); i++) {
+      Suggestion s = suggestions.get(i);
+      String key = normalize(s.text());
+      for (int start = 0; start < key.length(); start++) {
+        if (start > 0 && key.charAt(start - 1) != ' ') continue;
+        builder.add(key.substring(start, Math.min(key.length(), start + MAX_KEY)), i, s.weight());
+      }
+    }
+    return new Snapshot(builder.build(), List.copyOf(suggestions));
+  }
+
+  private static double popularity(double rating, long jobs) {
+    return Math.round(rating * (1 + Math.log1p(Math.max(0, jobs))) * 100) / 100.0;
+  }
+
+  static String normalize(String text) {
+    if (text == null) return "";
+    return text.trim().toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+  }
+}
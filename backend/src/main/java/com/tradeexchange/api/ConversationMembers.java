@@ -0,0 +1,72 @@
+package com.tradeexchange.api;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Maintains {@code conversation_members}: who takes part in each conversation, their read cursor
+ * ({@code lastReadAt}), an unread counter and the conversation's last activity. Posting bumps every
+ * other member's counter and reading resets the reader's, so the inbox and its badge are plain
+ * indexed reads instead of per-thread diffs.
+ *
+ * Call the write methods inside the same transaction as the message or conversation write.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class ConversationMembers {
+
+  private final JdbcTemplate jdbc;
+
+  public ConversationMembers(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  public void join(String conversationId, Collection<String> userIds, long at) {
+    jdbc.batchUpdate("INSERT OR IGNORE INTO conversation_members (userId,conversationId,unread,lastReadAt,lastActivityAt) VALUES (?,?,0,?,?)",
+      userIds.stream().map(uid -> new Object[]{ uid, conversationId, at, at }).toList());
+  }
+
+  public boolean isMember(String conversationId, String userId) {
+    return Boolean.TRUE.equals(jdbc.query("SELECT 1 FROM conversation_members WHERE userId=? AND conversationId=?",
+      ps -> { ps.setString(1, userId); ps.setString(2, conversationId); }, rs -> { return rs.next(); }));
+  }
+
+  /** A message from {@code senderId}: unread for everyone else, read up to now for the sender. */
+  public void posted(String conversationId, String senderId, long at) {
+    jdbc.update("UPDATE conversation_members SET unread = unread + 1, lastActivityAt=? WHERE conversationId=? AND userId<>?", at, conversationId, senderId);
+    jdbc.update("UPDATE conversation_members SET unread = 0, lastReadAt=?, lastActivityAt=? WHERE conversationId=? AND userId=?", at, at, conversationId, senderId);
+  }
+
+  public void read(String conversationId, String userId, long at) {
+    jdbc.update("UPDATE conversation_members SET unread = 0, lastReadAt = MAX(COALESCE(lastReadAt, 0), ?) WHERE userId=? AND conversationId=? AND (unread <> 0 OR lastReadAt IS NULL OR lastReadAt < ?)",
+      at, userId, conversationId, at);
+  }
+
+  /** Total unread messages and threads with any, from the caller's member rows. */
+  public Map<String,Object> unread(String userId) {
+    return jdbc.query("SELECT COALESCE(SUM(unread), 0), COUNT(*) FILTER (WHERE unread > 0) FROM conversation_members WHERE userId=?",
+      ps -> ps.setString(1, userId),
+      rs -> {
+        rs.next();
+        return Map.of("unread", rs.getLong(1), "conversations", rs.getLong(2));
+      });
+  }
+
+  // Databases from before member rows: derive them from who has messages in each conversation, all read
+  @PostConstruct
+  public void backfill() {
+    try {
+      Integer existing = jdbc.query("SELECT 1 FROM conversation_members LIMIT 1", rs -> rs.next() ? 1 : 0);
+      if (existing != null && existing == 1) return;
+      jdbc.update("INSERT OR IGNORE INTO conversation_members (userId,conversationId,unread,lastReadAt,lastActivityAt) " +
+        "SELECT p.userId, p.conversationId, 0, a.lastAt, a.lastAt FROM (SELECT DISTINCT userId, conversationId FROM messages WHERE userId IS NOT NULL AND conversationId IS NOT NULL) p " +
+        "JOIN (SELECT conversationId, COALESCE(MAX(createdAt), 0) AS lastAt FROM messages GROUP BY conversationId) a ON a.conversationId = p.conversationId");
+    } catch (Exception ignored) {
+    }
+  }
+}
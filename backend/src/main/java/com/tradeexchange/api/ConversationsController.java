@@ -1,56 +1,109 @@
 package com.tradeexchange.api;
 
+import com.tradeexchange.api.dto.ConversationRow;
+import com.tradeexchange.api.dto.InboxRow;
+import com.tradeexchange.api.dto.MessageRow;
+import com.tradeexchange.common.IdGenerator;
 import com.tradeexchange.common.SessionResolver;
+import com.tradeexchange.common.Timestamps;
 import com.tradeexchange.common.SessionResolver.UserSession;
+import com.tradeexchange.common.TieredPages;
+import com.tradeexchange.common.json.JsonRowStreamer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.Instant;
 import java.util.*;
 
 @RestController
 @RequestMapping("/api")
 public class ConversationsController {
+  private static final int DEFAULT_WAIT_SECONDS = 25;
+  private static final int MAX_WAIT_SECONDS = 30;
+  private static final int MAX_SEARCH_RESULTS = 50;
+  private static final int MESSAGE_PAGE = 100;
+  private static final int MAX_MESSAGE_PAGE = 200;
+
   private final org.springframework.jdbc.core.JdbcTemplate jdbc;
   private final SessionResolver sessions;
+  private final JsonRowStreamer rows;
+  private final IdGenerator ids;
+  private final TransactionTemplate tx;
+  private final MessageFeed feed;
+  private final ConversationMembers members;
+  private final MessageSearch search;
+  private final MessageStore store;
 
-  public ConversationsController(org.springframework.jdbc.core.JdbcTemplate jdbc, SessionResolver sessions){
+  public ConversationsController(org.springframework.jdbc.core.JdbcTemplate jdbc, SessionResolver sessions, JsonRowStreamer rows, IdGenerator ids, TransactionTemplate tx, MessageFeed feed, ConversationMembers members, MessageSearch search, MessageStore store){
     this.jdbc = jdbc;
     this.sessions = sessions;
+    this.rows = rows;
+    this.ids = ids;
+    this.tx = tx;
+    this.feed = feed;
+    this.members = members;
+    this.search = search;
+    this.store = store;
   }
 
   private ResponseEntity<Map<String,String>> unauthorized(){
     return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
   }
 
+  // Inbox: the caller's conversations with unread counts, most recent activity first
   @GetMapping("/conversations")
-  public ResponseEntity<?> list(@RequestHeader(value = "Authorization", required = false) String authz){
+  public ResponseEntity<StreamingResponseBody> list(@RequestHeader(value = "Authorization", required = false) String authz){
     Optional<UserSession> session = sessions.fromAuthorization(authz);
-    if (session.isEmpty()) return unauthorized();
+    if (session.isEmpty()) return rows.error(HttpStatus.UNAUTHORIZED, "error", "No token");
 
-    var rows = jdbc.query(
-      "SELECT DISTINCT c.id, c.kind, c.title, c.createdAt, c.lastMessage " +
-      "FROM conversations c " +
-      "JOIN messages m ON m.conversationId = c.id " +
+    return rows.array(
+      "SELECT " + InboxRow.COLUMNS + " " +
+      "FROM conversation_members m " +
+      "JOIN conversations c ON c.id = m.conversationId " +
       "WHERE m.userId = ? " +
-      "ORDER BY c.createdAt DESC",
+      "ORDER BY m.lastActivityAt DESC",
       ps -> ps.setString(1, session.get().id()),
-      rs -> {
-        List<Map<String,Object>> out = new ArrayList<>();
-        while (rs.next()){
-          Map<String,Object> row = new LinkedHashMap<>();
-          row.put("id", rs.getString("id"));
-          row.put("kind", rs.getString("kind"));
-          row.put("title", rs.getString("title"));
-          row.put("createdAt", rs.getString("createdAt"));
-          row.put("lastMessage", rs.getString("lastMessage"));
-          out.add(row);
-        }
-        return out;
-      }
+      InboxRow.MAPPER
     );
-    return ResponseEntity.ok(rows);
+  }
+
+  @GetMapping("/conversations/unread")
+  public ResponseEntity<?> unread(@RequestHeader(value = "Authorization", required = false) String authz){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return unauthorized();
+    return ResponseEntity.ok(members.unread(session.get().id()));
+  }
+
+  // Full-text search across the caller's conversations, newest first (best match first within a page); page with ?cursor=<next>
+  @GetMapping("/conversations/search")
+  public ResponseEntity<?> search(@RequestHeader(value = "Authorization", required = false) String authz,
+                                  @RequestParam("q") String q,
+                                  @RequestParam(value = "cursor", required = false) String cursor,
+                                  @RequestParam(value = "limit", required = false) Integer limit){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return unauthorized();
+    int n = Math.max(1, Math.min(MAX_SEARCH_RESULTS, Optional.ofNullable(limit).orElse(20)));
+    try{
+      MessageSearch.Page page = search.search(session.get().id(), q, cursor, n);
+      Map<String,Object> body = new LinkedHashMap<>();
+      body.put("hits", page.hits());
+      body.put("next", page.next());
+      return ResponseEntity.ok(body);
+    }catch(Exception e){ return ResponseEntity.badRequest().body(Map.of("error", "Invalid query")); }
+  }
+
+  // Moves the caller's read cursor to now and clears their unread count
+  @PostMapping("/conversations/{id}/read")
+  public ResponseEntity<?> markRead(@RequestHeader(value = "Authorization", required = false) String authz,
+                                    @PathVariable String id){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return unauthorized();
+    if (!members.isMember(id, session.get().id())) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","No access"));
+    members.read(id, session.get().id(), System.currentTimeMillis());
+    return ResponseEntity.ok(Map.of("ok", true));
   }
 
   public record NewConversation(String kind, String title, String providerId){}
@@ -59,78 +112,119 @@ public class ConversationsController {
                                   @RequestBody NewConversation req){
     Optional<UserSession> session = sessions.fromAuthorization(authz);
     if (session.isEmpty()) return unauthorized();
+    // A chat with a provider is the user's one conversation with them, not a new one per call
+    if (req.providerId() != null && !req.providerId().isBlank()) return withProvider(authz, req.providerId());
 
-    String id = UUID.randomUUID().toString().substring(0,8);
+    String id = ids.next();
     String kind = Optional.ofNullable(req.kind()).orElse("CHAT");
     String title = Optional.ofNullable(req.title()).orElse("Chat");
-    String createdAt = Instant.now().toString();
-    jdbc.update("INSERT INTO conversations (id,kind,title,createdAt,lastMessage) VALUES (?,?,?,?,?)",
-      id, kind, title, createdAt, ""
-    );
-    // Link the creator to this conversation by inserting a system marker message
-    jdbc.update(
-      "INSERT INTO messages (id, conversationId, userId, role, content, createdAt) VALUES (?,?,?,?,?,?)",
-      UUID.randomUUID().toString().substring(0,8), id, session.get().id(), "system", "", createdAt
-    );
-    // If a provider is specified, link the provider's trader user to this conversation
-    String providerId = Optional.ofNullable(req.providerId()).orElse("");
-    if (!providerId.isBlank()){
-      try{
-        List<String> traderUserIds = jdbc.query(
-          "SELECT id FROM users WHERE providerPlayerId=?",
-          ps -> ps.setString(1, providerId),
-          rs -> { java.util.List<String> out = new java.util.ArrayList<>(); while (rs.next()) out.add(rs.getString(1)); return out; }
-        );
-        for (String tuid : traderUserIds){
-          if (tuid!=null && !tuid.isBlank()){
-            jdbc.update(
-              "INSERT INTO messages (id, conversationId, userId, role, content, createdAt) VALUES (?,?,?,?,?,?)",
-              UUID.randomUUID().toString().substring(0,8), id, tuid, "system", "", createdAt
-            );
-          }
-        }
-      }catch(Exception ignore){}
-    }
+    long createdAt = System.currentTimeMillis();
+    tx.executeWithoutResult(status -> {
+      jdbc.update("INSERT INTO conversations (id,kind,title,createdAt,lastMessage) VALUES (?,?,?,?,?)",
+        id, kind, title, createdAt, ""
+      );
+      members.join(id, List.of(session.get().id()), createdAt);
+    });
     return ResponseEntity.ok(Map.of(
       "id", id,
       "kind", kind,
       "title", title,
-      "createdAt", createdAt,
+      "createdAt", Timestamps.iso(createdAt),
       "lastMessage", ""
     ));
   }
 
+  // Idempotent: returns the caller's conversation with this provider, creating it on first use.
+  // (userId, providerId) is unique, so concurrent calls converge on the same row.
+  @PutMapping("/conversations/providers/{providerId}")
+  public ResponseEntity<?> withProvider(@RequestHeader(value = "Authorization", required = false) String authz,
+                                        @PathVariable String providerId){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return unauthorized();
+    UserSession user = session.get();
+    if (providerId.equals(user.providerPlayerId())) return ResponseEntity.badRequest().body(Map.of("error", "Cannot message yourself"));
+
+    Map<String,Object> existing = conversationWith(user.id(), providerId);
+    if (existing != null) return ResponseEntity.ok(existing);
+
+    String providerName = jdbc.query("SELECT name FROM players WHERE id=?", ps -> ps.setString(1, providerId), rs -> rs.next() ? rs.getString(1) : null);
+    if (providerName == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Provider not found"));
+
+    String id = ids.next();
+    long createdAt = System.currentTimeMillis();
+    String title = "Chat · " + (providerName.isBlank() ? "Trader" : providerName);
+    boolean created = Boolean.TRUE.equals(tx.execute(status -> {
+      int inserted = jdbc.update("INSERT OR IGNORE INTO conversations (id,kind,title,createdAt,lastMessage,userId,providerId) VALUES (?,?,?,?,?,?,?)",
+        id, "CHAT", title, createdAt, "", user.id(), providerId);
+      if (inserted == 0) return false;
+      // The customer plus every user linked to the provider
+      List<String> participants = new ArrayList<>();
+      participants.add(user.id());
+      participants.addAll(jdbc.queryForList("SELECT id FROM users WHERE providerPlayerId=? AND id<>?", String.class, providerId, user.id()));
+      members.join(id, participants, createdAt);
+      return true;
+    }));
+    Map<String,Object> conversation = conversationWith(user.id(), providerId);
+    if (conversation == null) return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Conversation unavailable"));
+    if (created) conversation.put("created", true);
+    return ResponseEntity.ok(conversation);
+  }
+
+  private Map<String,Object> conversationWith(String userId, String providerId){
+    return jdbc.query("SELECT " + ConversationRow.COLUMNS + " FROM conversations c WHERE c.userId=? AND c.providerId=?",
+      ps -> { ps.setString(1, userId); ps.setString(2, providerId); },
+      rs -> {
+        if (!rs.next()) return null;
+        ConversationRow row = ConversationRow.MAPPER.mapRow(rs, 0);
+        Map<String,Object> m = new LinkedHashMap<>();
+        m.put("id", row.id());
+        m.put("kind", row.kind());
+        m.put("title", row.title());
+        m.put("createdAt", Timestamps.iso(row.createdAt()));
+        m.put("lastMessage", Optional.ofNullable(row.lastMessage()).orElse(""));
+        m.put("providerId", providerId);
+        m.put("created", false);
+        return m;
+      });
+  }
+
+  // Latest page of the thread, oldest first; X-Next-Cursor fetches the page before it
   @GetMapping("/conversations/{id}/messages")
   public ResponseEntity<?> getMessages(@RequestHeader(value = "Authorization", required = false) String authz,
-                                       @PathVariable String id){
+                                       @PathVariable String id,
+                                       @RequestParam(value = "cursor", required = false) String cursor,
+                                       @RequestParam(value = "limit", required = false) Integer limit){
     Optional<UserSession> session = sessions.fromAuthorization(authz);
     if (session.isEmpty()) return unauthorized();
-    // Enforce access: user must be associated with this conversation via messages
-    Integer hasAccess = jdbc.query(
-      "SELECT 1 FROM messages WHERE conversationId=? AND userId=? LIMIT 1",
-      ps -> { ps.setString(1, id); ps.setString(2, session.get().id()); },
-      rs -> rs.next() ? 1 : 0
-    );
-    if (hasAccess == 0) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","No access"));
+    // Enforce access: user must be a member of this conversation
+    if (!members.isMember(id, session.get().id())) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","No access"));
+    if (cursor == null || cursor.isBlank()) members.read(id, session.get().id(), System.currentTimeMillis());
 
-    var rows = jdbc.query("SELECT id,conversationId,userId,role,content,createdAt FROM messages WHERE conversationId=? ORDER BY createdAt ASC",
-      ps -> ps.setString(1,id),
-      rs -> {
-        List<Map<String,Object>> out = new ArrayList<>();
-        while (rs.next()){
-          Map<String,Object> row = new LinkedHashMap<>();
-          row.put("id", rs.getString("id"));
-          row.put("conversationId", rs.getString("conversationId"));
-          row.put("userId", rs.getString("userId"));
-          row.put("role", rs.getString("role"));
-          row.put("content", rs.getString("content"));
-          row.put("createdAt", rs.getString("createdAt"));
-          out.add(row);
-        }
-        return out;
-      }
-    );
-    return ResponseEntity.ok(rows);
+    int n = Math.max(1, Math.min(MAX_MESSAGE_PAGE, Optional.ofNullable(limit).orElse(MESSAGE_PAGE)));
+    TieredPages.Page<MessageRow> page = store.page(id, cursor, n);
+    ResponseEntity.BodyBuilder res = ResponseEntity.ok();
+    if (page.next() != null) res.header("X-Next-Cursor", page.next());
+    return res.body(page.rows());
+  }
+
+  // Long poll: answers as soon as there are messages after cursor (immediately if there already are),
+  // otherwise after wait seconds with an empty list. Pass the returned cursor to the next call.
+  @GetMapping("/conversations/{id}/messages/changes")
+  public DeferredResult<?> changes(@RequestHeader(value = "Authorization", required = false) String authz,
+                                   @PathVariable String id,
+                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                   @RequestParam(value = "wait", required = false) Integer waitSeconds){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return completed(unauthorized());
+    if (!members.isMember(id, session.get().id())) return completed(ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","No access")));
+    int seconds = Math.max(1, Math.min(MAX_WAIT_SECONDS, Optional.ofNullable(waitSeconds).orElse(DEFAULT_WAIT_SECONDS)));
+    return feed.changes(id, cursor, seconds * 1000L);
+  }
+
+  private static DeferredResult<ResponseEntity<?>> completed(ResponseEntity<?> response){
+    DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+    result.setResult(response);
+    return result;
   }
 
   public record NewMessage(String content){}
@@ -142,21 +236,19 @@ public class ConversationsController {
     if (session.isEmpty()) return unauthorized();
     UserSession user = session.get();
 
-    // Enforce access: user must be associated with this conversation via messages
-    Integer hasAccess = jdbc.query(
-      "SELECT 1 FROM messages WHERE conversationId=? AND userId=? LIMIT 1",
-      ps -> { ps.setString(1, id); ps.setString(2, user.id()); },
-      rs -> rs.next() ? 1 : 0
-    );
-    if (hasAccess == 0) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","No access"));
+    // Enforce access: user must be a member of this conversation
+    if (!members.isMember(id, user.id())) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","No access"));
 
     String content = Optional.ofNullable(req.content()).orElse("");
-    String now = Instant.now().toString();
-    String mid = UUID.randomUUID().toString().substring(0,8);
-    jdbc.update("INSERT INTO messages (id,conversationId,userId,role,content,createdAt) VALUES (?,?,?,?,?,?)",
-      mid, id, user.id(), "user", content, now
-    );
-    jdbc.update("UPDATE conversations SET lastMessage=? WHERE id=?", content, id);
+    long now = System.currentTimeMillis();
+    String mid = ids.next();
+    // The message goes to its shard first; conversation and unread state follow on the main database
+    store.append(new MessageRow(mid, id, user.id(), "user", content, now));
+    tx.executeWithoutResult(status -> {
+      jdbc.update("UPDATE conversations SET lastMessage=? WHERE id=?", content, id);
+      members.posted(id, user.id(), now);
+    });
+    feed.published(id);
 
     Map<String,Object> message = Map.of(
       "id", mid,
@@ -164,7 +256,7 @@ public class ConversationsController {
       "userId", user.id(),
       "role", "user",
       "content", content,
-      "createdAt", now
+      "createdAt", Timestamps.iso(now)
     );
     return ResponseEntity.ok(Map.of("ok", true, "message", message));
   }
@@ -0,0 +1,76 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.common.ListingTags;
+import com.tradeexchange.common.facets.FacetIndex;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+/**
+ * Filter + sort + page over the in-memory facet indexes, with facet counts in the same response.
+ *
+ * Facet fields take one or more values ({@code ?tag=photo&tag=portrait} or {@code ?tag=photo,portrait});
+ * range fields take {@code min<Field>} / {@code max<Field>} (e.g. {@code minPrice}); {@code sort} names a
+ * range field, prefixed with {@code -} for descending.
+ */
+@RestController
+@RequestMapping("/api/discover")
+public class DiscoverController {
+
+  private final CatalogFacets facets;
+  public DiscoverController(CatalogFacets facets){
+    this.facets = facets;
+  }
+
+  @GetMapping("/listings")
+  public ResponseEntity<?> listings(@RequestParam MultiValueMap<String,String> params){
+    return ResponseEntity.ok(search(facets.listings(), params));
+  }
+
+  @GetMapping("/providers")
+  public ResponseEntity<?> providers(@RequestParam MultiValueMap<String,String> params){
+    return ResponseEntity.ok(search(facets.providers(), params));
+  }
+
+  private static Map<String,Object> search(FacetIndex<?> index, MultiValueMap<String,String> params){
+    Map<String,Set<String>> terms = new HashMap<>();
+    for (String field : index.facetFields()){
+      List<String> raw = params.get(field);
+      if (raw == null) continue;
+      Set<String> values = new LinkedHashSet<>();
+      for (String v : raw) values.addAll(ListingTags.parse(v));
+      if (!values.isEmpty()) terms.put(field, values);
+    }
+    Map<String,Double> min = new HashMap<>();
+    Map<String,Double> max = new HashMap<>();
+    for (String field : index.rangeFields()){
+      String suffix = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+      Double lo = number(params.getFirst("min" + suffix));
+      Double hi = number(params.getFirst("max" + suffix));
+      if (lo != null) min.put(field, lo);
+      if (hi != null) max.put(field, hi);
+    }
+    String sort = Optional.ofNullable(params.getFirst("sort")).map(String::trim).orElse("");
+    boolean descending = sort.startsWith("-");
+    if (descending) sort = sort.substring(1);
+    if (!index.rangeFields().contains(sort)) sort = null;
+    int offset = Math.max(0, Optional.ofNullable(number(params.getFirst("offset"))).orElse(0.0).intValue());
+    int limit = Math.max(1, Math.min(100, Optional.ofNullable(number(params.getFirst("limit"))).orElse(20.0).intValue()));
+
+    var result = index.search(new FacetIndex.Query(terms, min, max, sort, descending, offset, limit));
+    Map<String,Object> body = new LinkedHashMap<>();
+    body.put("total", result.total());
+    body.put("offset", offset);
+    body.put("limit", limit);
+    body.put("items", result.items());
+    body.put("facets", result.facets());
+    return body;
+  }
+
+  private static Double number(String raw){
+    if (raw == null || raw.isBlank()) return null;
+    try{ return Double.valueOf(raw.trim()); }catch(NumberFormatException e){ return null; }
+  }
+}
@@ -0,0 +1,82 @@
+package com.tradeexchange.api;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Favorite providers per user, plus the {@code provider_favorite_counts} row per provider ("favorited by
+ * N" on provider cards). The count changes in the same transaction as the favorite row, and only when
+ * that row was actually inserted or deleted, so repeated adds and removes keep it exact.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class Favorites {
+
+  /** Outcome of an add or remove; {@code favoritedBy} is the provider's count afterwards. */
+  public record Change(boolean favorited, boolean changed, long favoritedBy) {}
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+
+  public Favorites(JdbcTemplate jdbc, TransactionTemplate tx) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+  }
+
+  /** Empty when the provider does not exist. */
+  public Optional<Change> add(String userId, String providerId) {
+    if (!providerExists(providerId)) return Optional.empty();
+    return Optional.ofNullable(tx.execute(status -> {
+      boolean inserted = jdbc.update("INSERT OR IGNORE INTO favorites (userId, providerId) VALUES (?,?)", userId, providerId) > 0;
+      if (inserted) {
+        jdbc.update("INSERT INTO provider_favorite_counts (providerId, count) VALUES (?,1) " +
+          "ON CONFLICT(providerId) DO UPDATE SET count = count + 1", providerId);
+      }
+      return new Change(true, inserted, count(providerId));
+    }));
+  }
+
+  public Change remove(String userId, String providerId) {
+    return tx.execute(status -> {
+      boolean deleted = jdbc.update("DELETE FROM favorites WHERE userId=? AND providerId=?", userId, providerId) > 0;
+      if (deleted) jdbc.update("UPDATE provider_favorite_counts SET count = MAX(count - 1, 0) WHERE providerId=?", providerId);
+      return new Change(false, deleted, count(providerId));
+    });
+  }
+
+  /** Stored counts for the given providers; providers nobody favorited are absent. */
+  public Map<String, Long> favoritedBy(Collection<String> providerIds) {
+    Map<String, Long> out = new HashMap<>();
+    if (providerIds.isEmpty()) return out;
+    String in = String.join(",", Collections.nCopies(providerIds.size(), "?"));
+    jdbc.query("SELECT providerId, count FROM provider_favorite_counts WHERE providerId IN (" + in + ")",
+      rs -> { out.put(rs.getString(1), rs.getLong(2)); }, providerIds.toArray());
+    return out;
+  }
+
+  // Databases created before the counters existed: rebuild them once from the favorites table
+  @PostConstruct
+  public void backfill() {
+    try {
+      Boolean missing = jdbc.query(
+        "SELECT 1 FROM favorites WHERE NOT EXISTS (SELECT 1 FROM provider_favorite_counts) LIMIT 1", rs -> { return rs.next(); });
+      if (!Boolean.TRUE.equals(missing)) return;
+      jdbc.update("INSERT INTO provider_favorite_counts (providerId, count) SELECT providerId, COUNT(*) FROM favorites GROUP BY providerId");
+    } catch (Exception ignored) {
+    }
+  }
+
+  private long count(String providerId) {
+    return jdbc.query("SELECT count FROM provider_favorite_counts WHERE providerId=?",
+      ps -> ps.setString(1, providerId), rs -> rs.next() ? rs.getLong(1) : 0L);
+  }
+
+  private boolean providerExists(String providerId) {
+    return Boolean.TRUE.equals(jdbc.query("SELECT 1 FROM players WHERE id=?", ps -> ps.setString(1, providerId), rs -> { return rs.next(); }));
+  }
+}
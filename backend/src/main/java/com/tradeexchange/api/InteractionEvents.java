@@ -0,0 +1,172 @@
+package com.tradeexchange.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeexchange.common.EventRing;
+import com.tradeexchange.common.IdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interaction events (profile views, listing views, contact clicks). {@link #record} only puts the
+ * event in an {@link EventRing}, so tracking never waits on the database; a background flush drains
+ * the ring and writes each batch in one transaction: the raw rows into {@code interactions}, plus
+ * grouped upserts into {@code user_provider_interactions} (favorites ranking) and
+ * {@code provider_daily_interactions} (per-provider daily counts). When the ring is full, events are
+ * dropped and counted rather than slowing the caller down.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class InteractionEvents {
+
+  public enum Kind {
+    PROFILE_VIEW("profile_view"),
+    LISTING_VIEW("listing_view"),
+    CONTACT_CLICK("contact_click");
+
+    final String wire;
+
+    Kind(String wire) {
+      this.wire = wire;
+    }
+
+    public static Optional<Kind> parse(String value) {
+      for (Kind k : values()) if (k.wire.equalsIgnoreCase(String.valueOf(value).trim())) return Optional.of(k);
+      return Optional.empty();
+    }
+  }
+
+  public record Event(String userId, String providerId, String listingId, Kind kind, long at) {}
+
+  private record Pair(String userId, String providerId) {}
+
+  private record Day(String providerId, String day) {}
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final IdGenerator ids;
+  private final Archiver archiver;
+  private final ObjectMapper json;
+  private final EventRing<Event> ring;
+  private final int batchSize;
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+
+  public InteractionEvents(JdbcTemplate jdbc, TransactionTemplate tx, IdGenerator ids, Archiver archiver, ObjectMapper json,
+                           @Value("${app.interactions.buffer:8192}") int capacity,
+                           @Value("${app.interactions.batch:1000}") int batchSize) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.ids = ids;
+    this.archiver = archiver;
+    this.json = json;
+    this.ring = new EventRing<>(capacity);
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  /** Queues the event; false when the buffer is full and it was dropped. */
+  public boolean record(Event event) {
+    if (ring.offer(event)) return true;
+    dropped.incrementAndGet();
+    return false;
+  }
+
+  public Map<String, Object> stats() {
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("buffered", ring.size());
+    out.put("capacity", ring.capacity());
+    out.put("written", written.get());
+    out.put("dropped", dropped.get());
+    return out;
+  }
+
+  @Scheduled(fixedDelayString = "${app.interactions.flush-interval:PT1S}")
+  public synchronized void flush() {
+    List<Event> batch = new ArrayList<>(Math.min(batchSize, ring.capacity()));
+    while (ring.drainTo(batch, batchSize) > 0) {
+      try {
+        write(batch);
+        written.addAndGet(batch.size());
+      } catch (Exception e) {
+        dropped.addAndGet(batch.size());
+      }
+      batch.clear();
+    }
+  }
+
+  @PreDestroy
+  public void drain() {
+    flush();
+  }
+
+  // Rollups were introduced after interactions; fill them once from the hot and archived rows
+  @PostConstruct
+  public void backfill() {
+    try {
+      Boolean empty = jdbc.query("SELECT 1 FROM user_provider_interactions LIMIT 1", rs -> { return !rs.next(); });
+      if (!Boolean.TRUE.equals(empty)) return;
+      String rows = "SELECT userId, providerId, at, kind FROM main.interactions UNION ALL SELECT userId, providerId, at, kind FROM archive.interactions";
+      archiver.database().attached(jdbc, true, db -> {
+        db.update("INSERT INTO user_provider_interactions (userId, providerId, interactions, lastAt) " +
+          "SELECT userId, providerId, COUNT(*), MAX(at) FROM (" + rows + ") GROUP BY userId, providerId");
+        db.update("DELETE FROM provider_daily_interactions");
+        db.update("INSERT INTO provider_daily_interactions (providerId, day, total, profileViews, listingViews, contactClicks) " +
+          "SELECT providerId, date(at / 1000, 'unixepoch'), COUNT(*), " +
+          "SUM(kind IS 'profile_view'), SUM(kind IS 'listing_view'), SUM(kind IS 'contact_click') " +
+          "FROM (" + rows + ") GROUP BY providerId, date(at / 1000, 'unixepoch')");
+        return null;
+      });
+    } catch (Exception ignored) {
+    }
+  }
+
+  private void write(List<Event> batch) throws JsonProcessingException {
+    // Unknown providers are dropped here rather than checked on the request path
+    Set<String> providerIds = new HashSet<>();
+    for (Event e : batch) providerIds.add(e.providerId());
+    Set<String> known = new HashSet<>(jdbc.queryForList(
+      "SELECT id FROM players WHERE id IN (SELECT value FROM json_each(?))", String.class, json.writeValueAsString(providerIds)));
+
+    List<Object[]> rows = new ArrayList<>();
+    Map<Pair, long[]> pairs = new HashMap<>();
+    Map<Day, long[]> days = new HashMap<>();
+    for (Event e : batch) {
+      if (!known.contains(e.providerId())) continue;
+      rows.add(new Object[]{ ids.next(), e.userId(), e.providerId(), e.listingId(), e.at(), e.kind().wire });
+      long[] pair = pairs.computeIfAbsent(new Pair(e.userId(), e.providerId()), k -> new long[2]);
+      pair[0]++;
+      pair[1] = Math.max(pair[1], e.at());
+      long[] day = days.computeIfAbsent(new Day(e.providerId(), Instant.ofEpochMilli(e.at()).atZone(ZoneOffset.UTC).toLocalDate().toString()), k -> new long[Kind.values().length]);
+      day[e.kind().ordinal()]++;
+    }
+    if (rows.isEmpty()) return;
+
+    List<Object[]> pairArgs = new ArrayList<>();
+    pairs.forEach((k, v) -> pairArgs.add(new Object[]{ k.userId(), k.providerId(), v[0], v[1] }));
+    List<Object[]> dayArgs = new ArrayList<>();
+    days.forEach((k, v) -> {
+      long total = 0;
+      for (long n : v) total += n;
+      dayArgs.add(new Object[]{ k.providerId(), k.day(), total, v[Kind.PROFILE_VIEW.ordinal()], v[Kind.LISTING_VIEW.ordinal()], v[Kind.CONTACT_CLICK.ordinal()] });
+    });
+    tx.executeWithoutResult(status -> {
+      jdbc.batchUpdate("INSERT INTO interactions (id, userId, providerId, listingId, at, kind) VALUES (?,?,?,?,?,?)", rows);
+      jdbc.batchUpdate("INSERT INTO user_provider_interactions (userId, providerId, interactions, lastAt) VALUES (?,?,?,?) " +
+        "ON CONFLICT(userId, providerId) DO UPDATE SET interactions = interactions + excluded.interactions, lastAt = MAX(COALESCE(lastAt, 0), excluded.lastAt)", pairArgs);
+      jdbc.batchUpdate("INSERT INTO provider_daily_interactions (providerId, day, total, profileViews, listingViews, contactClicks) VALUES (?,?,?,?,?,?) " +
+        "ON CONFLICT(providerId, day) DO UPDATE SET total = total + excluded.total, profileViews = profileViews + excluded.profileViews, " +
+        "listingViews = listingViews + excluded.listingViews, contactClicks = contactClicks + excluded.contactClicks", dayArgs);
+    });
+  }
+}
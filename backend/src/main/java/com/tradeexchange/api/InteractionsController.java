@@ -0,0 +1,83 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.common.SessionResolver;
+import com.tradeexchange.common.SessionResolver.UserSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api")
+public class InteractionsController {
+
+  private static final int MAX_EVENTS = 100;
+  private static final int MAX_DAYS = 365;
+
+  private final JdbcTemplate jdbc;
+  private final SessionResolver sessions;
+  private final InteractionEvents events;
+
+  public InteractionsController(JdbcTemplate jdbc, SessionResolver sessions, InteractionEvents events) {
+    this.jdbc = jdbc;
+    this.sessions = sessions;
+    this.events = events;
+  }
+
+  public record TrackedEvent(String type, String providerId, String listingId){}
+  public record TrackRequest(List<TrackedEvent> events){}
+
+  // Only buffers the events; they are written in batches by InteractionEvents
+  @PostMapping("/interactions")
+  public ResponseEntity<?> track(@RequestHeader(value = "Authorization", required = false) String authz,
+                                 @RequestBody TrackRequest req){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    List<TrackedEvent> batch = req == null || req.events() == null ? List.of() : req.events();
+    if (batch.size() > MAX_EVENTS) return ResponseEntity.badRequest().body(Map.of("error", "At most " + MAX_EVENTS + " events per request"));
+
+    long now = System.currentTimeMillis();
+    int accepted = 0, dropped = 0, invalid = 0;
+    for (TrackedEvent e : batch) {
+      Optional<InteractionEvents.Kind> kind = e == null ? Optional.empty() : InteractionEvents.Kind.parse(e.type());
+      if (kind.isEmpty() || e.providerId() == null || e.providerId().isBlank()) { invalid++; continue; }
+      String listingId = e.listingId() == null || e.listingId().isBlank() ? null : e.listingId().trim();
+      if (events.record(new InteractionEvents.Event(session.get().id(), e.providerId().trim(), listingId, kind.get(), now))) accepted++;
+      else dropped++;
+    }
+    Map<String,Object> body = new LinkedHashMap<>();
+    body.put("accepted", accepted);
+    body.put("dropped", dropped);
+    body.put("invalid", invalid);
+    return ResponseEntity.accepted().body(body);
+  }
+
+  // Daily counts for the trader's own profile; admins may ask for any provider
+  @GetMapping("/trader/interactions/daily")
+  public ResponseEntity<?> daily(@RequestHeader(value = "Authorization", required = false) String authz,
+                                 @RequestParam(value = "days", required = false, defaultValue = "30") int days,
+                                 @RequestParam(value = "providerId", required = false) String providerId){
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    UserSession user = session.get();
+    String target;
+    if ("ADMIN".equalsIgnoreCase(user.role()) && providerId != null && !providerId.isBlank()) target = providerId.trim();
+    else if ("TRADER".equalsIgnoreCase(user.role()) && user.providerPlayerId() != null) target = user.providerPlayerId();
+    else return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not a trader"));
+
+    int span = Math.max(1, Math.min(days, MAX_DAYS));
+    String since = LocalDate.now(ZoneOffset.UTC).minusDays(span - 1L).toString();
+    List<Map<String,Object>> rows = jdbc.queryForList(
+      "SELECT day, total, profileViews, listingViews, contactClicks FROM provider_daily_interactions " +
+      "WHERE providerId = ? AND day >= ? ORDER BY day", target, since);
+    Map<String,Object> body = new LinkedHashMap<>();
+    body.put("providerId", target);
+    body.put("since", since);
+    body.put("days", rows);
+    return ResponseEntity.ok(body);
+  }
+}
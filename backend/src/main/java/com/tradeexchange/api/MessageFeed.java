@@ -0,0 +1,107 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.api.dto.MessageRow;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Long-poll change feed for conversation messages. A request with nothing new after its cursor is
+ * parked as a {@link DeferredResult} (no servlet thread held) until {@link #published} is called for
+ * its conversation or the timeout passes, and is then answered with only the messages after the cursor.
+ */
+@Component
+public class MessageFeed {
+
+  static final int MAX_BATCH = 200;
+  private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+  private record Waiter(String conversationId, String cursor, DeferredResult<Map<String,Object>> result) {}
+
+  private final MessageStore store;
+  private final Executor executor;
+  private final Map<String, Set<Waiter>> waiting = new ConcurrentHashMap<>();
+
+  public MessageFeed(MessageStore store, @Qualifier("applicationTaskExecutor") Executor executor) {
+    this.store = store;
+    this.executor = executor;
+  }
+
+  /** Messages after {@code cursor}, now if there are any, otherwise when the next one is posted. */
+  public DeferredResult<Map<String,Object>> changes(String conversationId, String cursor, long timeoutMillis) {
+    DeferredResult<Map<String,Object>> result = new DeferredResult<>(timeoutMillis, () -> body(List.of(), cursor));
+    Waiter waiter = new Waiter(conversationId, cursor, result);
+    // Register before reading so a message posted in between still wakes this request
+    waiting.compute(conversationId, (k, set) -> {
+      Set<Waiter> waiters = set == null ? ConcurrentHashMap.newKeySet() : set;
+      waiters.add(waiter);
+      return waiters;
+    });
+    result.onCompletion(() -> unregister(waiter));
+    deliver(waiter);
+    return result;
+  }
+
+  /** Wakes the requests waiting on this conversation; they re-read off the caller's thread. */
+  public void published(String conversationId) {
+    Set<Waiter> waiters = waiting.get(conversationId);
+    if (waiters == null || waiters.isEmpty()) return;
+    for (Waiter waiter : List.copyOf(waiters)) {
+      executor.execute(() -> deliver(waiter));
+    }
+  }
+
+  private void deliver(Waiter waiter) {
+    if (waiter.result().isSetOrExpired()) return;
+    try {
+      List<MessageRow> rows = since(waiter.conversationId(), waiter.cursor());
+      if (!rows.isEmpty()) waiter.result().setResult(body(rows, waiter.cursor()));
+    } catch (Exception e) {
+      waiter.result().setErrorResult(e);
+    }
+  }
+
+  private List<MessageRow> since(String conversationId, String cursor) {
+    String[] after = decode(cursor);
+    long at = after == null ? Long.MIN_VALUE : Long.parseLong(after[0]);
+    String id = after == null ? "" : after[1];
+    return store.since(conversationId, at, id, MAX_BATCH);
+  }
+
+  private void unregister(Waiter waiter) {
+    waiting.computeIfPresent(waiter.conversationId(), (k, set) -> {
+      set.remove(waiter);
+      return set.isEmpty() ? null : set;
+    });
+  }
+
+  private static Map<String,Object> body(List<MessageRow> rows, String cursor) {
+    Map<String,Object> m = new LinkedHashMap<>();
+    m.put("messages", rows);
+    m.put("cursor", rows.isEmpty() ? cursor : encode(rows.get(rows.size() - 1)));
+    return m;
+  }
+
+  private static String encode(MessageRow last) {
+    String raw = Objects.requireNonNullElse(last.createdAt(), 0L) + ":" + last.id();
+    return B64.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String[] decode(String cursor) {
+    if (cursor == null || cursor.isBlank()) return null;
+    try {
+      String[] parts = new String(B64D.decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+      if (parts.length != 2) return null;
+      Long.parseLong(parts[0]);
+      return parts;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
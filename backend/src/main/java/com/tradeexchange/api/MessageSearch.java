@@ -0,0 +1,116 @@
+package com.tradeexchange.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeexchange.common.ShardedSqlite;
+import com.tradeexchange.common.TieredPages;
+import com.tradeexchange.common.Timestamps;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Full-text search over message content. Each message shard keeps its own external-content FTS5
+ * index ({@code messages_fts}, maintained by triggers; see {@link MessageStore}), and so does the
+ * archive. The caller's conversation ids from {@code conversation_members} are passed into each
+ * MATCH query, so hits from other people's conversations are never ranked, returned or counted
+ * against the page size. Per-shard hits are merged newest first by (createdAt, id), which is also
+ * the cursor; both are fixed when a message is written, so pages never skip or repeat hits. As with
+ * {@link TieredPages}, the archive is only searched once a page reaches past its horizon. bm25 rank
+ * is computed from each file's own statistics and is not comparable across files, so it only orders
+ * hits within a page.
+ */
+@Component
+public class MessageSearch {
+
+  public record Hit(String messageId, String conversationId, String conversationTitle, String userId, String role, String createdAt, String snippet) {}
+
+  public record Page(List<Hit> hits, String next) {}
+
+  private record Row(Hit hit, long createdAt, String id, double rank) {}
+
+  private static final Comparator<Row> NEWEST = Comparator.comparingLong(Row::createdAt).thenComparing(Row::id).reversed();
+
+  private final JdbcTemplate jdbc;
+  private final MessageStore store;
+  private final Archiver archiver;
+  private final ObjectMapper json;
+
+  public MessageSearch(JdbcTemplate jdbc, MessageStore store, Archiver archiver, ObjectMapper json) {
+    this.jdbc = jdbc;
+    this.store = store;
+    this.archiver = archiver;
+    this.json = json;
+  }
+
+  /** Newest matches first within the user's conversations, best match first within each page; {@code cursor} is the previous page's {@code next}. */
+  public Page search(String userId, String text, String cursor, int limit) throws JsonProcessingException {
+    String match = matchExpression(text);
+    if (match == null) return new Page(List.of(), null);
+    Map<String,String> titles = new HashMap<>();
+    jdbc.query("SELECT cm.conversationId, c.title FROM conversation_members cm JOIN conversations c ON c.id = cm.conversationId WHERE cm.userId=?",
+      ps -> ps.setString(1, userId), rs -> { titles.put(rs.getString(1), rs.getString(2)); });
+    if (titles.isEmpty()) return new Page(List.of(), null);
+    ShardedSqlite shards = store.shards();
+    Map<Integer, List<String>> byShard = new TreeMap<>();
+    for (String id : titles.keySet()) byShard.computeIfAbsent(shards.indexOf(id), k -> new ArrayList<>()).add(id);
+    // Conversation ids as JSON arrays for json_each, per shard and for the archive (which holds every shard's rows)
+    Map<Integer, String> shardIds = new TreeMap<>();
+    for (Map.Entry<Integer, List<String>> entry : byShard.entrySet()) shardIds.put(entry.getKey(), json.writeValueAsString(entry.getValue()));
+    String allIds = json.writeValueAsString(titles.keySet());
+
+    TieredPages.Page<Row> page = TieredPages.newestFirst(cursor, limit, archiver.horizon(Archiver.MESSAGES),
+      (at, id, n) -> {
+        List<Row> rows = new ArrayList<>();
+        shardIds.forEach((shard, conversations) -> rows.addAll(before(shards.shard(shard).jdbc(), titles, match, conversations, at, id, n)));
+        rows.sort(NEWEST);
+        return rows.size() > n ? rows.subList(0, n) : rows;
+      },
+      (at, id, n) -> before(archiver.database().jdbc(), titles, match, allIds, at, id, n),
+      Row::createdAt, Row::id);
+    List<Row> rows = new ArrayList<>(page.rows());
+    rows.sort(Comparator.comparingDouble(Row::rank));
+    List<Hit> hits = new ArrayList<>();
+    for (Row row : rows) hits.add(row.hit());
+    return new Page(hits, page.next());
+  }
+
+  // Up to limit hits in the given conversations of one file strictly before (at, id), newest first
+  private static List<Row> before(JdbcTemplate db, Map<String,String> titles, String match, String conversations, Long at, String id, int limit) {
+    List<Object> args = new ArrayList<>();
+    args.add(match);
+    args.add(conversations);
+    String seek = "";
+    if (at != null) {
+      seek = " AND (m.createdAt, m.id) < (?, ?)";
+      args.add(at);
+      args.add(id);
+    }
+    args.add(limit);
+    return db.query(
+      "SELECT m.id, m.conversationId, m.userId, m.role, m.createdAt, snippet(messages_fts, 0, '[', ']', '…', 12), f.rank " +
+      "FROM messages_fts f " +
+      "JOIN messages m ON m.rowid = f.rowid " +
+      "WHERE messages_fts MATCH ? AND m.conversationId IN (SELECT value FROM json_each(?))" + seek + " " +
+      "ORDER BY m.createdAt DESC, m.id DESC LIMIT ?",
+      (rs, n) -> new Row(
+        new Hit(rs.getString(1), rs.getString(2), titles.get(rs.getString(2)), rs.getString(3), rs.getString(4),
+          Timestamps.iso(rs.getLong(5)), rs.getString(6)),
+        rs.getLong(5), rs.getString(1), rs.getDouble(7)),
+      args.toArray());
+  }
+
+  // Each word becomes a quoted phrase (so FTS5 operators in user input are literal); the last one is a prefix
+  static String matchExpression(String text) {
+    if (text == null) return null;
+    List<String> terms = new ArrayList<>();
+    for (String word : text.trim().split("\\s+")) {
+      if (!word.isBlank()) terms.add("\"" + word.replace("\"", "\"\"") + "\"");
+    }
+    if (terms.isEmpty()) return null;
+    int last = terms.size() - 1;
+    terms.set(last, terms.get(last) + "*");
+    return String.join(" ", terms);
+  }
+}
@@ -0,0 +1,170 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.api.dto.MessageRow;
+import com.tradeexchange.common.ShardedSqlite;
+import com.tradeexchange.common.ShardedSqlite.Shard;
+import com.tradeexchange.common.TieredPages;
+import com.tradeexchange.common.json.JsonRow;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Chat messages, partitioned by conversation id across the {@link ShardedSqlite} message files. A
+ * conversation's messages all live in one shard, so every per-thread read or write touches a single
+ * file, and message writes no longer queue behind order and review writes on the main database.
+ * Conversations, members and unread counters stay in the main database.
+ *
+ * On startup, messages still in the main database's {@code messages} table are moved into their
+ * shards. If the shard count changed, rows that now route elsewhere are moved too. Messages older
+ * than the archive window are moved on again by {@link Archiver}; {@link #page} reads them back.
+ */
+@Component
+@DependsOn("conversationMembers")
+public class MessageStore {
+
+  static final String INSERT = "INSERT OR IGNORE INTO messages (" + MessageRow.COLUMNS + ") VALUES (?,?,?,?,?,?)";
+  private static final int MOVE_BATCH = 500;
+
+  private final JdbcTemplate jdbc;
+  private final ShardedSqlite shards;
+  private final Archiver archiver;
+
+  public MessageStore(JdbcTemplate jdbc, ShardedSqlite messageShards, Archiver archiver) {
+    this.jdbc = jdbc;
+    this.shards = messageShards;
+    this.archiver = archiver;
+  }
+
+  @PostConstruct
+  public void initialize() {
+    for (Shard shard : shards.all()) createSchema(shard.jdbc());
+    moveFromMainDatabase();
+    rebalance();
+  }
+
+  public void append(MessageRow message) {
+    shards.forKey(message.conversationId()).jdbc().update(INSERT, args(message));
+  }
+
+  /**
+   * The newest {@code limit} messages before {@code cursor} (the latest ones without a cursor), returned
+   * oldest first; {@code next} pages further back and reaches into the archive only past its horizon.
+   */
+  public TieredPages.Page<MessageRow> page(String conversationId, String cursor, int limit) {
+    TieredPages.Page<MessageRow> page = TieredPages.newestFirst(cursor, limit, archiver.horizon(Archiver.MESSAGES),
+      (at, id, n) -> before(shards.forKey(conversationId).jdbc(), conversationId, at, id, n),
+      (at, id, n) -> before(archiver.database().jdbc(), conversationId, at, id, n),
+      MessageRow::createdAt, MessageRow::id);
+    List<MessageRow> oldestFirst = new ArrayList<>(page.rows());
+    Collections.reverse(oldestFirst);
+    return new TieredPages.Page<>(oldestFirst, page.next());
+  }
+
+  /** Up to {@code limit} messages after ({@code createdAt}, {@code id}), oldest first. */
+  public List<MessageRow> since(String conversationId, long createdAt, String id, int limit) {
+    return shards.forKey(conversationId).jdbc().query(
+      "SELECT " + MessageRow.COLUMNS + " FROM messages WHERE conversationId=? AND (createdAt, id) > (?, ?) ORDER BY createdAt, id LIMIT ?",
+      MessageRow.MAPPER, conversationId, createdAt, id, limit);
+  }
+
+  private static List<MessageRow> before(JdbcTemplate db, String conversationId, Long at, String id, int limit) {
+    if (at == null) {
+      return db.query("SELECT " + MessageRow.COLUMNS + " FROM messages WHERE conversationId=? ORDER BY createdAt DESC, id DESC LIMIT ?",
+        MessageRow.MAPPER, conversationId, limit);
+    }
+    return db.query("SELECT " + MessageRow.COLUMNS + " FROM messages WHERE conversationId=? AND (createdAt, id) < (?, ?) ORDER BY createdAt DESC, id DESC LIMIT ?",
+      MessageRow.MAPPER, conversationId, at, id, limit);
+  }
+
+  ShardedSqlite shards() {
+    return shards;
+  }
+
+  private static Object[] args(MessageRow m) {
+    return new Object[]{ m.id(), m.conversationId(), m.userId(), m.role(), m.content(), m.createdAt() };
+  }
+
+  private void createSchema(JdbcTemplate shard) {
+    shard.execute("CREATE TABLE IF NOT EXISTS messages (id TEXT PRIMARY KEY, conversationId TEXT NOT NULL, userId TEXT, role TEXT, content TEXT, createdAt INTEGER)");
+    shard.execute("CREATE INDEX IF NOT EXISTS messages_conversation_created_at ON messages (conversationId, createdAt, id)");
+    createSearchIndex(shard);
+  }
+
+  /** The external-content FTS5 index over {@code messages.content} that {@link MessageSearch} queries, kept in step by triggers. */
+  static void createSearchIndex(JdbcTemplate db) {
+    boolean fresh = Boolean.FALSE.equals(db.query("SELECT 1 FROM sqlite_master WHERE name='messages_fts'", rs -> { return rs.next(); }));
+    db.execute("CREATE VIRTUAL TABLE IF NOT EXISTS messages_fts USING fts5(content, content='messages', content_rowid='rowid', tokenize='unicode61 remove_diacritics 2')");
+    db.execute("CREATE TRIGGER IF NOT EXISTS messages_fts_insert AFTER INSERT ON messages BEGIN " +
+      "INSERT INTO messages_fts (rowid, content) VALUES (NEW.rowid, NEW.content); END");
+    db.execute("CREATE TRIGGER IF NOT EXISTS messages_fts_delete AFTER DELETE ON messages BEGIN " +
+      "INSERT INTO messages_fts (messages_fts, rowid, content) VALUES ('delete', OLD.rowid, OLD.content); END");
+    db.execute("CREATE TRIGGER IF NOT EXISTS messages_fts_update AFTER UPDATE OF content ON messages BEGIN " +
+      "INSERT INTO messages_fts (messages_fts, rowid, content) VALUES ('delete', OLD.rowid, OLD.content); " +
+      "INSERT INTO messages_fts (rowid, content) VALUES (NEW.rowid, NEW.content); END");
+    if (fresh) db.execute("INSERT INTO messages_fts (messages_fts) VALUES ('rebuild')");
+  }
+
+  // Batches are copied (idempotently) before they are deleted, so an interrupted move just resumes
+  private void moveFromMainDatabase() {
+    try {
+      while (true) {
+        List<MessageRow> batch = jdbc.query("SELECT " + MessageRow.COLUMNS + " FROM messages WHERE conversationId IS NOT NULL ORDER BY rowid LIMIT ?",
+          MessageRow.MAPPER, MOVE_BATCH);
+        if (batch.isEmpty()) break;
+        copy(batch);
+        jdbc.batchUpdate("DELETE FROM messages WHERE id=?", batch.stream().map(m -> new Object[]{ m.id() }).toList());
+      }
+      jdbc.update("DELETE FROM messages WHERE conversationId IS NULL");
+      // Search now runs against each shard's own index
+      jdbc.execute("DROP TRIGGER IF EXISTS messages_fts_insert");
+      jdbc.execute("DROP TRIGGER IF EXISTS messages_fts_delete");
+      jdbc.execute("DROP TRIGGER IF EXISTS messages_fts_update");
+      jdbc.execute("DROP TABLE IF EXISTS messages_fts");
+    } catch (Exception ignored) {
+    }
+  }
+
+  // Each shard records the shard count it was written under; rows from a different layout are re-routed
+  private void rebalance() {
+    List<Shard> sources = new ArrayList<>();
+    for (Shard shard : shards.all()) {
+      Integer layout = shard.jdbc().queryForObject("PRAGMA user_version", Integer.class);
+      if (layout != null && layout != 0 && layout != shards.count()) sources.add(shard);
+    }
+    sources.addAll(shards.stray());
+    for (Shard source : sources) {
+      try {
+        long after = 0;
+        while (true) {
+          long from = after;
+          record Located(long rowid, MessageRow row) {}
+          List<Located> batch = source.jdbc().query(
+            "SELECT rowid, " + MessageRow.COLUMNS + " FROM messages WHERE rowid > ? ORDER BY rowid LIMIT ?",
+            (rs, n) -> new Located(rs.getLong(1), new MessageRow(rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6),
+              JsonRow.nullableLong(rs, 7))),
+            from, MOVE_BATCH);
+          if (batch.isEmpty()) break;
+          after = batch.get(batch.size() - 1).rowid();
+          List<MessageRow> moving = batch.stream().map(Located::row).filter(m -> shards.indexOf(m.conversationId()) != source.index() || source.index() >= shards.count()).toList();
+          copy(moving);
+          source.jdbc().batchUpdate("DELETE FROM messages WHERE id=?", moving.stream().map(m -> new Object[]{ m.id() }).toList());
+        }
+      } catch (Exception ignored) {
+      }
+    }
+    for (Shard shard : shards.all()) shard.jdbc().execute("PRAGMA user_version = " + shards.count());
+  }
+
+  private void copy(List<MessageRow> messages) {
+    Map<Integer, List<Object[]>> byShard = new HashMap<>();
+    for (MessageRow m : messages) byShard.computeIfAbsent(shards.indexOf(m.conversationId()), k -> new ArrayList<>()).add(args(m));
+    byShard.forEach((index, batch) -> {
+      Shard target = shards.shard(index);
+      target.tx().executeWithoutResult(status -> target.jdbc().batchUpdate(INSERT, batch));
+    });
+  }
+}
@@ -0,0 +1,241 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.common.ArchiveDatabase;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Order aggregates per (UTC day of {@code createdAt}, provider, status) in {@code order_rollups}:
+ * order count and summed {@code amount}. Triggers on {@code orders} move an order between cells as it
+ * is inserted or changes status, amount, provider or date, so every write path keeps the rollup in
+ * the same transaction. Archiving deletes hot rows without touching it; the rollup covers hot and
+ * archived orders alike, and {@link #removeHot} is the only deliberate subtraction.
+ *
+ * {@link #rebuild} recomputes everything from history without holding the write lock while it reads.
+ * History is split into whole-day {@code createdAt} ranges aggregated in parallel, each in one read
+ * transaction that also reads the rollup cells for its days. Orders written meanwhile keep moving the
+ * live cells through the triggers, so under a short write lock each cell becomes its recomputed value
+ * plus whatever the live cell gained since that range's snapshot.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class OrderRollups {
+
+  public enum GroupBy { DAY, PROVIDER, STATUS }
+
+  public record Bucket(String key, long orders, double amount, double revenue, double refunded, double completionRate, double refundRate) {}
+
+  public record Rebuild(int chunks, int cells, long orders, long millis) {}
+
+  private static final String DAY = "date(%s / 1000, 'unixepoch')";
+  private static final String CELL = "(day, providerId, status)";
+  private static final long DAY_MS = 86_400_000L;
+
+  private final JdbcTemplate jdbc;
+  private final ArchiveDatabase archive;
+  private final Executor executor;
+  private final int parallelism;
+
+  public OrderRollups(JdbcTemplate jdbc, ArchiveDatabase archive,
+                      @Qualifier("applicationTaskExecutor") Executor executor,
+                      @Value("${app.rollups.rebuild-parallelism:4}") int parallelism) {
+    this.jdbc = jdbc;
+    this.archive = archive;
+    this.executor = executor;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  // Triggers live here rather than in SchemaInit: rebuilding the orders table for typed columns drops them
+  @PostConstruct
+  public void init() {
+    String newDay = DAY.formatted("COALESCE(NEW.createdAt, 0)");
+    String oldDay = DAY.formatted("COALESCE(OLD.createdAt, 0)");
+    String add = "INSERT INTO order_rollups (day, providerId, status, orders, amount) " +
+      "VALUES (" + newDay + ", COALESCE(NEW.providerId, ''), COALESCE(lower(NEW.status), ''), 1, COALESCE(NEW.amount, 0)) " +
+      "ON CONFLICT" + CELL + " DO UPDATE SET orders = orders + 1, amount = amount + excluded.amount;";
+    String subtract = "UPDATE order_rollups SET orders = orders - 1, amount = amount - COALESCE(OLD.amount, 0) " +
+      "WHERE day = " + oldDay + " AND providerId = COALESCE(OLD.providerId, '') AND status = COALESCE(lower(OLD.status), ''); " +
+      "DELETE FROM order_rollups WHERE day = " + oldDay + " AND providerId = COALESCE(OLD.providerId, '') AND status = COALESCE(lower(OLD.status), '') AND orders <= 0;";
+    try{ jdbc.execute("CREATE TRIGGER IF NOT EXISTS orders_rollup_insert AFTER INSERT ON orders BEGIN " + add + " END"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TRIGGER IF NOT EXISTS orders_rollup_update AFTER UPDATE OF status, amount, providerId, createdAt ON orders " +
+      "WHEN OLD.status IS NOT NEW.status OR OLD.amount IS NOT NEW.amount OR OLD.providerId IS NOT NEW.providerId OR OLD.createdAt IS NOT NEW.createdAt " +
+      "BEGIN " + subtract + " " + add + " END"); }catch(Exception ignore){}
+    // A database from before rollups existed is backfilled in the background rather than holding up startup
+    try {
+      Boolean missing = jdbc.query("SELECT 1 FROM orders WHERE NOT EXISTS (SELECT 1 FROM order_rollups) LIMIT 1", rs -> { return rs.next(); });
+      if (Boolean.TRUE.equals(missing)) executor.execute(() -> { try { rebuild(); } catch (Exception ignored) {} });
+    } catch (Exception ignored) {
+    }
+  }
+
+  /** Takes a provider's hot orders out of the rollup; call in the transaction that deletes them. */
+  public void removeHot(String providerId) {
+    jdbc.update("UPDATE order_rollups SET orders = orders - (SELECT COUNT(*) FROM orders o WHERE o.providerId = order_rollups.providerId " +
+        "AND " + DAY.formatted("COALESCE(o.createdAt, 0)") + " = order_rollups.day AND COALESCE(lower(o.status), '') = order_rollups.status), " +
+        "amount = amount - (SELECT TOTAL(o.amount) FROM orders o WHERE o.providerId = order_rollups.providerId " +
+        "AND " + DAY.formatted("COALESCE(o.createdAt, 0)") + " = order_rollups.day AND COALESCE(lower(o.status), '') = order_rollups.status) " +
+        "WHERE providerId = ?", providerId);
+    jdbc.update("DELETE FROM order_rollups WHERE providerId = ? AND orders <= 0", providerId);
+  }
+
+  /**
+   * Aggregates for days {@code from}..{@code to} (inclusive, yyyy-MM-dd), grouped by day, provider or
+   * status, optionally for one provider. Reads only {@code order_rollups}.
+   */
+  public List<Bucket> query(String from, String to, GroupBy groupBy, String providerId) {
+    String key = switch (groupBy) {
+      case DAY -> "day";
+      case PROVIDER -> "providerId";
+      case STATUS -> "status";
+    };
+    List<Object> args = new ArrayList<>(List.of(from, to));
+    String where = "day BETWEEN ? AND ?";
+    if (providerId != null) {
+      where += " AND providerId = ?";
+      args.add(providerId);
+    }
+    return jdbc.query(
+      "SELECT " + key + ", SUM(orders), TOTAL(amount), TOTAL(CASE WHEN status = 'complete' THEN amount END), " +
+      "TOTAL(CASE WHEN status = 'refunded' THEN amount END), " +
+      "SUM(CASE WHEN status = 'complete' THEN orders ELSE 0 END), SUM(CASE WHEN status = 'refunded' THEN orders ELSE 0 END) " +
+      "FROM order_rollups WHERE " + where + " GROUP BY " + key + " ORDER BY " + (groupBy == GroupBy.DAY ? "day" : "2 DESC, 1"),
+      (rs, n) -> {
+        long orders = rs.getLong(2);
+        return new Bucket(rs.getString(1), orders, round(rs.getDouble(3)), round(rs.getDouble(4)), round(rs.getDouble(5)),
+          rate(rs.getLong(6), orders), rate(rs.getLong(7), orders));
+      },
+      args.toArray());
+  }
+
+  /** Recomputes the rollup from hot and archived orders; see the class comment for how it stays exact. */
+  public synchronized Rebuild rebuild() {
+    long started = System.nanoTime();
+    long[] span = span();
+    List<long[]> ranges = split(span[0], span[1]);
+    List<CompletableFuture<Snapshot>> parts = new ArrayList<>();
+    for (long[] range : ranges) parts.add(CompletableFuture.supplyAsync(() -> aggregate(range[0], range[1]), executor));
+    Map<List<String>, double[]> fresh = new HashMap<>();
+    Map<List<String>, double[]> seen = new HashMap<>();
+    for (CompletableFuture<Snapshot> part : parts) {
+      Snapshot snapshot = part.join();
+      fresh.putAll(snapshot.fresh());
+      seen.putAll(snapshot.seen());
+    }
+    return jdbc.execute((ConnectionCallback<Rebuild>) con -> {
+      try (Statement st = con.createStatement()) {
+        st.execute("BEGIN IMMEDIATE");
+        try {
+          // recomputed + (live now - live at the snapshot); the triggers are the only other writers
+          Map<List<String>, double[]> cells = new HashMap<>();
+          fresh.forEach((cell, v) -> add(cells, cell, v[0], v[1]));
+          seen.forEach((cell, v) -> add(cells, cell, -v[0], -v[1]));
+          try (ResultSet rs = st.executeQuery("SELECT day, providerId, status, orders, amount FROM order_rollups")) {
+            while (rs.next()) add(cells, List.of(rs.getString(1), rs.getString(2), rs.getString(3)), rs.getLong(4), rs.getDouble(5));
+          }
+          st.execute("DELETE FROM order_rollups");
+          long orders = 0;
+          int written = 0;
+          try (PreparedStatement ps = con.prepareStatement("INSERT INTO order_rollups (day, providerId, status, orders, amount) VALUES (?,?,?,?,?)")) {
+            for (Map.Entry<List<String>, double[]> e : cells.entrySet()) {
+              if (e.getValue()[0] <= 0) continue;
+              ps.setString(1, e.getKey().get(0));
+              ps.setString(2, e.getKey().get(1));
+              ps.setString(3, e.getKey().get(2));
+              ps.setLong(4, (long) e.getValue()[0]);
+              ps.setDouble(5, e.getValue()[1]);
+              ps.addBatch();
+              orders += (long) e.getValue()[0];
+              written++;
+            }
+            ps.executeBatch();
+          }
+          st.execute("COMMIT");
+          return new Rebuild(ranges.size(), written, orders, (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException | java.sql.SQLException e) {
+          try { st.execute("ROLLBACK"); } catch (Exception ignored) {}
+          throw e;
+        }
+      }
+    });
+  }
+
+  private static void add(Map<List<String>, double[]> cells, List<String> cell, double orders, double amount) {
+    double[] sum = cells.computeIfAbsent(cell, k -> new double[2]);
+    sum[0] += orders;
+    sum[1] += amount;
+  }
+
+  // Smallest and largest createdAt over hot and archived orders (missing dates count as 0)
+  private long[] span() {
+    return archive.attached(jdbc, false, db -> db.query(
+      "SELECT MIN(at), MAX(at) FROM (SELECT COALESCE(createdAt, 0) AS at FROM main.orders UNION ALL SELECT COALESCE(createdAt, 0) FROM archive.orders)",
+      rs -> rs.next() ? new long[]{ rs.getLong(1), rs.getLong(2) } : new long[]{ 0, 0 }));
+  }
+
+  // Half-open [from, to) ranges on UTC day boundaries, so every day's orders fall in one range; the
+  // first and last are open-ended so orders dated outside the span while the rebuild runs still belong to one
+  private List<long[]> split(long min, long max) {
+    long firstDay = Math.floorDiv(min, DAY_MS);
+    long days = Math.floorDiv(max, DAY_MS) - firstDay + 1;
+    long width = Math.max(1, (days + parallelism - 1) / parallelism);
+    List<long[]> out = new ArrayList<>();
+    for (long day = firstDay; day < firstDay + days; day += width) out.add(new long[]{ day * DAY_MS, (day + width) * DAY_MS });
+    out.get(0)[0] = Long.MIN_VALUE;
+    out.get(out.size() - 1)[1] = Long.MAX_VALUE;
+    return out;
+  }
+
+  private record Snapshot(Map<List<String>, double[]> fresh, Map<List<String>, double[]> seen) {}
+
+  // One read transaction: the live cells for the range's days first (that pins the main snapshot), then
+  // the orders. Archived copies still present in main are skipped, so a row caught mid-move counts once.
+  private Snapshot aggregate(long from, long to) {
+    return archive.attached(jdbc, true, db -> {
+      Map<List<String>, double[]> seen = new HashMap<>();
+      db.query("SELECT day, providerId, status, orders, amount FROM main.order_rollups", rs -> {
+        if (inRange(rs.getString(1), from, to)) {
+          seen.put(List.of(rs.getString(1), rs.getString(2), rs.getString(3)), new double[]{ rs.getLong(4), rs.getDouble(5) });
+        }
+      });
+      Map<List<String>, double[]> fresh = new HashMap<>();
+      db.query("SELECT " + DAY.formatted("at") + ", providerId, status, COUNT(*), TOTAL(amount) FROM (" +
+          "SELECT COALESCE(createdAt, 0) AS at, COALESCE(providerId, '') AS providerId, COALESCE(lower(status), '') AS status, amount FROM main.orders WHERE COALESCE(createdAt, 0) >= ? AND COALESCE(createdAt, 0) < ? " +
+          "UNION ALL SELECT COALESCE(createdAt, 0), COALESCE(providerId, ''), COALESCE(lower(status), ''), amount FROM archive.orders a WHERE COALESCE(createdAt, 0) >= ? AND COALESCE(createdAt, 0) < ? " +
+          "AND NOT EXISTS (SELECT 1 FROM main.orders m WHERE m.id = a.id)) GROUP BY 1, 2, 3",
+        rs -> { fresh.put(List.of(rs.getString(1), rs.getString(2), rs.getString(3)), new double[]{ rs.getLong(4), rs.getDouble(5) }); },
+        from, to, from, to);
+      return new Snapshot(fresh, seen);
+    });
+  }
+
+  private static boolean inRange(String day, long from, long to) {
+    try {
+      long start = LocalDate.parse(day).toEpochDay() * DAY_MS;
+      return start >= from && start < to;
+    } catch (RuntimeException e) {
+      // Not a date SQLite's date() would produce; leave it to the range that holds day 0
+      return from <= 0 && 0 < to;
+    }
+  }
+
+  private static double rate(long part, long total) {
+    return total == 0 ? 0.0 : Math.round(part * 10000.0 / total) / 10000.0;
+  }
+
+  private static double round(double amount) {
+    return Math.round(amount * 100) / 100.0;
+  }
+}
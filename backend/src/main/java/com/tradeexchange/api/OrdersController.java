@@ -1,35 +1,60 @@
 package com.tradeexchange.api;
 
+import com.tradeexchange.api.dto.OrderRow;
+import com.tradeexchange.common.IdGenerator;
 import com.tradeexchange.common.SessionResolver;
+import com.tradeexchange.common.Timestamps;
 import com.tradeexchange.common.SessionResolver.UserSession;
+import com.tradeexchange.common.TieredPages;
+import com.tradeexchange.common.json.JsonRowStreamer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.Instant;
 import java.util.*;
 
 @RestController
 @RequestMapping("/api")
 public class OrdersController {
+  private static final int ORDER_PAGE = 100;
+  private static final int MAX_ORDER_PAGE = 200;
+
   private final org.springframework.jdbc.core.JdbcTemplate jdbc;
   private final SessionResolver sessions;
+  private final JsonRowStreamer rows;
+  private final IdGenerator ids;
+  private final CatalogFacets facets;
+  private final ProviderDetailCache detailCache;
+  private final ProviderReviews reviews;
+  private final TransactionTemplate tx;
+  private final Archiver archiver;
+  private final Bookings bookings;
 
-  public OrdersController(org.springframework.jdbc.core.JdbcTemplate jdbc, SessionResolver sessions){
+  public OrdersController(org.springframework.jdbc.core.JdbcTemplate jdbc, SessionResolver sessions, JsonRowStreamer rows, IdGenerator ids, CatalogFacets facets, ProviderDetailCache detailCache, ProviderReviews reviews, TransactionTemplate tx, Archiver archiver, Bookings bookings){
     this.jdbc = jdbc;
     this.sessions = sessions;
+    this.rows = rows;
+    this.ids = ids;
+    this.facets = facets;
+    this.detailCache = detailCache;
+    this.reviews = reviews;
+    this.tx = tx;
+    this.archiver = archiver;
+    this.bookings = bookings;
   }
 
   @GetMapping("/trader/orders")
-  public ResponseEntity<?> list(@RequestHeader(value = "Authorization", required = false) String authz){
+  public ResponseEntity<StreamingResponseBody> list(@RequestHeader(value = "Authorization", required = false) String authz){
     Optional<UserSession> session = sessions.fromAuthorization(authz);
-    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    if (session.isEmpty()) return rows.error(HttpStatus.UNAUTHORIZED, "error", "No token");
     UserSession user = session.get();
     boolean isAdmin = "ADMIN".equalsIgnoreCase(user.role());
     boolean isTrader = "TRADER".equalsIgnoreCase(user.role());
-    if (!isAdmin && !isTrader) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Forbidden"));
+    if (!isAdmin && !isTrader) return rows.error(HttpStatus.FORBIDDEN, "error", "Forbidden");
 
-    String sql = "SELECT id,userName,service,status,amount,createdAt,providerId,listingId,conversationId,reqDetails,reqDate,reqTime,reqAck FROM orders";
+    String sql = "SELECT " + OrderRow.COLUMNS + " FROM orders";
     Object[] params = new Object[]{};
     if (isTrader && user.providerPlayerId() != null && !user.providerPlayerId().isBlank()){
       sql += " WHERE providerId = ?";
@@ -38,32 +63,9 @@ public class OrdersController {
     sql += " ORDER BY createdAt DESC";
 
     Object[] finalParams = params;
-    var rows = jdbc.query(sql, ps -> {
-        for (int i = 0; i < finalParams.length; i++) ps.setObject(i + 1, finalParams[i]);
-      }, rs -> {
-        List<Map<String,Object>> out = new ArrayList<>();
-        while (rs.next()){
-          Map<String,Object> req = new LinkedHashMap<>();
-          req.put("details", rs.getString("reqDetails"));
-          req.put("date", rs.getString("reqDate"));
-          req.put("time", rs.getString("reqTime"));
-          req.put("ack", rs.getInt("reqAck") != 0);
-          Map<String,Object> row = new LinkedHashMap<>();
-          row.put("id", rs.getString("id"));
-          row.put("userName", Optional.ofNullable(rs.getString("userName")).orElse("Customer"));
-          row.put("service", rs.getString("service"));
-          row.put("status", rs.getString("status"));
-          row.put("amount", Double.valueOf(Optional.ofNullable(rs.getObject("amount")).orElse(0).toString()));
-          row.put("createdAt", rs.getString("createdAt"));
-          row.put("providerId", rs.getString("providerId"));
-          row.put("listingId", rs.getString("listingId"));
-          row.put("conversationId", rs.getString("conversationId"));
-          row.put("request", req);
-          out.add(row);
-        }
-        return out;
-      });
-    return ResponseEntity.ok(rows);
+    return rows.array(sql, ps -> {
+      for (int i = 0; i < finalParams.length; i++) ps.setObject(i + 1, finalParams[i]);
+    }, OrderRow.TRADER_MAPPER);
   }
 
   public record Action(String action){}
@@ -90,6 +92,8 @@ public class OrdersController {
       map.get(a),
       id
     );
+    // Denied and refunded orders give their time back
+    if ("denied".equals(map.get(a)) || "refunded".equals(map.get(a))) bookings.release(id);
 
     if ("complete".equals(map.get(a))) {
       // increment trader jobs count when an order is completed
@@ -97,6 +101,8 @@ public class OrdersController {
         var provider = jdbc.query("SELECT providerId FROM orders WHERE id=?", ps -> ps.setString(1,id), rs -> rs.next() ? rs.getString(1) : null);
         if (provider != null && !provider.isBlank()){
           jdbc.update("UPDATE players SET jobs = COALESCE(jobs,0)+1 WHERE id=?", provider);
+          facets.refreshProvider(provider);
+          detailCache.invalidate(provider);
         }
       }catch(Exception ignore){}
     }
@@ -115,8 +121,8 @@ public class OrdersController {
         row2.put("userName", Optional.ofNullable(rs.getString("userName")).orElse("Customer"));
         row2.put("service", rs.getString("service"));
         row2.put("status", rs.getString("status"));
-        row2.put("amount", Double.valueOf(Optional.ofNullable(rs.getObject("amount")).orElse(0).toString()));
-        row2.put("createdAt", rs.getString("createdAt"));
+        row2.put("amount", rs.getDouble("amount"));
+        row2.put("createdAt", Timestamps.iso(rs, "createdAt"));
         row2.put("providerId", rs.getString("providerId"));
         row2.put("listingId", rs.getString("listingId"));
         row2.put("conversationId", rs.getString("conversationId"));
@@ -134,12 +140,27 @@ public class OrdersController {
   public ResponseEntity<?> scheduleConsultation(@PathVariable String id, @RequestHeader(value = "Authorization", required = false) String authz, @RequestBody ScheduleConsultation req){
     Optional<UserSession> session = sessions.fromAuthorization(authz);
     if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
-    jdbc.update("UPDATE orders SET reqDate=?, reqTime=?, conversationId=COALESCE(?, conversationId) WHERE id=?",
+    Runnable write = () -> jdbc.update("UPDATE orders SET reqDate=?, reqTime=?, conversationId=COALESCE(?, conversationId) WHERE id=?",
       Optional.ofNullable(req.date()).orElse(""),
       Optional.ofNullable(req.time()).orElse(""),
       Optional.ofNullable(req.conversationId()).orElse(null),
       id
     );
+    Optional<Bookings.Slot> slot;
+    try {
+      slot = bookings.slot(req.date(), req.time());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+    String providerId = jdbc.query("SELECT providerId FROM orders WHERE id=?", ps -> ps.setString(1,id), rs -> rs.next() ? rs.getString(1) : null);
+    if (slot.isEmpty() || providerId == null || providerId.isBlank()) {
+      write.run();
+      bookings.release(id);
+      return ResponseEntity.ok(Map.of("ok", true));
+    }
+    // Moves the order's booking, if it had one, in the same transaction as the update
+    Bookings.Reservation r = bookings.reserve(providerId, id, slot.get(), write);
+    if (r.outcome() != Bookings.Outcome.RESERVED) return ResponseEntity.status(HttpStatus.CONFLICT).body(bookings.refusal(providerId, r));
     return ResponseEntity.ok(Map.of("ok", true));
   }
 
@@ -167,6 +188,8 @@ public class OrdersController {
       var provider = jdbc.query("SELECT providerId FROM orders WHERE id=?", ps -> ps.setString(1,id), rs -> rs.next() ? rs.getString(1) : null);
       if (provider != null && !provider.isBlank()){
         jdbc.update("UPDATE players SET jobs = COALESCE(jobs,0)+1 WHERE id=?", provider);
+        facets.refreshProvider(provider);
+        detailCache.invalidate(provider);
       }
     }catch(Exception ignore){}
     return ResponseEntity.ok(Map.of("ok", true));
@@ -180,15 +203,19 @@ public class OrdersController {
     if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
     int rating = Math.max(1, Math.min(5, Optional.ofNullable(req.rating()).orElse(5)));
     String text = Optional.ofNullable(req.text()).orElse("");
-    String reviewId = UUID.randomUUID().toString().substring(0,8);
-    String now = Instant.now().toString();
+    String reviewId = ids.next();
+    long now = System.currentTimeMillis();
     var provider = jdbc.query("SELECT providerId FROM orders WHERE id=?", ps -> ps.setString(1,id), rs -> rs.next() ? rs.getString(1) : null);
     if (provider == null || provider.isBlank()) return ResponseEntity.status(404).body(Map.of("message","Order not found"));
-    jdbc.update("INSERT INTO provider_reviews (id,providerId,author,rating,text,at) VALUES (?,?,?,?,?,?)",
-      reviewId, provider, Optional.ofNullable(session.get().name()).orElse("Customer"), rating, text, now);
-    // recompute average rating
-    var avg = jdbc.query("SELECT AVG(rating) FROM provider_reviews WHERE providerId=?", ps -> ps.setString(1, provider), rs -> rs.next() ? rs.getDouble(1) : 0.0);
-    jdbc.update("UPDATE players SET rating=? WHERE id=?", avg, provider);
+    tx.executeWithoutResult(status -> {
+      jdbc.update("INSERT INTO provider_reviews (id,providerId,author,rating,text,at) VALUES (?,?,?,?,?,?)",
+        reviewId, provider, Optional.ofNullable(session.get().name()).orElse("Customer"), rating, text, now);
+      reviews.recorded(provider, rating);
+      // average comes from the summary row instead of scanning every review
+      jdbc.update("UPDATE players SET rating=? WHERE id=?", reviews.average(provider), provider);
+    });
+    facets.refreshProvider(provider);
+    detailCache.invalidate(provider);
     return ResponseEntity.ok(Map.of("ok", true, "reviewId", reviewId, "rating", rating));
   }
 
@@ -200,11 +227,17 @@ public class OrdersController {
     if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
     UserSession user = session.get();
 
-    String id = UUID.randomUUID().toString().substring(0,8);
-    String createdAt = Instant.now().toString();
+    String id = ids.next();
+    long createdAt = System.currentTimeMillis();
     String userName = user.name() != null && !user.name().isBlank() ? user.name() : Optional.ofNullable(user.email()).orElse("Customer");
 
-    jdbc.update("INSERT INTO orders (id,userName,service,status,amount,createdAt,providerId,listingId,conversationId,reqDetails,reqDate,reqTime,reqAck) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)",
+    Optional<Bookings.Slot> slot;
+    try {
+      slot = bookings.slot(req.date(), req.time());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+    Runnable write = () -> jdbc.update("INSERT INTO orders (id,userName,service,status,amount,createdAt,providerId,listingId,conversationId,reqDetails,reqDate,reqTime,reqAck) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)",
       id,
       userName,
       Optional.ofNullable(req.title()).orElse("Service request"),
@@ -219,6 +252,11 @@ public class OrdersController {
       Optional.ofNullable(req.time()).orElse(""),
       0
     );
+    if (slot.isEmpty() || req.providerId() == null || req.providerId().isBlank()) write.run();
+    else {
+      Bookings.Reservation r = bookings.reserve(req.providerId(), id, slot.get(), write);
+      if (r.outcome() != Bookings.Outcome.RESERVED) return ResponseEntity.status(HttpStatus.CONFLICT).body(bookings.refusal(req.providerId(), r));
+    }
 
     Map<String,Object> request = new LinkedHashMap<>();
     request.put("details", Optional.ofNullable(req.details()).orElse(""));
@@ -232,7 +270,7 @@ public class OrdersController {
     row.put("service", Optional.ofNullable(req.title()).orElse("Service request"));
     row.put("status", "discuss");
     row.put("amount", 0.0);
-    row.put("createdAt", createdAt);
+    row.put("createdAt", Timestamps.iso(createdAt));
     row.put("providerId", req.providerId());
     row.put("listingId", req.listingId());
     row.put("conversationId", req.conversationId());
@@ -258,7 +296,7 @@ public class OrdersController {
         m.put("status", rs.getString("status"));
         m.put("ack", rs.getInt("reqAck")!=0);
         m.put("conversationId", rs.getString("conversationId"));
-        m.put("updatedAt", rs.getString("createdAt"));
+        m.put("updatedAt", Timestamps.iso(rs, "createdAt"));
         m.put("found", true);
         return m;
       }
@@ -268,7 +306,9 @@ public class OrdersController {
   }
 
   @GetMapping("/orders/mine")
-  public ResponseEntity<?> myOrders(@RequestHeader(value = "Authorization", required = false) String authz){
+  public ResponseEntity<?> myOrders(@RequestHeader(value = "Authorization", required = false) String authz,
+                                    @RequestParam(value = "cursor", required = false) String cursor,
+                                    @RequestParam(value = "limit", required = false) Integer limit){
     Optional<UserSession> session = sessions.fromAuthorization(authz);
     if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
     UserSession user = session.get();
@@ -284,40 +324,29 @@ public class OrdersController {
       conditions.add("LOWER(o.userName) = ?");
       params.add(email.toLowerCase());
     }
-    if (conditions.isEmpty()){
-      return ResponseEntity.ok(List.of());
+    String where = conditions.isEmpty() ? "0" : "(" + String.join(" OR ", conditions) + ")";
+    int n = Math.max(1, Math.min(MAX_ORDER_PAGE, Optional.ofNullable(limit).orElse(ORDER_PAGE)));
+    // Completed and refunded orders past the archive window are read from the archive, joined to the live players table
+    TieredPages.Page<OrderRow> page = TieredPages.newestFirst(cursor, n, archiver.horizon(Archiver.ORDERS),
+      (at, id, size) -> customerOrders(jdbc, "orders", where, params, at, id, size),
+      (at, id, size) -> archiver.database().attached(jdbc, false, db -> customerOrders(db, "archive.orders", where, params, at, id, size)),
+      OrderRow::createdAt, OrderRow::id);
+    ResponseEntity.BodyBuilder res = ResponseEntity.ok();
+    if (page.next() != null) res.header("X-Next-Cursor", page.next());
+    return res.body(page.rows());
+  }
+
+  private static List<OrderRow> customerOrders(org.springframework.jdbc.core.JdbcTemplate db, String table, String where, List<Object> params, Long at, String id, int limit){
+    List<Object> args = new ArrayList<>(params);
+    String seek = "";
+    if (at != null){
+      seek = " AND (o.createdAt, o.id) < (?, ?)";
+      args.add(at);
+      args.add(id);
     }
-    String where = String.join(" OR ", conditions);
-    String sql = "SELECT o.id, o.service, o.status, o.amount, o.createdAt, o.providerId, o.listingId, o.conversationId, o.reqDetails, o.reqDate, o.reqTime, o.reqAck, p.name AS providerName " +
-      "FROM orders o LEFT JOIN players p ON p.id = o.providerId WHERE " + where + " ORDER BY o.createdAt DESC";
-    List<Map<String,Object>> rows = jdbc.query(sql,
-      ps -> {
-        for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
-      },
-      rs -> {
-        List<Map<String,Object>> out = new ArrayList<>();
-        while (rs.next()){
-          Map<String,Object> m = new LinkedHashMap<>();
-          m.put("id", rs.getString("id"));
-          m.put("service", rs.getString("service"));
-          m.put("status", rs.getString("status"));
-          m.put("amount", rs.getObject("amount"));
-          m.put("createdAt", rs.getString("createdAt"));
-          m.put("providerId", rs.getString("providerId"));
-          m.put("listingId", rs.getString("listingId"));
-          m.put("conversationId", rs.getString("conversationId"));
-          m.put("providerName", Optional.ofNullable(rs.getString("providerName")).orElse("Trader"));
-          Map<String,Object> req = new LinkedHashMap<>();
-          req.put("details", rs.getString("reqDetails"));
-          req.put("date", rs.getString("reqDate"));
-          req.put("time", rs.getString("reqTime"));
-          req.put("ack", rs.getInt("reqAck") != 0);
-          m.put("request", req);
-          out.add(m);
-        }
-        return out;
-      }
-    );
-    return ResponseEntity.ok(rows);
+    args.add(limit);
+    return db.query("SELECT " + OrderRow.CUSTOMER_COLUMNS + " " +
+      "FROM " + table + " o LEFT JOIN players p ON p.id = o.providerId WHERE " + where + seek + " ORDER BY o.createdAt DESC, o.id DESC LIMIT ?",
+      OrderRow.CUSTOMER_MAPPER, args.toArray());
   }
 }
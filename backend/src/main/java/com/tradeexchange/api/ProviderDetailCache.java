@@ -0,0 +1,40 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.common.LruCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Serialized {@code /api/providers/{id}} and first {@code /api/providers/{id}/reviews} page bodies
+ * per provider, each with its ETag. Every write that changes what those pages show calls {@link #invalidate}.
+ */
+@Component
+public class ProviderDetailCache {
+
+  /** Pre-serialized JSON bodies and their ETags; {@code reviewsNext} is the first page's cursor. */
+  public record Entry(byte[] detail, String detailEtag, byte[] reviews, String reviewsEtag, String reviewsNext) {}
+
+  private final LruCache<String, Entry> cache;
+
+  public ProviderDetailCache(@Value("${app.cache.providers.max-entries:500}") int maxEntries) {
+    this.cache = new LruCache<>(maxEntries);
+  }
+
+  public Entry get(String providerId, Supplier<Entry> loader) {
+    return cache.get(providerId, loader);
+  }
+
+  public void invalidate(String providerId) {
+    if (providerId != null && !providerId.isBlank()) cache.invalidate(providerId);
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public LruCache.Stats stats() {
+    return cache.stats();
+  }
+}
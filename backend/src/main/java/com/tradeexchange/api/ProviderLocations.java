@@ -0,0 +1,125 @@
+package com.tradeexchange.api;
+
+import com.tradeexchange.api.dto.PlayerRow;
+import com.tradeexchange.common.geo.Gazetteer;
+import com.tradeexchange.common.geo.Gazetteer.Point;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Geocodes {@code players.location} / {@code travelRadius} into {@code lat}, {@code lon} and
+ * {@code radiusKm}, and keeps each provider's service area as a bounding box in the
+ * {@code provider_areas} R*Tree. "Who serves this point" is then an R*Tree containment lookup
+ * followed by an exact great-circle check on the few candidates it returns.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class ProviderLocations {
+
+  private static final double KM_PER_DEGREE = 111.32;
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final Gazetteer gazetteer;
+  private final double defaultRadiusKm;
+
+  public ProviderLocations(JdbcTemplate jdbc, TransactionTemplate tx, Gazetteer gazetteer,
+                           @Value("${app.geo.default-radius-km:40}") double defaultRadiusKm) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.gazetteer = gazetteer;
+    this.defaultRadiusKm = defaultRadiusKm;
+  }
+
+  @PostConstruct
+  public void reindexAll() {
+    try {
+      List<String> ids = jdbc.queryForList("SELECT id FROM players", String.class);
+      tx.executeWithoutResult(status -> {
+        jdbc.update("DELETE FROM provider_areas");
+        for (String id : ids) index(id);
+      });
+    } catch (Exception ignored) {
+    }
+  }
+
+  /** Re-geocodes one provider after its profile changed. */
+  public void refresh(String providerId) {
+    if (providerId == null || providerId.isBlank()) return;
+    try {
+      tx.executeWithoutResult(status -> {
+        jdbc.update("DELETE FROM provider_areas WHERE providerId=?", providerId);
+        index(providerId);
+      });
+    } catch (Exception ignored) {
+    }
+  }
+
+  public void remove(String providerId) {
+    try{ jdbc.update("DELETE FROM provider_areas WHERE providerId=?", providerId); }catch(Exception ignore){}
+  }
+
+  public Optional<Point> locate(String text) {
+    return gazetteer.locate(text);
+  }
+
+  /** Providers whose service area covers {@code at}, nearest first, then by rating. */
+  public List<Map<String,Object>> serving(Point at, int limit) {
+    record Hit(PlayerRow row, double distanceKm, double radiusKm) {}
+    List<Hit> hits = jdbc.query(
+      "SELECT " + PlayerRow.COLUMNS + ", lat, lon, radiusKm FROM players WHERE id IN (SELECT providerId FROM provider_areas WHERE minLat <= ?1 AND maxLat >= ?1 AND minLon <= ?2 AND maxLon >= ?2)",
+      ps -> { ps.setDouble(1, at.lat()); ps.setDouble(2, at.lon()); },
+      (rs, n) -> new Hit(PlayerRow.MAPPER.mapRow(rs, n), Gazetteer.distanceKm(at.lat(), at.lon(), rs.getDouble(9), rs.getDouble(10)), rs.getDouble(11)));
+    return hits.stream()
+      .filter(h -> h.distanceKm() <= h.radiusKm())
+      .sorted(Comparator.comparingDouble(Hit::distanceKm).thenComparing(h -> -h.row().rating()))
+      .limit(limit)
+      .map(h -> {
+        PlayerRow p = h.row();
+        Map<String,Object> m = new LinkedHashMap<>();
+        m.put("id", p.id());
+        m.put("name", p.name());
+        m.put("role", p.role());
+        m.put("rating", p.rating());
+        m.put("jobs", p.jobs());
+        m.put("location", p.location());
+        m.put("hourlyRate", p.hourlyRate());
+        m.put("bio", p.bio());
+        m.put("distanceKm", Math.round(h.distanceKm() * 10) / 10.0);
+        m.put("serviceRadiusKm", Math.round(h.radiusKm() * 10) / 10.0);
+        return m;
+      })
+      .toList();
+  }
+
+  private void index(String providerId) {
+    Map<String,String> row = jdbc.query("SELECT location, travelRadius FROM players WHERE id=?", ps -> ps.setString(1, providerId), rs -> {
+      if (!rs.next()) return null;
+      Map<String,String> m = new HashMap<>();
+      m.put("location", rs.getString(1));
+      m.put("travelRadius", rs.getString(2));
+      return m;
+    });
+    if (row == null) return;
+    Optional<Point> point = gazetteer.locate(row.get("location"));
+    if (point.isEmpty()) {
+      jdbc.update("UPDATE players SET lat=NULL, lon=NULL, radiusKm=NULL WHERE id=?", providerId);
+      return;
+    }
+    Point p = point.get();
+    double radius = Gazetteer.radiusKm(row.get("travelRadius")).filter(r -> r > 0).orElse(defaultRadiusKm);
+    double dLat = radius / KM_PER_DEGREE;
+    double dLon = radius / (KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(p.lat()))));
+    jdbc.update("UPDATE players SET lat=?, lon=?, radiusKm=? WHERE id=?", p.lat(), p.lon(), radius, providerId);
+    jdbc.update("INSERT INTO provider_areas (minLat,maxLat,minLon,maxLon,providerId) VALUES (?,?,?,?,?)",
+      Math.max(-90, p.lat() - dLat), Math.min(90, p.lat() + dLat),
+      Math.max(-180, p.lon() - dLon), Math.min(180, p.lon() + dLon),
+      providerId);
+  }
+}
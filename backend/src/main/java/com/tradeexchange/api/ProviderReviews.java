@@ -0,0 +1,189 @@
+package com.tradeexchange.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeexchange.api.dto.ReviewRow;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Keyset-paginated provider reviews plus the {@code provider_review_summaries} row per provider
+ * (count, rating sum, 1-5 histogram and the latest few reviews as JSON). Review writers call
+ * {@link #recorded} in the same transaction as the insert, so the summary is never behind.
+ */
+@Component
+@DependsOn("dataSeeder")
+public class ProviderReviews {
+
+  public enum Sort { NEWEST, HIGHEST, LOWEST }
+
+  public record Page(List<ReviewRow> reviews, String next) {}
+
+  static final int LATEST = 5;
+  private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+  private static final TypeReference<List<Map<String,Object>>> REVIEW_LIST = new TypeReference<>() {};
+
+  private final JdbcTemplate jdbc;
+  private final ObjectMapper json;
+
+  public ProviderReviews(JdbcTemplate jdbc, ObjectMapper json) {
+    this.jdbc = jdbc;
+    this.json = json;
+  }
+
+  public static Sort sort(String raw) {
+    if (raw == null) return Sort.NEWEST;
+    try {
+      return Sort.valueOf(raw.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      return Sort.NEWEST;
+    }
+  }
+
+  /** One page ordered by {@code sort}; {@code cursor} is the {@code next} of the previous page. */
+  public Page page(String providerId, Sort sort, String cursor, int limit) {
+    String[] after = decode(cursor);
+    String order;
+    String seek = "";
+    List<Object> args = new ArrayList<>();
+    args.add(providerId);
+    switch (sort) {
+      case HIGHEST -> {
+        order = "rating DESC, at DESC, id DESC";
+        if (after != null) seek = " AND (rating < ? OR (rating = ? AND (at, id) < (?, ?)))";
+      }
+      case LOWEST -> {
+        order = "rating ASC, at DESC, id DESC";
+        if (after != null) seek = " AND (rating > ? OR (rating = ? AND (at, id) < (?, ?)))";
+      }
+      default -> {
+        order = "at DESC, id DESC";
+        if (after != null) seek = " AND (at, id) < (?, ?)";
+      }
+    }
+    if (after != null) {
+      if (sort != Sort.NEWEST) { args.add(Integer.parseInt(after[0])); args.add(Integer.parseInt(after[0])); }
+      args.add(Long.parseLong(after[1]));
+      args.add(after[2]);
+    }
+    args.add(limit + 1);
+    List<ReviewRow> rows = jdbc.query(
+      "SELECT " + ReviewRow.COLUMNS + " FROM provider_reviews WHERE providerId = ?" + seek + " ORDER BY " + order + " LIMIT ?",
+      ReviewRow.MAPPER, args.toArray());
+    if (rows.size() <= limit) return new Page(rows, null);
+    rows = rows.subList(0, limit);
+    ReviewRow last = rows.get(limit - 1);
+    return new Page(rows, encode(last));
+  }
+
+  /** The stored summary; a provider without reviews gets zeros. */
+  public Map<String,Object> summary(String providerId) {
+    Map<String,Object> out = jdbc.query(
+      "SELECT count, ratingSum, r1, r2, r3, r4, r5, latest FROM provider_review_summaries WHERE providerId=?",
+      ps -> ps.setString(1, providerId),
+      rs -> {
+        if (!rs.next()) return null;
+        long count = rs.getLong(1);
+        Map<String,Object> m = new LinkedHashMap<>();
+        m.put("count", count);
+        m.put("average", count == 0 ? 0.0 : Math.round(rs.getLong(2) * 100.0 / count) / 100.0);
+        Map<String,Long> histogram = new LinkedHashMap<>();
+        for (int star = 1; star <= 5; star++) histogram.put(String.valueOf(star), rs.getLong(2 + star));
+        m.put("histogram", histogram);
+        m.put("latest", readLatest(rs.getString(8)));
+        return m;
+      });
+    if (out != null) return out;
+    Map<String,Object> empty = new LinkedHashMap<>();
+    empty.put("count", 0L);
+    empty.put("average", 0.0);
+    Map<String,Long> histogram = new LinkedHashMap<>();
+    for (int star = 1; star <= 5; star++) histogram.put(String.valueOf(star), 0L);
+    empty.put("histogram", histogram);
+    empty.put("latest", List.of());
+    return empty;
+  }
+
+  /** Average rating from the summary, for copying onto {@code players.rating}. */
+  public double average(String providerId) {
+    return jdbc.query("SELECT CASE WHEN count > 0 THEN ratingSum * 1.0 / count ELSE 0 END FROM provider_review_summaries WHERE providerId=?",
+      ps -> ps.setString(1, providerId), rs -> rs.next() ? rs.getDouble(1) : 0.0);
+  }
+
+  /** Folds one newly inserted review into the provider's summary. */
+  public void recorded(String providerId, int rating) {
+    int star = Math.max(1, Math.min(5, rating));
+    jdbc.update("INSERT INTO provider_review_summaries (providerId,count,ratingSum,r1,r2,r3,r4,r5,latest,updatedAt) VALUES (?,1,?,?,?,?,?,?,'[]',?) " +
+        "ON CONFLICT(providerId) DO UPDATE SET count=count+1, ratingSum=ratingSum+excluded.ratingSum, " +
+        "r1=r1+excluded.r1, r2=r2+excluded.r2, r3=r3+excluded.r3, r4=r4+excluded.r4, r5=r5+excluded.r5, updatedAt=excluded.updatedAt",
+      providerId, star, star == 1 ? 1 : 0, star == 2 ? 1 : 0, star == 3 ? 1 : 0, star == 4 ? 1 : 0, star == 5 ? 1 : 0, System.currentTimeMillis());
+    refreshLatest(providerId);
+  }
+
+  /** Recomputes a provider's summary from {@code provider_reviews}. */
+  public void rebuild(String providerId) {
+    jdbc.update("DELETE FROM provider_review_summaries WHERE providerId=?", providerId);
+    jdbc.update("INSERT INTO provider_review_summaries (providerId,count,ratingSum,r1,r2,r3,r4,r5,latest,updatedAt) " +
+        "SELECT providerId, COUNT(*), SUM(rating), SUM(rating<=1), SUM(rating=2), SUM(rating=3), SUM(rating=4), SUM(rating>=5), '[]', ? " +
+        "FROM provider_reviews WHERE providerId=? GROUP BY providerId",
+      System.currentTimeMillis(), providerId);
+    refreshLatest(providerId);
+  }
+
+  public void remove(String providerId) {
+    jdbc.update("DELETE FROM provider_review_summaries WHERE providerId=?", providerId);
+  }
+
+  // Providers with reviews but no summary yet (databases created before summaries existed)
+  @PostConstruct
+  public void backfill() {
+    try {
+      List<String> missing = jdbc.queryForList(
+        "SELECT DISTINCT providerId FROM provider_reviews WHERE providerId IS NOT NULL AND providerId NOT IN (SELECT providerId FROM provider_review_summaries)",
+        String.class);
+      for (String providerId : missing) rebuild(providerId);
+    } catch (Exception ignored) {
+    }
+  }
+
+  private void refreshLatest(String providerId) {
+    List<ReviewRow> latest = page(providerId, Sort.NEWEST, null, LATEST).reviews();
+    try {
+      jdbc.update("UPDATE provider_review_summaries SET latest=? WHERE providerId=?", json.writeValueAsString(latest), providerId);
+    } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private List<Map<String,Object>> readLatest(String raw) {
+    try {
+      return raw == null ? List.of() : json.readValue(raw, REVIEW_LIST);
+    } catch (Exception e) {
+      return List.of();
+    }
+  }
+
+  private static String encode(ReviewRow last) {
+    String raw = last.rating() + ":" + last.atMillis() + ":" + last.id();
+    return B64.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String[] decode(String cursor) {
+    if (cursor == null || cursor.isBlank()) return null;
+    try {
+      String[] parts = new String(B64D.decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+      if (parts.length != 3) return null;
+      Integer.parseInt(parts[0]);
+      Long.parseLong(parts[1]);
+      return parts;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
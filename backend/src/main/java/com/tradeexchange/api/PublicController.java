@@ -1,205 +1,295 @@
 package com.tradeexchange.api;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeexchange.api.dto.ListingRow;
+import com.tradeexchange.api.dto.PlayerRow;
+import com.tradeexchange.api.dto.ProviderBatchRow;
+import com.tradeexchange.api.dto.ProviderRow;
+import com.tradeexchange.api.dto.TagCountRow;
+import com.tradeexchange.common.IdGenerator;
+import com.tradeexchange.common.Timestamps;
+import com.tradeexchange.common.geo.Gazetteer;
+import com.tradeexchange.common.json.JsonRowStreamer;
+import com.tradeexchange.common.json.JsonRowStreamer.Section;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.Instant;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
 
 @RestController
 @RequestMapping("/api")
 public class PublicController {
 
+  private static final int MAX_BATCH = 50;
+  private static final int REVIEW_PAGE = 20;
+  private static final int MAX_REVIEW_PAGE = 100;
+
   private final JdbcTemplate jdbc;
-  public PublicController(JdbcTemplate jdbc){ this.jdbc = jdbc; }
+  private final JsonRowStreamer rows;
+  private final IdGenerator ids;
+  private final CatalogSuggestions suggestions;
+  private final ProviderLocations locations;
+  private final ProviderDetailCache detailCache;
+  private final ObjectMapper json;
+  private final ProviderReviews reviews;
+  private final TransactionTemplate tx;
+  private final Favorites favorites;
+  public PublicController(JdbcTemplate jdbc, JsonRowStreamer rows, IdGenerator ids, CatalogSuggestions suggestions, ProviderLocations locations, ProviderDetailCache detailCache, ObjectMapper json, ProviderReviews reviews, TransactionTemplate tx, Favorites favorites){
+    this.jdbc = jdbc;
+    this.rows = rows;
+    this.ids = ids;
+    this.suggestions = suggestions;
+    this.locations = locations;
+    this.detailCache = detailCache;
+    this.json = json;
+    this.reviews = reviews;
+    this.tx = tx;
+    this.favorites = favorites;
+  }
 
   @GetMapping("/categories")
   public ResponseEntity<?> categories(){
     try{
-      var rows = jdbc.query("SELECT tags FROM listings WHERE tags IS NOT NULL AND TRIM(tags)<>''", rs -> {
-        java.util.Set<String> set = new java.util.HashSet<>();
-        while (rs.next()){
-          String tags = rs.getString(1);
-          if (tags!=null){ for (String t : tags.split(",")){ String v=t.trim(); if (!v.isEmpty()) set.add(v); } }
-        }
-        return new java.util.ArrayList<>(set);
-      });
-      return ResponseEntity.ok(rows);
+      return ResponseEntity.ok(jdbc.queryForList("SELECT tag FROM tag_counts ORDER BY listings DESC, tag", String.class));
     }catch(Exception e){ return ResponseEntity.ok(java.util.List.of()); }
   }
 
+  @GetMapping("/categories/top")
+  public ResponseEntity<StreamingResponseBody> topCategories(@RequestParam(value="limit", required=false) Integer limit){
+    int n = Math.max(1, Math.min(100, Optional.ofNullable(limit).orElse(10)));
+    return rows.array("SELECT " + TagCountRow.COLUMNS + " FROM tag_counts ORDER BY listings DESC, tag LIMIT ?", ps -> ps.setInt(1, n), TagCountRow.MAPPER);
+  }
+
+  // Keyset page over the (tag, listingId) key; pass the returned "next" back as "after"
+  @GetMapping("/categories/{tag}/listings")
+  public ResponseEntity<?> categoryListings(@PathVariable String tag,
+                                            @RequestParam(value="after", required=false) String after,
+                                            @RequestParam(value="limit", required=false) Integer limit){
+    String key = tag.trim().toLowerCase(Locale.ROOT);
+    int n = Math.max(1, Math.min(100, Optional.ofNullable(limit).orElse(20)));
+    try{
+      Long count = jdbc.query("SELECT listings FROM tag_counts WHERE tag=?", ps -> ps.setString(1, key), rs -> rs.next() ? rs.getLong(1) : 0L);
+      List<ListingRow> page = jdbc.query(
+        "SELECT " + ListingRow.COLUMNS + " FROM listings WHERE id IN (SELECT listingId FROM listing_tags WHERE tag = ? AND listingId > ? ORDER BY listingId LIMIT ?) ORDER BY id",
+        ps -> { ps.setString(1, key); ps.setString(2, Optional.ofNullable(after).orElse("")); ps.setInt(3, n + 1); },
+        ListingRow.MAPPER);
+      String next = null;
+      if (page.size() > n){
+        page = page.subList(0, n);
+        next = page.get(n - 1).id();
+      }
+      Map<String,Object> body = new LinkedHashMap<>();
+      body.put("tag", key);
+      body.put("count", count);
+      body.put("listings", page);
+      body.put("next", next);
+      return ResponseEntity.ok(body);
+    }catch(Exception e){ return ResponseEntity.ok(Map.of("tag", key, "count", 0, "listings", List.of())); }
+  }
+
+  // Typeahead: top suggestions whose words start with q, served from memory
+  @GetMapping("/suggest")
+  public ResponseEntity<?> suggest(@RequestParam(value = "q", required = false) String q,
+                                   @RequestParam(value = "limit", required = false) Integer limit){
+    return ResponseEntity.ok(suggestions.suggest(q, Optional.ofNullable(limit).orElse(8)));
+  }
+
   // Simple search across providers and listings by name/title/description/tags
   @GetMapping("/search")
-  public ResponseEntity<?> search(@RequestParam(value = "q", required = false) String q){
+  public ResponseEntity<StreamingResponseBody> search(@RequestParam(value = "q", required = false) String q){
     String query = q == null ? "" : q.trim().toLowerCase();
-    try{
-      // Providers
-      var providers = jdbc.query("SELECT id,name,role,rating,jobs,location,hourlyRate,bio FROM players", rs -> {
-        java.util.List<java.util.Map<String,Object>> out = new java.util.ArrayList<>();
-        while (rs.next()){
-          String name = rs.getString("name");
-          String bio = rs.getString("bio");
-          String hay = ((name==null?"":name) + " " + (bio==null?"":bio)).toLowerCase();
-          if (query.isEmpty() || hay.contains(query)){
-            out.add(java.util.Map.of(
-              "id", rs.getString("id"),
-              "name", name,
-              "role", rs.getString("role"),
-              "rating", java.util.Optional.ofNullable(rs.getObject("rating")).orElse(0),
-              "jobs", java.util.Optional.ofNullable(rs.getObject("jobs")).orElse(0),
-              "location", java.util.Optional.ofNullable(rs.getString("location")).orElse(""),
-              "hourlyRate", java.util.Optional.ofNullable(rs.getObject("hourlyRate")).orElse(0),
-              "bio", bio==null?"":bio
-            ));
-          }
-        }
-        return out;
-      });
-      // Listings
-      var listings = jdbc.query("SELECT id,title,description,price,providerId,status,createdAt,tags FROM listings", rs -> {
-        java.util.List<java.util.Map<String,Object>> out = new java.util.ArrayList<>();
-        while (rs.next()){
-          String title = rs.getString("title");
-          String desc = rs.getString("description");
-          String tags = rs.getString("tags");
-          String hay = ((title==null?"":title) + " " + (desc==null?"":desc) + " " + (tags==null?"":tags)).toLowerCase();
-          if (query.isEmpty() || hay.contains(query)){
-            java.util.Map<String,Object> row = new java.util.LinkedHashMap<>();
-            row.put("id", rs.getString("id"));
-            row.put("title", title);
-            row.put("description", desc==null?"":desc);
-            row.put("price", java.util.Optional.ofNullable(rs.getObject("price")).orElse(0));
-            row.put("providerId", rs.getString("providerId"));
-            row.put("status", java.util.Optional.ofNullable(rs.getString("status")).orElse("LISTED"));
-            row.put("createdAt", java.util.Optional.ofNullable(rs.getString("createdAt")).orElse(java.time.Instant.now().toString()));
-            row.put("tags", tags==null?"":tags);
-            out.add(row);
-          }
-        }
-        return out;
-      });
-      return ResponseEntity.ok(java.util.Map.of("providers", providers, "listings", listings));
-    }catch(Exception e){
-      return ResponseEntity.ok(java.util.Map.of("providers", java.util.List.of(), "listings", java.util.List.of()));
-    }
+    PreparedStatementSetter match = ps -> ps.setString(1, query);
+    return rows.object(
+      new Section("providers",
+        "SELECT " + PlayerRow.COLUMNS + " FROM players WHERE ?1 = '' OR instr(lower(COALESCE(name,'') || ' ' || COALESCE(bio,'')), ?1) > 0",
+        match, PlayerRow.MAPPER),
+      new Section("listings",
+        "SELECT " + ListingRow.COLUMNS + " FROM listings WHERE ?1 = '' OR instr(lower(COALESCE(title,'') || ' ' || COALESCE(description,'') || ' ' || COALESCE(tags,'')), ?1) > 0",
+        match, ListingRow.MAPPER)
+    );
   }
 
   @GetMapping("/players")
-  public ResponseEntity<?> players(){
-    try{
-      List<Map<String,Object>> rows = jdbc.query("SELECT id,name,role,rating,jobs,location,hourlyRate,bio FROM players",
-        rs -> {
-          List<Map<String,Object>> out = new ArrayList<>();
-          while (rs.next()){
-            out.add(Map.of(
-              "id", rs.getString("id"),
-              "name", rs.getString("name"),
-              "role", rs.getString("role"),
-              "rating", Optional.ofNullable(rs.getObject("rating")).orElse(0),
-              "jobs", Optional.ofNullable(rs.getObject("jobs")).orElse(0),
-              "location", Optional.ofNullable(rs.getString("location")).orElse(""),
-              "hourlyRate", Optional.ofNullable(rs.getObject("hourlyRate")).orElse(0),
-              "bio", Optional.ofNullable(rs.getString("bio")).orElse("")
-            ));
-          }
-          return out;
-        });
-      return ResponseEntity.ok(rows);
-    }catch(Exception e){ return ResponseEntity.ok(List.of()); }
+  public ResponseEntity<StreamingResponseBody> players(){
+    return rows.array("SELECT " + PlayerRow.COLUMNS + " FROM players", null, PlayerRow.MAPPER);
   }
 
   @GetMapping("/listings")
-  public ResponseEntity<?> listings(){
+  public ResponseEntity<StreamingResponseBody> listings(){
+    return rows.array("SELECT " + ListingRow.COLUMNS + " FROM listings", null, ListingRow.MAPPER);
+  }
+
+  // Providers whose travel radius covers a point: ?lat=&lon= or ?near=Austin, TX
+  @GetMapping("/providers/near")
+  public ResponseEntity<?> providersNear(@RequestParam(value="lat", required=false) Double lat,
+                                         @RequestParam(value="lon", required=false) Double lon,
+                                         @RequestParam(value="near", required=false) String near,
+                                         @RequestParam(value="limit", required=false) Integer limit){
+    Optional<Gazetteer.Point> point = lat != null && lon != null
+      ? locations.locate(lat + "," + lon)
+      : locations.locate(near);
+    if (point.isEmpty()) return ResponseEntity.badRequest().body(Map.of("error","Unknown location"));
+    int n = Math.max(1, Math.min(100, Optional.ofNullable(limit).orElse(20)));
     try{
-      List<Map<String,Object>> rows = jdbc.query("SELECT id,title,description,price,providerId,status,createdAt,tags FROM listings",
-        rs -> {
-          List<Map<String,Object>> out = new ArrayList<>();
-          while (rs.next()){
-            out.add(Map.of(
-              "id", rs.getString("id"),
-              "title", rs.getString("title"),
-              "description", Optional.ofNullable(rs.getString("description")).orElse(""),
-              "price", Optional.ofNullable(rs.getObject("price")).orElse(0),
-              "providerId", rs.getString("providerId"),
-              "status", Optional.ofNullable(rs.getString("status")).orElse("LISTED"),
-              "createdAt", Optional.ofNullable(rs.getString("createdAt")).orElse(Instant.now().toString()),
-              "tags", Optional.ofNullable(rs.getString("tags")).orElse("")
-            ));
-          }
-          return out;
-        });
-      return ResponseEntity.ok(rows);
-    }catch(Exception e){ return ResponseEntity.ok(List.of()); }
+      Map<String,Object> body = new LinkedHashMap<>();
+      body.put("point", Map.of("lat", point.get().lat(), "lon", point.get().lon()));
+      body.put("providers", locations.serving(point.get(), n));
+      return ResponseEntity.ok(body);
+    }catch(Exception e){ return ResponseEntity.ok(Map.of("providers", List.of())); }
   }
 
   @GetMapping("/providers/{id}")
-  public ResponseEntity<?> provider(@PathVariable String id){
+  public ResponseEntity<?> provider(@PathVariable String id, @RequestHeader(value="If-None-Match", required=false) String ifNoneMatch){
     try{
-      Map<String,Object> provider = jdbc.query("SELECT * FROM players WHERE id=?", ps -> ps.setString(1,id), rs -> {
-        if (!rs.next()) return null;
-        Map<String,Object> p = new LinkedHashMap<>();
-        p.put("id", rs.getString("id"));
-        p.put("name", rs.getString("name"));
-        p.put("role", rs.getString("role"));
-        p.put("rating", Optional.ofNullable(rs.getObject("rating")).orElse(0));
-        p.put("jobs", Optional.ofNullable(rs.getObject("jobs")).orElse(0));
-        p.put("location", Optional.ofNullable(rs.getString("location")).orElse(""));
-        p.put("hourlyRate", Optional.ofNullable(rs.getObject("hourlyRate")).orElse(0));
-        p.put("bio", Optional.ofNullable(rs.getString("bio")).orElse(""));
-        p.put("website", Optional.ofNullable(rs.getString("website")).orElse(""));
-        p.put("phone", Optional.ofNullable(rs.getString("phone")).orElse(""));
-        p.put("availability", Optional.ofNullable(rs.getString("availability")).orElse(""));
-        return p;
-      });
-      if (provider == null) return ResponseEntity.status(404).body(Map.of("message","Not found"));
-      List<Map<String,Object>> listings = jdbc.query("SELECT id,title,description,price,providerId,status,createdAt,tags FROM listings WHERE providerId=?",
-        ps -> ps.setString(1, id),
-        rs -> {
-          List<Map<String,Object>> out = new ArrayList<>();
-          while (rs.next()){
-            out.add(Map.of(
-              "id", rs.getString("id"),
-              "title", rs.getString("title"),
-              "description", Optional.ofNullable(rs.getString("description")).orElse(""),
-              "price", Optional.ofNullable(rs.getObject("price")).orElse(0),
-              "providerId", rs.getString("providerId"),
-              "status", Optional.ofNullable(rs.getString("status")).orElse("LISTED"),
-              "createdAt", Optional.ofNullable(rs.getString("createdAt")).orElse(Instant.now().toString()),
-              "tags", Optional.ofNullable(rs.getString("tags")).orElse("")
-            ));
-          }
-          return out;
-        });
-      return ResponseEntity.ok(Map.of("provider", provider, "listings", listings));
+      ProviderDetailCache.Entry cached = detailCache.get(id, () -> loadDetail(id));
+      if (cached == null) return ResponseEntity.status(404).body(Map.of("message","Not found"));
+      return cachedBody(cached.detail(), cached.detailEtag(), ifNoneMatch);
     }catch(Exception e){ return ResponseEntity.status(404).body(Map.of("message","Not found")); }
   }
 
+  // Several providers in one call: four IN queries however many ids are asked for.
+  // fields= limits provider keys; "listings", "reviews" and "favoritedBy" in fields select those sections.
+  // The short public Cache-Control covers the whole response; entries are not cached per id.
+  @GetMapping("/providers/batch")
+  public ResponseEntity<?> providersBatch(@RequestParam("ids") List<String> ids,
+                                          @RequestParam(value="fields", required=false) List<String> fields){
+    List<String> wanted = ids.stream().flatMap(v -> Arrays.stream(v.split(","))).map(String::trim).filter(v -> !v.isEmpty()).distinct().limit(MAX_BATCH).toList();
+    Set<String> projection = fields == null ? Set.of() : fields.stream().flatMap(v -> Arrays.stream(v.split(","))).map(String::trim).filter(v -> !v.isEmpty()).collect(java.util.stream.Collectors.toSet());
+    boolean withListings = projection.isEmpty() || projection.contains("listings");
+    boolean withReviews = projection.isEmpty() || projection.contains("reviews");
+    boolean withFavorites = projection.isEmpty() || projection.contains("favoritedBy");
+    if (wanted.isEmpty()) return ResponseEntity.ok(Map.of("providers", List.of(), "missing", List.of()));
+
+    String in = String.join(",", Collections.nCopies(wanted.size(), "?"));
+    PreparedStatementSetter args = ps -> { for (int i = 0; i < wanted.size(); i++) ps.setString(i + 1, wanted.get(i)); };
+    try{
+      Map<String,ProviderRow> providers = new HashMap<>();
+      for (ProviderRow p : jdbc.query("SELECT " + ProviderRow.COLUMNS + " FROM players WHERE id IN (" + in + ")", args, ProviderRow.MAPPER)) providers.put(p.id(), p);
+      Map<String,List<ListingRow>> listings = new HashMap<>();
+      if (withListings){
+        for (ListingRow l : jdbc.query("SELECT " + ListingRow.COLUMNS + " FROM listings WHERE providerId IN (" + in + ")", args, ListingRow.MAPPER)){
+          listings.computeIfAbsent(l.providerId(), k -> new ArrayList<>()).add(l);
+        }
+      }
+      Map<String,ProviderBatchRow.Reviews> reviewStats = new HashMap<>();
+      if (withReviews){
+        jdbc.query("SELECT providerId, count, CASE WHEN count > 0 THEN ratingSum * 1.0 / count ELSE 0 END FROM provider_review_summaries WHERE providerId IN (" + in + ")", args,
+          rs -> { reviewStats.put(rs.getString(1), new ProviderBatchRow.Reviews(rs.getLong(2), Math.round(rs.getDouble(3) * 100) / 100.0)); });
+      }
+
+      Map<String,Long> favoritedBy = withFavorites ? favorites.favoritedBy(wanted) : Map.of();
+
+      List<ProviderBatchRow> out = new ArrayList<>();
+      List<String> missing = new ArrayList<>();
+      for (String id : wanted){
+        ProviderRow provider = providers.get(id);
+        if (provider == null){ missing.add(id); continue; }
+        out.add(new ProviderBatchRow(provider, projection,
+          withListings ? listings.getOrDefault(id, List.of()) : null,
+          withReviews ? reviewStats.getOrDefault(id, ProviderBatchRow.Reviews.NONE) : null,
+          withFavorites ? favoritedBy.getOrDefault(id, 0L) : null));
+      }
+      return ResponseEntity.ok()
+        .cacheControl(CacheControl.maxAge(Duration.ofSeconds(30)).cachePublic())
+        .body(Map.of("providers", out, "missing", missing));
+    }catch(Exception e){ return ResponseEntity.ok(Map.of("providers", List.of(), "missing", wanted)); }
+  }
+
+  // One page of reviews; the cursor for the next page (if any) is in X-Next-Cursor.
+  // The default first page (newest, no cursor) is served from the provider cache.
   @GetMapping("/providers/{id}/reviews")
-  public ResponseEntity<?> listReviews(@PathVariable String id){
-    var rows = jdbc.query("SELECT id,author,rating,text,at FROM provider_reviews WHERE providerId=? ORDER BY at DESC", ps -> ps.setString(1,id), rs -> {
-      java.util.List<java.util.Map<String,Object>> out = new java.util.ArrayList<>();
-      while (rs.next()){
-        out.add(java.util.Map.of(
-          "id", rs.getString(1),
-          "author", rs.getString(2),
-          "rating", rs.getInt(3),
-          "text", rs.getString(4),
-          "at", rs.getString(5)
-        ));
+  public ResponseEntity<?> listReviews(@PathVariable String id,
+                                       @RequestParam(value="sort", required=false) String sort,
+                                       @RequestParam(value="cursor", required=false) String cursor,
+                                       @RequestParam(value="limit", required=false) Integer limit,
+                                       @RequestHeader(value="If-None-Match", required=false) String ifNoneMatch){
+    ProviderReviews.Sort order = ProviderReviews.sort(sort);
+    int size = Math.max(1, Math.min(MAX_REVIEW_PAGE, Optional.ofNullable(limit).orElse(REVIEW_PAGE)));
+    if (order == ProviderReviews.Sort.NEWEST && (cursor == null || cursor.isBlank()) && size == REVIEW_PAGE){
+      ProviderDetailCache.Entry cached = detailCache.get(id, () -> loadDetail(id));
+      if (cached != null){
+        ResponseEntity<?> res = cachedBody(cached.reviews(), cached.reviewsEtag(), ifNoneMatch);
+        if (cached.reviewsNext() == null) return res;
+        return ResponseEntity.status(res.getStatusCode()).headers(res.getHeaders()).header("X-Next-Cursor", cached.reviewsNext()).body(res.getBody());
       }
-      return out;
-    });
-    return ResponseEntity.ok(rows);
+    }
+    ProviderReviews.Page page = reviews.page(id, order, cursor, size);
+    ResponseEntity.BodyBuilder res = ResponseEntity.ok();
+    if (page.next() != null) res.header("X-Next-Cursor", page.next());
+    return res.body(page.reviews());
+  }
+
+  @GetMapping("/providers/{id}/reviews/summary")
+  public ResponseEntity<?> reviewSummary(@PathVariable String id){
+    return ResponseEntity.ok(reviews.summary(id));
+  }
+
+  // Provider page and reviews, serialized once per cache fill; null when the provider does not exist
+  private ProviderDetailCache.Entry loadDetail(String id){
+    ProviderRow provider = jdbc.query("SELECT " + ProviderRow.COLUMNS + " FROM players WHERE id=?", ps -> ps.setString(1,id), rs -> rs.next() ? ProviderRow.MAPPER.mapRow(rs, 0) : null);
+    if (provider == null) return null;
+    List<ListingRow> listings = jdbc.query("SELECT " + ListingRow.COLUMNS + " FROM listings WHERE providerId=?",
+      ps -> ps.setString(1, id),
+      ListingRow.MAPPER);
+    try{
+      byte[] detail = json.writeValueAsBytes(Map.of("provider", provider, "listings", listings, "reviewSummary", reviews.summary(id)));
+      ProviderReviews.Page first = reviews.page(id, ProviderReviews.Sort.NEWEST, null, REVIEW_PAGE);
+      byte[] firstPage = json.writeValueAsBytes(first.reviews());
+      return new ProviderDetailCache.Entry(detail, etag(detail), firstPage, etag(firstPage), first.next());
+    }catch(JsonProcessingException e){
+      throw new IllegalStateException(e);
+    }
   }
+
+  private static ResponseEntity<?> cachedBody(byte[] body, String etag, String ifNoneMatch){
+    if (matches(etag, ifNoneMatch)) return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  // If-None-Match is a comma-separated list compared weakly (RFC 9110 13.1.2); "*" matches any current body
+  private static boolean matches(String etag, String ifNoneMatch){
+    if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+    for (String tag : ifNoneMatch.split(",")){
+      String t = tag.trim();
+      if (t.equals("*")) return true;
+      if (t.startsWith("W/")) t = t.substring(2);
+      if (t.equals(etag)) return true;
+    }
+    return false;
+  }
+
+  private static String etag(byte[] body){
+    try{
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+      return "\"" + HexFormat.of().formatHex(digest, 0, 12) + "\"";
+    }catch(NoSuchAlgorithmException e){
+      throw new IllegalStateException("SHA-256 unavailable", e);
+    }
+  }
+
   public record NewReview(Integer rating, String text){}
   @PostMapping("/providers/{id}/reviews")
   public ResponseEntity<?> postReview(@PathVariable String id, @RequestBody NewReview req){
-    String rid = UUID.randomUUID().toString().substring(0,8);
+    String rid = ids.next();
     int rating = Math.max(1, Math.min(5, java.util.Optional.ofNullable(req.rating()).orElse(0)));
     String text = java.util.Optional.ofNullable(req.text()).orElse("");
-    String at = Instant.now().toString();
-    jdbc.update("INSERT INTO provider_reviews (id,providerId,author,rating,text,at) VALUES (?,?,?,?,?,?)", rid, id, "Customer", rating, text, at);
-    return ResponseEntity.ok(java.util.Map.of("ok", true, "review", java.util.Map.of("id", rid, "author","Customer","rating", rating, "text", text, "at", at)));
+    long at = System.currentTimeMillis();
+    tx.executeWithoutResult(status -> {
+      jdbc.update("INSERT INTO provider_reviews (id,providerId,author,rating,text,at) VALUES (?,?,?,?,?,?)", rid, id, "Customer", rating, text, at);
+      reviews.recorded(id, rating);
+    });
+    detailCache.invalidate(id);
+    return ResponseEntity.ok(java.util.Map.of("ok", true, "review", java.util.Map.of("id", rid, "author","Customer","rating", rating, "text", text, "at", Timestamps.iso(at))));
   }
 }
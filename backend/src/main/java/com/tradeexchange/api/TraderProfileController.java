@@ -1,6 +1,7 @@
 package com.tradeexchange.api;
 
 import com.tradeexchange.api.dto.TraderProfileRequest;
+import com.tradeexchange.common.IdGenerator;
 import com.tradeexchange.common.SessionResolver;
 import com.tradeexchange.common.SessionResolver.UserSession;
 import org.springframework.http.HttpStatus;
@@ -12,7 +13,6 @@ import java.time.Instant;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/trader")
@@ -20,10 +20,18 @@ public class TraderProfileController {
 
   private final JdbcTemplate jdbc;
   private final SessionResolver sessions;
+  private final IdGenerator ids;
+  private final CatalogFacets facets;
+  private final ProviderLocations locations;
+  private final ProviderDetailCache detailCache;
 
-  public TraderProfileController(JdbcTemplate jdbc, SessionResolver sessions) {
+  public TraderProfileController(JdbcTemplate jdbc, SessionResolver sessions, IdGenerator ids, CatalogFacets facets, ProviderLocations locations, ProviderDetailCache detailCache) {
     this.jdbc = jdbc;
     this.sessions = sessions;
+    this.ids = ids;
+    this.facets = facets;
+    this.locations = locations;
+    this.detailCache = detailCache;
   }
 
   @GetMapping("/profile")
@@ -76,6 +84,9 @@ public class TraderProfileController {
       Instant.now().toString(),
       providerId
     );
+    facets.refreshProvider(providerId);
+    locations.refresh(providerId);
+    detailCache.invalidate(providerId);
 
     Map<String,Object> profile = loadProfile(providerId, user);
     return ResponseEntity.ok(profile);
@@ -130,8 +141,11 @@ public class TraderProfileController {
   private String ensureProviderForUser(UserSession user){
     String providerId = user.providerPlayerId();
     if (providerId != null && !providerId.isBlank()) return providerId;
+    // A signed session may predate the provider link; check the stored one before creating another
+    providerId = jdbc.query("SELECT providerPlayerId FROM users WHERE id=?", ps -> ps.setString(1, user.id()), rs -> rs.next() ? rs.getString(1) : null);
+    if (providerId != null && !providerId.isBlank()) return providerId;
 
-    providerId = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    providerId = ids.next();
     jdbc.update("INSERT INTO players (id,name,role,rating,jobs,bio,createdAt) VALUES (?,?,?,?,?,?,?)",
       providerId,
       fallbackName(user),
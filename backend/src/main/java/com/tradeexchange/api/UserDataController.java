@@ -1,16 +1,23 @@
 package com.tradeexchange.api;
 
+import com.tradeexchange.api.dto.FavoriteRow;
+import com.tradeexchange.api.dto.HistoryRow;
 import com.tradeexchange.common.SessionResolver;
 import com.tradeexchange.common.SessionResolver.UserSession;
+import com.tradeexchange.common.TieredPages;
+import com.tradeexchange.common.json.JsonRowStreamer;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -19,81 +26,78 @@ import java.util.Optional;
 @RequestMapping("/api")
 public class UserDataController {
 
-  private final JdbcTemplate jdbc;
+  private static final int HISTORY_LIMIT = 100;
+
   private final SessionResolver sessions;
+  private final JsonRowStreamer rows;
+  private final JdbcTemplate jdbc;
+  private final Archiver archiver;
+  private final Favorites favorites;
 
-  public UserDataController(JdbcTemplate jdbc, SessionResolver sessions) {
-    this.jdbc = jdbc;
+  public UserDataController(SessionResolver sessions, JsonRowStreamer rows, JdbcTemplate jdbc, Archiver archiver, Favorites favorites) {
     this.sessions = sessions;
+    this.rows = rows;
+    this.jdbc = jdbc;
+    this.archiver = archiver;
+    this.favorites = favorites;
   }
 
   @GetMapping({"/user/favorites", "/favorites"})
-  public ResponseEntity<?> favorites(@RequestHeader(value = "Authorization", required = false) String authz){
+  public ResponseEntity<StreamingResponseBody> favorites(@RequestHeader(value = "Authorization", required = false) String authz){
     Optional<UserSession> session = sessions.fromAuthorization(authz);
-    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    if (session.isEmpty()) return rows.error(HttpStatus.UNAUTHORIZED, "error", "No token");
     UserSession user = session.get();
 
-    List<Map<String,Object>> rows = jdbc.query(
-      "SELECT f.providerId, p.name, p.role, p.rating, p.jobs, COUNT(i.id) AS interactions " +
+    return rows.array(
+      "SELECT f.providerId, p.name, p.role, p.rating, p.jobs, COALESCE(r.interactions, 0) AS interactions " +
       "FROM favorites f " +
       "LEFT JOIN players p ON p.id = f.providerId " +
-      "LEFT JOIN interactions i ON i.userId = f.userId AND i.providerId = f.providerId " +
+      "LEFT JOIN user_provider_interactions r ON r.userId = f.userId AND r.providerId = f.providerId " +
       "WHERE f.userId = ? " +
-      "GROUP BY f.providerId, p.name, p.role, p.rating, p.jobs " +
       "ORDER BY interactions DESC",
       ps -> ps.setString(1, user.id()),
-      rs -> {
-        List<Map<String,Object>> out = new java.util.ArrayList<>();
-        while (rs.next()){
-          Map<String,Object> provider = new LinkedHashMap<>();
-          provider.put("id", rs.getString("providerId"));
-          provider.put("name", rs.getString("name"));
-          provider.put("role", rs.getString("role"));
-          provider.put("rating", rs.getObject("rating"));
-          provider.put("jobs", rs.getObject("jobs"));
-
-          Map<String,Object> row = new LinkedHashMap<>();
-          row.put("providerId", rs.getString("providerId"));
-          row.put("count", rs.getLong("interactions"));
-          row.put("provider", provider);
-          out.add(row);
-        }
-        return out;
-      }
+      FavoriteRow.MAPPER
     );
+  }
 
-    return ResponseEntity.ok(rows);
+  // Idempotent: adding twice or removing a missing favorite leaves the counts alone
+  @PutMapping("/user/favorites/{providerId}")
+  public ResponseEntity<?> addFavorite(@PathVariable String providerId, @RequestHeader(value = "Authorization", required = false) String authz) {
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    Optional<Favorites.Change> change = favorites.add(session.get().id(), providerId);
+    if (change.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Provider not found"));
+    return ResponseEntity.ok(change.get());
+  }
+
+  @DeleteMapping("/user/favorites/{providerId}")
+  public ResponseEntity<?> removeFavorite(@PathVariable String providerId, @RequestHeader(value = "Authorization", required = false) String authz) {
+    Optional<UserSession> session = sessions.fromAuthorization(authz);
+    if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
+    return ResponseEntity.ok(favorites.remove(session.get().id(), providerId));
   }
 
+  // Latest interactions; older ones are read from the archive only when the hot table runs out
   @GetMapping({"/user/history", "/history"})
-  public ResponseEntity<?> history(@RequestHeader(value = "Authorization", required = false) String authz){
+  public ResponseEntity<?> history(@RequestHeader(value = "Authorization", required = false) String authz) {
     Optional<UserSession> session = sessions.fromAuthorization(authz);
     if (session.isEmpty()) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "No token"));
     UserSession user = session.get();
 
-    List<Map<String,Object>> rows = jdbc.query(
+    TieredPages.Page<HistoryRow> page = TieredPages.newestFirst(null, HISTORY_LIMIT, archiver.horizon(Archiver.INTERACTIONS),
+      (at, id, n) -> history(jdbc, "interactions", user.id(), n),
+      (at, id, n) -> archiver.database().attached(jdbc, false, db -> history(db, "archive.interactions", user.id(), n)),
+      HistoryRow::at, HistoryRow::id);
+    return ResponseEntity.ok(page.rows());
+  }
+
+  private static List<HistoryRow> history(JdbcTemplate db, String table, String userId, int limit) {
+    return db.query(
       "SELECT i.id, i.providerId, p.name AS providerName, i.note, i.at, i.amount " +
-      "FROM interactions i " +
+      "FROM " + table + " i " +
       "LEFT JOIN players p ON p.id = i.providerId " +
       "WHERE i.userId = ? " +
-      "ORDER BY i.at DESC LIMIT 100",
-      ps -> ps.setString(1, user.id()),
-      rs -> {
-        List<Map<String,Object>> out = new java.util.ArrayList<>();
-        while (rs.next()){
-          Map<String,Object> row = new LinkedHashMap<>();
-          row.put("id", rs.getString("id"));
-          row.put("providerId", rs.getString("providerId"));
-          row.put("providerName", rs.getString("providerName"));
-          row.put("note", rs.getString("note"));
-          row.put("at", rs.getString("at"));
-          row.put("amount", rs.getObject("amount"));
-          out.add(row);
-        }
-        return out;
-      }
-    );
-
-    return ResponseEntity.ok(rows);
+      "ORDER BY i.at DESC, i.id DESC LIMIT ?",
+      HistoryRow.MAPPER, userId, limit);
   }
 }
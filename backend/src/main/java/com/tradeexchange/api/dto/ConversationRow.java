@@ -0,0 +1,42 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.string;
+import static com.tradeexchange.common.json.JsonRow.timestamp;
+
+/** Inbox entry as returned by {@code /api/conversations}. */
+public record ConversationRow(String id, String kind, String title, Long createdAt, String lastMessage) implements JsonRow {
+
+  public static final String COLUMNS = "c.id,c.kind,c.title,c.createdAt,c.lastMessage";
+
+  public static final RowMapper<ConversationRow> MAPPER = (rs, n) -> new ConversationRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getString(3),
+    JsonRow.nullableLong(rs, 4),
+    rs.getString(5)
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString KIND = new SerializedString("kind");
+  private static final SerializedString TITLE = new SerializedString("title");
+  private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+  private static final SerializedString LAST_MESSAGE = new SerializedString("lastMessage");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    string(gen, KIND, kind);
+    string(gen, TITLE, title);
+    timestamp(gen, CREATED_AT, createdAt);
+    string(gen, LAST_MESSAGE, lastMessage);
+    gen.writeEndObject();
+  }
+}
@@ -0,0 +1,49 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.string;
+
+/** Favorite provider with the caller's interaction count, as returned by {@code /api/user/favorites}. */
+public record FavoriteRow(String providerId, String name, String role, Double rating, Long jobs, long count) implements JsonRow {
+
+  public static final RowMapper<FavoriteRow> MAPPER = (rs, n) -> new FavoriteRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getString(3),
+    JsonRow.nullableDouble(rs, 4),
+    JsonRow.nullableLong(rs, 5),
+    rs.getLong(6)
+  );
+
+  private static final SerializedString PROVIDER_ID = new SerializedString("providerId");
+  private static final SerializedString COUNT = new SerializedString("count");
+  private static final SerializedString PROVIDER = new SerializedString("provider");
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString NAME = new SerializedString("name");
+  private static final SerializedString ROLE = new SerializedString("role");
+  private static final SerializedString RATING = new SerializedString("rating");
+  private static final SerializedString JOBS = new SerializedString("jobs");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, PROVIDER_ID, providerId);
+    number(gen, COUNT, count);
+    gen.writeFieldName(PROVIDER);
+    gen.writeStartObject();
+    string(gen, ID, providerId);
+    string(gen, NAME, name);
+    string(gen, ROLE, role);
+    number(gen, RATING, rating);
+    number(gen, JOBS, jobs);
+    gen.writeEndObject();
+    gen.writeEndObject();
+  }
+}
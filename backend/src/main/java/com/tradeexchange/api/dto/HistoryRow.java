@@ -0,0 +1,44 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.string;
+import static com.tradeexchange.common.json.JsonRow.timestamp;
+
+/** Past interaction as returned by {@code /api/user/history}. */
+public record HistoryRow(String id, String providerId, String providerName, String note, Long at, Double amount) implements JsonRow {
+
+  public static final RowMapper<HistoryRow> MAPPER = (rs, n) -> new HistoryRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getString(3),
+    rs.getString(4),
+    JsonRow.nullableLong(rs, 5),
+    JsonRow.nullableDouble(rs, 6)
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString PROVIDER_ID = new SerializedString("providerId");
+  private static final SerializedString PROVIDER_NAME = new SerializedString("providerName");
+  private static final SerializedString NOTE = new SerializedString("note");
+  private static final SerializedString AT = new SerializedString("at");
+  private static final SerializedString AMOUNT = new SerializedString("amount");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    string(gen, PROVIDER_ID, providerId);
+    string(gen, PROVIDER_NAME, providerName);
+    string(gen, NOTE, note);
+    timestamp(gen, AT, at);
+    number(gen, AMOUNT, amount);
+    gen.writeEndObject();
+  }
+}
@@ -0,0 +1,49 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.string;
+import static com.tradeexchange.common.json.JsonRow.timestamp;
+
+/** Inbox entry with the caller's unread count, as returned by {@code /api/conversations}. */
+public record InboxRow(String id, String kind, String title, Long createdAt, String lastMessage, long unread, Long lastActivityAt) implements JsonRow {
+
+  public static final String COLUMNS = ConversationRow.COLUMNS + ",m.unread,m.lastActivityAt";
+
+  public static final RowMapper<InboxRow> MAPPER = (rs, n) -> new InboxRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getString(3),
+    JsonRow.nullableLong(rs, 4),
+    rs.getString(5),
+    rs.getLong(6),
+    JsonRow.nullableLong(rs, 7)
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString KIND = new SerializedString("kind");
+  private static final SerializedString TITLE = new SerializedString("title");
+  private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+  private static final SerializedString LAST_MESSAGE = new SerializedString("lastMessage");
+  private static final SerializedString UNREAD = new SerializedString("unread");
+  private static final SerializedString LAST_ACTIVITY_AT = new SerializedString("lastActivityAt");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    string(gen, KIND, kind);
+    string(gen, TITLE, title);
+    timestamp(gen, CREATED_AT, createdAt);
+    string(gen, LAST_MESSAGE, lastMessage);
+    number(gen, UNREAD, unread);
+    timestamp(gen, LAST_ACTIVITY_AT, lastActivityAt);
+    gen.writeEndObject();
+  }
+}
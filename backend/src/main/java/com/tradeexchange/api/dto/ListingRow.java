@@ -0,0 +1,53 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.orElse;
+import static com.tradeexchange.common.json.JsonRow.string;
+
+/** Listing as returned by {@code /api/listings}, {@code /api/trader/listings} and {@code /api/search}. */
+public record ListingRow(String id, String title, String description, double price, String providerId, String status, String createdAt, String tags) implements JsonRow {
+
+  public static final String COLUMNS = "id,title,description,price,providerId,status,createdAt,tags";
+
+  public static final RowMapper<ListingRow> MAPPER = (rs, n) -> new ListingRow(
+    rs.getString(1),
+    rs.getString(2),
+    orElse(rs.getString(3), ""),
+    rs.getDouble(4),
+    rs.getString(5),
+    orElse(rs.getString(6), "LISTED"),
+    orElse(rs.getString(7), Instant.now().toString()),
+    orElse(rs.getString(8), "")
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString TITLE = new SerializedString("title");
+  private static final SerializedString DESCRIPTION = new SerializedString("description");
+  private static final SerializedString PRICE = new SerializedString("price");
+  private static final SerializedString PROVIDER_ID = new SerializedString("providerId");
+  private static final SerializedString STATUS = new SerializedString("status");
+  private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+  private static final SerializedString TAGS = new SerializedString("tags");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    string(gen, TITLE, title);
+    string(gen, DESCRIPTION, description);
+    number(gen, PRICE, price);
+    string(gen, PROVIDER_ID, providerId);
+    string(gen, STATUS, status);
+    string(gen, CREATED_AT, createdAt);
+    string(gen, TAGS, tags);
+    gen.writeEndObject();
+  }
+}
@@ -0,0 +1,45 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.string;
+import static com.tradeexchange.common.json.JsonRow.timestamp;
+
+/** Chat message as returned by {@code /api/conversations/{id}/messages}. */
+public record MessageRow(String id, String conversationId, String userId, String role, String content, Long createdAt) implements JsonRow {
+
+  public static final String COLUMNS = "id,conversationId,userId,role,content,createdAt";
+
+  public static final RowMapper<MessageRow> MAPPER = (rs, n) -> new MessageRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getString(3),
+    rs.getString(4),
+    rs.getString(5),
+    JsonRow.nullableLong(rs, 6)
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString CONVERSATION_ID = new SerializedString("conversationId");
+  private static final SerializedString USER_ID = new SerializedString("userId");
+  private static final SerializedString ROLE = new SerializedString("role");
+  private static final SerializedString CONTENT = new SerializedString("content");
+  private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    string(gen, CONVERSATION_ID, conversationId);
+    string(gen, USER_ID, userId);
+    string(gen, ROLE, role);
+    string(gen, CONTENT, content);
+    timestamp(gen, CREATED_AT, createdAt);
+    gen.writeEndObject();
+  }
+}
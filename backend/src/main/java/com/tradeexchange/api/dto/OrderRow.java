@@ -0,0 +1,100 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.bool;
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.orElse;
+import static com.tradeexchange.common.json.JsonRow.string;
+import static com.tradeexchange.common.json.JsonRow.timestamp;
+
+/**
+ * Order as seen by traders and admins ({@code /api/trader/orders}) and by customers
+ * ({@code /api/orders/mine}). The customer view carries {@code providerName} instead of {@code userName}.
+ */
+public record OrderRow(String id, String userName, String providerName, String service, String status, Double amount,
+                       Long createdAt, String providerId, String listingId, String conversationId,
+                       String reqDetails, String reqDate, String reqTime, boolean reqAck) implements JsonRow {
+
+  public static final String COLUMNS = "id,userName,service,status,amount,createdAt,providerId,listingId,conversationId,reqDetails,reqDate,reqTime,reqAck";
+
+  public static final String CUSTOMER_COLUMNS = "o.id,p.name,o.service,o.status,o.amount,o.createdAt,o.providerId,o.listingId,o.conversationId,o.reqDetails,o.reqDate,o.reqTime,o.reqAck";
+
+  public static final RowMapper<OrderRow> TRADER_MAPPER = (rs, n) -> new OrderRow(
+    rs.getString(1),
+    orElse(rs.getString(2), "Customer"),
+    null,
+    rs.getString(3),
+    rs.getString(4),
+    rs.getDouble(5),
+    JsonRow.nullableLong(rs, 6),
+    rs.getString(7),
+    rs.getString(8),
+    rs.getString(9),
+    rs.getString(10),
+    rs.getString(11),
+    rs.getString(12),
+    rs.getInt(13) != 0
+  );
+
+  public static final RowMapper<OrderRow> CUSTOMER_MAPPER = (rs, n) -> new OrderRow(
+    rs.getString(1),
+    null,
+    orElse(rs.getString(2), "Trader"),
+    rs.getString(3),
+    rs.getString(4),
+    JsonRow.nullableDouble(rs, 5),
+    JsonRow.nullableLong(rs, 6),
+    rs.getString(7),
+    rs.getString(8),
+    rs.getString(9),
+    rs.getString(10),
+    rs.getString(11),
+    rs.getString(12),
+    rs.getInt(13) != 0
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString USER_NAME = new SerializedString("userName");
+  private static final SerializedString PROVIDER_NAME = new SerializedString("providerName");
+  private static final SerializedString SERVICE = new SerializedString("service");
+  private static final SerializedString STATUS = new SerializedString("status");
+  private static final SerializedString AMOUNT = new SerializedString("amount");
+  private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+  private static final SerializedString PROVIDER_ID = new SerializedString("providerId");
+  private static final SerializedString LISTING_ID = new SerializedString("listingId");
+  private static final SerializedString CONVERSATION_ID = new SerializedString("conversationId");
+  private static final SerializedString REQUEST = new SerializedString("request");
+  private static final SerializedString DETAILS = new SerializedString("details");
+  private static final SerializedString DATE = new SerializedString("date");
+  private static final SerializedString TIME = new SerializedString("time");
+  private static final SerializedString ACK = new SerializedString("ack");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    if (userName != null) string(gen, USER_NAME, userName);
+    string(gen, SERVICE, service);
+    string(gen, STATUS, status);
+    number(gen, AMOUNT, amount);
+    timestamp(gen, CREATED_AT, createdAt);
+    string(gen, PROVIDER_ID, providerId);
+    string(gen, LISTING_ID, listingId);
+    string(gen, CONVERSATION_ID, conversationId);
+    if (providerName != null) string(gen, PROVIDER_NAME, providerName);
+    gen.writeFieldName(REQUEST);
+    gen.writeStartObject();
+    string(gen, DETAILS, reqDetails);
+    string(gen, DATE, reqDate);
+    string(gen, TIME, reqTime);
+    bool(gen, ACK, reqAck);
+    gen.writeEndObject();
+    gen.writeEndObject();
+  }
+}
@@ -0,0 +1,52 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.orElse;
+import static com.tradeexchange.common.json.JsonRow.string;
+
+/** Provider card as returned by {@code /api/players} and the provider half of {@code /api/search}. */
+public record PlayerRow(String id, String name, String role, double rating, int jobs, String location, double hourlyRate, String bio) implements JsonRow {
+
+  public static final String COLUMNS = "id,name,role,rating,jobs,location,hourlyRate,bio";
+
+  public static final RowMapper<PlayerRow> MAPPER = (rs, n) -> new PlayerRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getString(3),
+    rs.getDouble(4),
+    rs.getInt(5),
+    orElse(rs.getString(6), ""),
+    rs.getDouble(7),
+    orElse(rs.getString(8), "")
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString NAME = new SerializedString("name");
+  private static final SerializedString ROLE = new SerializedString("role");
+  private static final SerializedString RATING = new SerializedString("rating");
+  private static final SerializedString JOBS = new SerializedString("jobs");
+  private static final SerializedString LOCATION = new SerializedString("location");
+  private static final SerializedString HOURLY_RATE = new SerializedString("hourlyRate");
+  private static final SerializedString BIO = new SerializedString("bio");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    string(gen, NAME, name);
+    string(gen, ROLE, role);
+    number(gen, RATING, rating);
+    number(gen, JOBS, jobs);
+    string(gen, LOCATION, location);
+    number(gen, HOURLY_RATE, hourlyRate);
+    string(gen, BIO, bio);
+    gen.writeEndObject();
+  }
+}
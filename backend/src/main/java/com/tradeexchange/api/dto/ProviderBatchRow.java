@@ -0,0 +1,56 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.string;
+
+/**
+ * One entry of {@code /api/providers/batch}: the provider projected to {@code fields}, plus whichever
+ * sections were asked for. A null section is left out of the entry.
+ */
+public record ProviderBatchRow(ProviderRow provider, Set<String> fields, List<ListingRow> listings,
+                               Reviews reviews, Long favoritedBy) implements JsonRow {
+
+  /** Review count and average from {@code provider_review_summaries}. */
+  public record Reviews(long count, double average) {
+    public static final Reviews NONE = new Reviews(0, 0.0);
+  }
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString PROVIDER = new SerializedString("provider");
+  private static final SerializedString LISTINGS = new SerializedString("listings");
+  private static final SerializedString REVIEWS = new SerializedString("reviews");
+  private static final SerializedString COUNT = new SerializedString("count");
+  private static final SerializedString AVERAGE = new SerializedString("average");
+  private static final SerializedString FAVORITED_BY = new SerializedString("favoritedBy");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, provider.id());
+    gen.writeFieldName(PROVIDER);
+    provider.writeTo(gen, fields);
+    if (listings != null) {
+      gen.writeFieldName(LISTINGS);
+      gen.writeStartArray();
+      for (ListingRow listing : listings) listing.writeTo(gen);
+      gen.writeEndArray();
+    }
+    if (reviews != null) {
+      gen.writeFieldName(REVIEWS);
+      gen.writeStartObject();
+      number(gen, COUNT, reviews.count());
+      number(gen, AVERAGE, reviews.average());
+      gen.writeEndObject();
+    }
+    if (favoritedBy != null) number(gen, FAVORITED_BY, favoritedBy);
+    gen.writeEndObject();
+  }
+}
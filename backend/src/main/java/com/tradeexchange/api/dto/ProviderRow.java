@@ -0,0 +1,72 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+import java.util.Set;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.orElse;
+import static com.tradeexchange.common.json.JsonRow.string;
+
+/** Full provider profile as returned by {@code /api/providers/{id}} and {@code /api/providers/batch}. */
+public record ProviderRow(String id, String name, String role, double rating, long jobs, String location, double hourlyRate,
+                          String bio, String website, String phone, String availability) implements JsonRow {
+
+  public static final String COLUMNS = "id,name,role,rating,jobs,location,hourlyRate,bio,website,phone,availability";
+
+  public static final RowMapper<ProviderRow> MAPPER = (rs, n) -> new ProviderRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getString(3),
+    rs.getDouble(4),
+    rs.getLong(5),
+    orElse(rs.getString(6), ""),
+    rs.getDouble(7),
+    orElse(rs.getString(8), ""),
+    orElse(rs.getString(9), ""),
+    orElse(rs.getString(10), ""),
+    orElse(rs.getString(11), "")
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString NAME = new SerializedString("name");
+  private static final SerializedString ROLE = new SerializedString("role");
+  private static final SerializedString RATING = new SerializedString("rating");
+  private static final SerializedString JOBS = new SerializedString("jobs");
+  private static final SerializedString LOCATION = new SerializedString("location");
+  private static final SerializedString HOURLY_RATE = new SerializedString("hourlyRate");
+  private static final SerializedString BIO = new SerializedString("bio");
+  private static final SerializedString WEBSITE = new SerializedString("website");
+  private static final SerializedString PHONE = new SerializedString("phone");
+  private static final SerializedString AVAILABILITY = new SerializedString("availability");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    writeTo(gen, Set.of());
+  }
+
+  /** Writes {@code id} plus the named keys; an empty set writes every key. */
+  public void writeTo(JsonGenerator gen, Set<String> fields) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    if (wants(fields, NAME)) string(gen, NAME, name);
+    if (wants(fields, ROLE)) string(gen, ROLE, role);
+    if (wants(fields, RATING)) number(gen, RATING, rating);
+    if (wants(fields, JOBS)) number(gen, JOBS, jobs);
+    if (wants(fields, LOCATION)) string(gen, LOCATION, location);
+    if (wants(fields, HOURLY_RATE)) number(gen, HOURLY_RATE, hourlyRate);
+    if (wants(fields, BIO)) string(gen, BIO, bio);
+    if (wants(fields, WEBSITE)) string(gen, WEBSITE, website);
+    if (wants(fields, PHONE)) string(gen, PHONE, phone);
+    if (wants(fields, AVAILABILITY)) string(gen, AVAILABILITY, availability);
+    gen.writeEndObject();
+  }
+
+  private static boolean wants(Set<String> fields, SerializedString name) {
+    return fields.isEmpty() || fields.contains(name.getValue());
+  }
+}
@@ -0,0 +1,43 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.string;
+import static com.tradeexchange.common.json.JsonRow.timestamp;
+
+/** Provider review as returned by {@code /api/providers/{id}/reviews} and the summary's latest list. */
+public record ReviewRow(String id, String author, int rating, String text, long atMillis) implements JsonRow {
+
+  public static final String COLUMNS = "id,author,rating,text,at";
+
+  public static final RowMapper<ReviewRow> MAPPER = (rs, n) -> new ReviewRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getInt(3),
+    rs.getString(4),
+    rs.getLong(5)
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString AUTHOR = new SerializedString("author");
+  private static final SerializedString RATING = new SerializedString("rating");
+  private static final SerializedString TEXT = new SerializedString("text");
+  private static final SerializedString AT = new SerializedString("at");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    string(gen, AUTHOR, author);
+    number(gen, RATING, (long) rating);
+    string(gen, TEXT, text);
+    timestamp(gen, AT, atMillis);
+    gen.writeEndObject();
+  }
+}
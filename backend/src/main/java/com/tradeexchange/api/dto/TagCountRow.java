@@ -0,0 +1,30 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.number;
+import static com.tradeexchange.common.json.JsonRow.string;
+
+/** Tag and its listing count as returned by {@code /api/categories/top}. */
+public record TagCountRow(String tag, long count) implements JsonRow {
+
+  public static final String COLUMNS = "tag,listings";
+
+  public static final RowMapper<TagCountRow> MAPPER = (rs, n) -> new TagCountRow(rs.getString(1), rs.getLong(2));
+
+  private static final SerializedString TAG = new SerializedString("tag");
+  private static final SerializedString COUNT = new SerializedString("count");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, TAG, tag);
+    number(gen, COUNT, count);
+    gen.writeEndObject();
+  }
+}
@@ -0,0 +1,41 @@
+package com.tradeexchange.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.tradeexchange.common.json.JsonRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+
+import static com.tradeexchange.common.json.JsonRow.string;
+
+/** Account as returned by {@code /api/admin/users}. */
+public record UserRow(String id, String name, String email, String role, String providerId) implements JsonRow {
+
+  public static final String COLUMNS = "id,name,email,role,providerPlayerId";
+
+  public static final RowMapper<UserRow> MAPPER = (rs, n) -> new UserRow(
+    rs.getString(1),
+    rs.getString(2),
+    rs.getString(3),
+    rs.getString(4),
+    rs.getString(5)
+  );
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString NAME = new SerializedString("name");
+  private static final SerializedString EMAIL = new SerializedString("email");
+  private static final SerializedString ROLE = new SerializedString("role");
+  private static final SerializedString PROVIDER_ID = new SerializedString("providerId");
+
+  @Override
+  public void writeTo(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    string(gen, ID, id);
+    string(gen, NAME, name);
+    string(gen, EMAIL, email);
+    string(gen, ROLE, role);
+    string(gen, PROVIDER_ID, providerId);
+    gen.writeEndObject();
+  }
+}
@@ -0,0 +1,80 @@
+package com.tradeexchange.common;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.function.Function;
+
+/**
+ * The cold tier: one SQLite file next to the main database ({@code trade.db} gives
+ * {@code trade.archive.db}) holding rows moved out of the hot tables. Plain reads go through
+ * {@link #jdbc()}; work that has to join or move rows between the two files runs on a single
+ * connection of the hot database with this file attached as {@code archive}.
+ */
+public final class ArchiveDatabase {
+
+  public static final String SCHEMA = "archive";
+
+  private final Path file;
+  private final JdbcTemplate jdbc;
+
+  public ArchiveDatabase(Path mainDatabase) {
+    Path dir = mainDatabase.toAbsolutePath().getParent();
+    String name = mainDatabase.getFileName().toString();
+    String stem = name.endsWith(".db") ? name.substring(0, name.length() - 3) : name;
+    this.file = dir.resolve(stem + "." + SCHEMA + ".db");
+    SQLiteDataSource ds = new SQLiteDataSource();
+    ds.setUrl("jdbc:sqlite:" + file);
+    this.jdbc = new JdbcTemplate(ds);
+  }
+
+  public Path file() {
+    return file;
+  }
+
+  public JdbcTemplate jdbc() {
+    return jdbc;
+  }
+
+  /**
+   * Runs {@code work} on one connection of {@code hot} with the archive attached. With
+   * {@code transactional} the work runs in a single transaction, so a copy into {@code archive.*}
+   * and the delete from the hot table commit together.
+   */
+  public <T> T attached(JdbcTemplate hot, boolean transactional, Function<JdbcTemplate, T> work) {
+    return hot.execute((ConnectionCallback<T>) con -> {
+      try (Statement st = con.createStatement()) {
+        st.execute("ATTACH DATABASE '" + file.toString().replace("'", "''") + "' AS " + SCHEMA);
+      }
+      try {
+        JdbcTemplate on = new JdbcTemplate(new SingleConnectionDataSource(con, true));
+        if (!transactional) return work.apply(on);
+        con.setAutoCommit(false);
+        try {
+          T result = work.apply(on);
+          con.commit();
+          return result;
+        } catch (RuntimeException e) {
+          con.rollback();
+          throw e;
+        } finally {
+          con.setAutoCommit(true);
+        }
+      } finally {
+        detach(con);
+      }
+    });
+  }
+
+  private static void detach(Connection con) {
+    try (Statement st = con.createStatement()) {
+      st.execute("DETACH DATABASE " + SCHEMA);
+    } catch (Exception ignored) {
+    }
+  }
+}
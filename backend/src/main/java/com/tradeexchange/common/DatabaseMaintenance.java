@@ -0,0 +1,249 @@
+package com.tradeexchange.common;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Keeps every database file (main, message shards, archive) in shape. Each tick runs a passive WAL
+ * checkpoint, which never waits on readers or blocks writers. The heavier work waits for a quiet
+ * window according to {@link RequestLoad}, or runs anyway once it has been put off for
+ * {@code app.maintenance.max-deferral}:
+ *
+ * - {@code PRAGMA optimize} (with an analysis limit) so the planner's statistics follow the data;
+ * - {@code incremental_vacuum} in small steps to hand free pages left by deletes back to the OS. A
+ *   file not yet in {@code auto_vacuum=INCREMENTAL} is converted with one VACUUM, only when quiet;
+ * - a TRUNCATE checkpoint when a WAL has grown past {@code app.maintenance.wal-truncate-pages}.
+ *
+ * Timings and reclaimed space per file are kept for {@link #stats()}.
+ */
+@Component
+public class DatabaseMaintenance {
+
+  private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+  private static final class FileStats {
+    long optimizeMs;
+    long vacuumMs;
+    long pagesReclaimed;
+    long bytesReclaimed;
+    long freePages;
+    long walPages;
+    long checkpointMs;
+    boolean checkpointBusy;
+    String journalMode;
+    String converted;
+    String lastError;
+  }
+
+  private record Target(String name, JdbcTemplate jdbc) {}
+
+  private final JdbcTemplate jdbc;
+  private final ShardedSqlite messageShards;
+  private final ArchiveDatabase archive;
+  private final RequestLoad load;
+  private final long quietRequestsPerMinute;
+  private final Duration maxDeferral;
+  private final int vacuumStep;
+  private final int vacuumMaxPages;
+  private final long walTruncatePages;
+  private final long pauseMs;
+  private final Map<String, FileStats> files = new LinkedHashMap<>();
+  private long runs;
+  private long deferred;
+  private Instant lastCheckpointAt;
+  private Instant lastFullRunAt = Instant.now();
+  private long lastFullRunMs;
+
+  public DatabaseMaintenance(JdbcTemplate jdbc, ShardedSqlite messageShards, ArchiveDatabase archive, RequestLoad load,
+                             @Value("${app.maintenance.quiet-requests-per-minute:30}") long quietRequestsPerMinute,
+                             @Value("${app.maintenance.max-deferral:PT6H}") Duration maxDeferral,
+                             @Value("${app.maintenance.vacuum-step:256}") int vacuumStep,
+                             @Value("${app.maintenance.vacuum-max-pages:20000}") int vacuumMaxPages,
+                             @Value("${app.maintenance.wal-truncate-pages:10000}") long walTruncatePages,
+                             @Value("${app.maintenance.pause-ms:20}") long pauseMs) {
+    this.jdbc = jdbc;
+    this.messageShards = messageShards;
+    this.archive = archive;
+    this.load = load;
+    this.quietRequestsPerMinute = quietRequestsPerMinute;
+    this.maxDeferral = maxDeferral;
+    this.vacuumStep = Math.max(1, vacuumStep);
+    this.vacuumMaxPages = Math.max(vacuumStep, vacuumMaxPages);
+    this.walTruncatePages = walTruncatePages;
+    this.pauseMs = Math.max(0, pauseMs);
+  }
+
+  @Scheduled(initialDelayString = "${app.maintenance.initial-delay:PT2M}", fixedDelayString = "${app.maintenance.interval:PT5M}")
+  public void tick() {
+    try {
+      List<Target> targets = targets();
+      for (Target t : targets) checkpoint(t, "PASSIVE");
+      synchronized (this) { lastCheckpointAt = Instant.now(); }
+
+      boolean quiet = load.inFlight() == 0 && load.lastMinute() <= quietRequestsPerMinute;
+      boolean overdue = Instant.now().isAfter(lastFullRunAt.plus(maxDeferral));
+      if (!quiet && !overdue) {
+        synchronized (this) { deferred++; }
+        return;
+      }
+      long started = System.nanoTime();
+      for (Target t : targets) {
+        optimize(t);
+        vacuum(t, quiet);
+        FileStats s = stats(t.name());
+        if ("wal".equals(s.journalMode) && s.walPages > walTruncatePages) checkpoint(t, "TRUNCATE");
+      }
+      synchronized (this) {
+        runs++;
+        lastFullRunAt = Instant.now();
+        lastFullRunMs = (System.nanoTime() - started) / 1_000_000;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception ignored) {
+    }
+  }
+
+  /** Per-file timings and reclaimed space, plus the current load and run counters. */
+  public synchronized Map<String, Object> stats() {
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("runs", runs);
+    out.put("deferred", deferred);
+    out.put("lastCheckpointAt", lastCheckpointAt == null ? null : lastCheckpointAt.toString());
+    out.put("lastFullRunAt", runs == 0 ? null : lastFullRunAt.toString());
+    out.put("lastFullRunMs", lastFullRunMs);
+    out.put("inFlight", load.inFlight());
+    out.put("requestsLastMinute", load.lastMinute());
+    Map<String, Object> perFile = new LinkedHashMap<>();
+    files.forEach((name, s) -> {
+      Map<String, Object> m = new LinkedHashMap<>();
+      m.put("journalMode", s.journalMode);
+      m.put("optimizeMs", s.optimizeMs);
+      m.put("vacuumMs", s.vacuumMs);
+      m.put("pagesReclaimed", s.pagesReclaimed);
+      m.put("bytesReclaimed", s.bytesReclaimed);
+      m.put("freePages", s.freePages);
+      m.put("walPages", s.walPages);
+      m.put("checkpointMs", s.checkpointMs);
+      m.put("checkpointBusy", s.checkpointBusy);
+      m.put("convertedToIncremental", s.converted);
+      m.put("lastError", s.lastError);
+      perFile.put(name, m);
+    });
+    out.put("files", perFile);
+    return out;
+  }
+
+  private List<Target> targets() {
+    List<Target> out = new ArrayList<>();
+    out.add(new Target("main", jdbc));
+    for (ShardedSqlite.Shard shard : messageShards.all()) out.add(new Target("messages-" + shard.index(), shard.jdbc()));
+    out.add(new Target("archive", archive.jdbc()));
+    return out;
+  }
+
+  private synchronized FileStats stats(String name) {
+    return files.computeIfAbsent(name, k -> new FileStats());
+  }
+
+  private void checkpoint(Target t, String mode) {
+    FileStats s = stats(t.name());
+    try {
+      String journal = t.jdbc().queryForObject("PRAGMA journal_mode", String.class);
+      synchronized (this) { s.journalMode = journal; }
+      if (!"wal".equalsIgnoreCase(journal)) return;
+      long started = System.nanoTime();
+      // (busy, frames in the WAL, frames checkpointed)
+      long[] result = t.jdbc().query("PRAGMA wal_checkpoint(" + mode + ")",
+        rs -> { return rs.next() ? new long[]{ rs.getLong(1), rs.getLong(2), rs.getLong(3) } : new long[]{ 0, 0, 0 }; });
+      synchronized (this) {
+        s.checkpointMs = (System.nanoTime() - started) / 1_000_000;
+        s.checkpointBusy = result[0] != 0;
+        s.walPages = "TRUNCATE".equals(mode) && result[0] == 0 ? 0 : Math.max(0, result[1]);
+      }
+    } catch (Exception e) {
+      synchronized (this) { s.lastError = e.getMessage(); }
+    }
+  }
+
+  private void optimize(Target t) {
+    FileStats s = stats(t.name());
+    long started = System.nanoTime();
+    try {
+      t.jdbc().execute((ConnectionCallback<Void>) con -> {
+        try (Statement st = con.createStatement()) {
+          st.execute("PRAGMA analysis_limit=400");
+          st.execute("PRAGMA optimize");
+        }
+        return null;
+      });
+      synchronized (this) { s.optimizeMs = (System.nanoTime() - started) / 1_000_000; }
+    } catch (Exception e) {
+      synchronized (this) { s.lastError = e.getMessage(); }
+    }
+  }
+
+  private void vacuum(Target t, boolean quiet) throws InterruptedException {
+    FileStats s = stats(t.name());
+    long started = System.nanoTime();
+    try {
+      Integer mode = t.jdbc().queryForObject("PRAGMA auto_vacuum", Integer.class);
+      long pageSize = Optional.ofNullable(t.jdbc().queryForObject("PRAGMA page_size", Long.class)).orElse(4096L);
+      long before = freePages(t);
+      long reclaimed = 0;
+      if (mode == null || mode != AUTO_VACUUM_INCREMENTAL) {
+        // auto_vacuum only changes with a full VACUUM, which rewrites the file; never when busy
+        if (!quiet) return;
+        t.jdbc().execute((ConnectionCallback<Void>) con -> {
+          try (Statement st = con.createStatement()) {
+            st.execute("PRAGMA auto_vacuum=INCREMENTAL");
+            st.execute("VACUUM");
+          }
+          return null;
+        });
+        reclaimed = before;
+        synchronized (this) { s.converted = Instant.now().toString(); }
+      } else {
+        long free = before;
+        while (free > 0 && reclaimed < vacuumMaxPages) {
+          int step = (int) Math.min(vacuumStep, free);
+          t.jdbc().execute((ConnectionCallback<Void>) con -> {
+            // executeUpdate steps the pragma to completion; execute() would free a single page
+            try (Statement st = con.createStatement()) {
+              st.executeUpdate("PRAGMA incremental_vacuum(" + step + ")");
+            }
+            return null;
+          });
+          long now = freePages(t);
+          if (now >= free) break;
+          reclaimed += free - now;
+          free = now;
+          if (free > 0 && pauseMs > 0) Thread.sleep(pauseMs);
+        }
+      }
+      long after = freePages(t);
+      synchronized (this) {
+        s.vacuumMs = (System.nanoTime() - started) / 1_000_000;
+        s.pagesReclaimed += reclaimed;
+        s.bytesReclaimed += reclaimed * pageSize;
+        s.freePages = after;
+      }
+    } catch (InterruptedException e) {
+      throw e;
+    } catch (Exception e) {
+      synchronized (this) { s.lastError = e.getMessage(); }
+    }
+  }
+
+  private static long freePages(Target t) {
+    return Optional.ofNullable(t.jdbc().queryForObject("PRAGMA freelist_count", Long.class)).orElse(0L);
+  }
+}
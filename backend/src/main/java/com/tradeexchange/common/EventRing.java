@@ -0,0 +1,61 @@
+package com.tradeexchange.common;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring. Producers claim a slot with one CAS on the head and
+ * publish into it; nothing blocks, and {@link #offer} fails instead of waiting when the ring is full.
+ * Only one thread may call {@link #drainTo} at a time.
+ */
+public final class EventRing<T> {
+
+  private final AtomicReferenceArray<T> slots;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private volatile long tail;
+
+  public EventRing(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+
+  /** False when the ring is full. */
+  public boolean offer(T item) {
+    long claimed;
+    do {
+      claimed = head.get();
+      if (claimed - tail >= capacity()) return false;
+    } while (!head.compareAndSet(claimed, claimed + 1));
+    slots.set((int) (claimed & mask), item);
+    return true;
+  }
+
+  /** Moves up to {@code max} published items into {@code out}, oldest first; returns how many. */
+  public int drainTo(List<T> out, int max) {
+    long next = tail;
+    int drained = 0;
+    while (drained < max) {
+      int slot = (int) (next & mask);
+      T item = slots.get(slot);
+      // Either empty, or claimed by a producer that has not published yet; pick it up next time
+      if (item == null) break;
+      slots.set(slot, null);
+      out.add(item);
+      next++;
+      drained++;
+    }
+    tail = next;
+    return drained;
+  }
+
+  public int size() {
+    return (int) Math.max(0, head.get() - tail);
+  }
+}
@@ -0,0 +1,62 @@
+package com.tradeexchange.common;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free, time-ordered 64-bit IDs (Snowflake layout: 41 bits of milliseconds since 2024-01-01,
+ * 10 bits of node id, 12 bits of sequence), rendered as 13 lowercase Crockford base32 characters.
+ *
+ * The string form is fixed-width, so IDs sort lexicographically in creation order: inserts land on
+ * the right edge of a primary-key index and an ID can double as a pagination cursor.
+ */
+@Component
+public class IdGenerator {
+
+  private static final long EPOCH = 1704067200000L;
+  private static final int NODE_BITS = 10;
+  private static final int SEQ_BITS = 12;
+  private static final long SEQ_MASK = (1L << SEQ_BITS) - 1;
+  private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+  private static final char[] ALPHABET = "0123456789abcdefghjkmnpqrstvwxyz".toCharArray();
+  public static final int LENGTH = 13;
+
+  private final long node;
+  // (millis since EPOCH << SEQ_BITS) | sequence of the last issued id
+  private final AtomicLong last = new AtomicLong();
+
+  public IdGenerator(@Value("${app.node-id:0}") long node) {
+    if (node < 0 || node > MAX_NODE) throw new IllegalArgumentException("app.node-id must be between 0 and " + MAX_NODE);
+    this.node = node;
+  }
+
+  public String next() {
+    return encode(nextLong());
+  }
+
+  public long nextLong() {
+    long prev, next;
+    do {
+      prev = last.get();
+      // If the clock stalls, steps back or the sequence overflows, keep counting past the last id
+      next = Math.max((System.currentTimeMillis() - EPOCH) << SEQ_BITS, prev + 1);
+    } while (!last.compareAndSet(prev, next));
+    return ((next >>> SEQ_BITS) << (NODE_BITS + SEQ_BITS)) | (node << SEQ_BITS) | (next & SEQ_MASK);
+  }
+
+  /** Smallest id that could have been issued at {@code epochMillis}; useful as a time-based cursor. */
+  public static String floor(long epochMillis) {
+    return encode(Math.max(0, epochMillis - EPOCH) << (NODE_BITS + SEQ_BITS));
+  }
+
+  static String encode(long value) {
+    char[] out = new char[LENGTH];
+    for (int i = LENGTH - 1; i >= 0; i--) {
+      out[i] = ALPHABET[(int) (value & 31)];
+      value >>>= 5;
+    }
+    return new String(out);
+  }
+}
@@ -0,0 +1,72 @@
+package com.tradeexchange.common;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Keeps {@code listing_tags} (one row per tag and listing, keyed {@code (tag, listingId)}) in step with
+ * the comma-separated {@code listings.tags} column. Per-tag counts in {@code tag_counts} are maintained
+ * by triggers on {@code listing_tags}, so callers only ever insert or delete tag rows.
+ *
+ * Call these inside the same transaction as the listing write they mirror.
+ */
+@Component
+public class ListingTags {
+
+  private final JdbcTemplate jdbc;
+
+  public ListingTags(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  /** Trimmed, lower-cased, de-duplicated tags in their original order. */
+  public static List<String> parse(String tags) {
+    Set<String> out = new LinkedHashSet<>();
+    if (tags == null) return new ArrayList<>(out);
+    for (String t : tags.split(",")) {
+      String v = t.trim().toLowerCase(Locale.ROOT);
+      if (!v.isEmpty()) out.add(v);
+    }
+    return new ArrayList<>(out);
+  }
+
+  /** Replaces the listing's tag rows with those parsed from {@code tags}, touching only the tags that changed. */
+  public void sync(String listingId, String tags) {
+    List<String> wanted = parse(tags);
+    List<String> current = jdbc.queryForList("SELECT tag FROM listing_tags WHERE listingId=?", String.class, listingId);
+    List<Object[]> removed = new ArrayList<>();
+    for (String tag : current) {
+      if (!wanted.contains(tag)) removed.add(new Object[]{ tag, listingId });
+    }
+    List<Object[]> added = new ArrayList<>();
+    for (String tag : wanted) {
+      if (!current.contains(tag)) added.add(new Object[]{ tag, listingId });
+    }
+    if (!removed.isEmpty()) jdbc.batchUpdate("DELETE FROM listing_tags WHERE tag=? AND listingId=?", removed);
+    if (!added.isEmpty()) jdbc.batchUpdate("INSERT OR IGNORE INTO listing_tags (tag,listingId) VALUES (?,?)", added);
+  }
+
+  public void remove(String listingId) {
+    jdbc.update("DELETE FROM listing_tags WHERE listingId=?", listingId);
+  }
+
+  public void removeProvider(String providerId) {
+    jdbc.update("DELETE FROM listing_tags WHERE listingId IN (SELECT id FROM listings WHERE providerId=?)", providerId);
+  }
+
+  /** Indexes listings that have tags but no {@code listing_tags} rows yet (existing databases, seed data). */
+  public void backfill() {
+    List<String[]> pending = jdbc.query(
+      "SELECT id, tags FROM listings l WHERE TRIM(COALESCE(tags,''))<>'' AND NOT EXISTS (SELECT 1 FROM listing_tags t WHERE t.listingId = l.id)",
+      (rs, n) -> new String[]{ rs.getString(1), rs.getString(2) });
+    for (String[] listing : pending) {
+      sync(listing[0], listing[1]);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.tradeexchange.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded, access-ordered LRU cache with hit/miss/eviction counters.
+ *
+ * {@link #get} loads outside the lock and only stores the result if no invalidation happened while
+ * it was loading, so a slow read can never put back data that a concurrent write just replaced.
+ */
+public final class LruCache<K, V> {
+
+  public record Stats(int size, int capacity, long hits, long misses, long evictions, long invalidations, double hitRate) {}
+
+  private final int capacity;
+  private final LinkedHashMap<K, V> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public LruCache(int capacity) {
+    this.capacity = Math.max(1, capacity);
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        if (size() <= LruCache.this.capacity) return false;
+        evictions.incrementAndGet();
+        return true;
+      }
+    };
+  }
+
+  /** Cached value, or the loader's result (not cached when null). */
+  public V get(K key, Supplier<V> loader) {
+    synchronized (entries) {
+      V v = entries.get(key);
+      if (v != null) {
+        hits.incrementAndGet();
+        return v;
+      }
+    }
+    misses.incrementAndGet();
+    long stamp = invalidations.get();
+    V loaded = loader.get();
+    if (loaded == null) return null;
+    synchronized (entries) {
+      if (invalidations.get() == stamp) entries.put(key, loaded);
+    }
+    return loaded;
+  }
+
+  public void invalidate(K key) {
+    synchronized (entries) {
+      invalidations.incrementAndGet();
+      entries.remove(key);
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      invalidations.incrementAndGet();
+      entries.clear();
+    }
+  }
+
+  public Stats stats() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    long h = hits.get(), m = misses.get();
+    double rate = h + m == 0 ? 0 : Math.round(h * 10000.0 / (h + m)) / 10000.0;
+    return new Stats(size, capacity, h, m, evictions.get(), invalidations.get(), rate);
+  }
+}
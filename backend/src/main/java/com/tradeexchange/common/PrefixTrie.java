@@ -0,0 +1,155 @@
+package com.tradeexchange.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable prefix index for typeahead. Nodes are numbered breadth-first and stored in parallel
+ * primitive arrays (children of a node are contiguous, so a step is a binary search over their edge
+ * characters), and every node carries its precomputed top-k payloads by weight. A lookup is one walk
+ * down the prefix plus a copy of at most k ints, independent of how many keys share the prefix.
+ */
+public final class PrefixTrie {
+
+  private final char[] edge;       // character leading into each node
+  private final int[] childStart;  // first child of each node
+  private final int[] childCount;
+  private final int[] topStart;    // top-k payloads of each node's subtree, best first
+  private final int[] topCount;
+  private final int[] tops;
+
+  private PrefixTrie(char[] edge, int[] childStart, int[] childCount, int[] topStart, int[] topCount, int[] tops) {
+    this.edge = edge;
+    this.childStart = childStart;
+    this.childCount = childCount;
+    this.topStart = topStart;
+    this.topCount = topCount;
+    this.tops = tops;
+  }
+
+  /** Up to {@code k} payloads (never more than the build-time k) under {@code prefix}, best first. */
+  public int[] top(String prefix, int k) {
+    int node = 0;
+    for (int i = 0; i < prefix.length(); i++) {
+      node = child(node, prefix.charAt(i));
+      if (node < 0) return new int[0];
+    }
+    int n = Math.min(k, topCount[node]);
+    return Arrays.copyOfRange(tops, topStart[node], topStart[node] + n);
+  }
+
+  public int nodes() {
+    return edge.length;
+  }
+
+  private int child(int node, char c) {
+    int lo = childStart[node], hi = lo + childCount[node] - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (edge[mid] < c) lo = mid + 1;
+      else if (edge[mid] > c) hi = mid - 1;
+      else return mid;
+    }
+    return -1;
+  }
+
+  public static Builder builder(int k) {
+    return new Builder(k);
+  }
+
+  public static final class Builder {
+    private final int k;
+    private final Node root = new Node();
+    private final List<Double> weights = new ArrayList<>();
+
+    private Builder(int k) {
+      this.k = Math.max(1, k);
+    }
+
+    /** Adds {@code key} for {@code payload}; a payload may be added under several keys. */
+    public Builder add(String key, int payload, double weight) {
+      while (weights.size() <= payload) weights.add(0.0);
+      weights.set(payload, Math.max(weights.get(payload), weight));
+      Node node = root;
+      for (int i = 0; i < key.length(); i++) {
+        node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+      }
+      node.payloads.add(payload);
+      return this;
+    }
+
+    public PrefixTrie build() {
+      List<Node> order = new ArrayList<>();
+      List<Character> edges = new ArrayList<>();
+      ArrayDeque<Node> queue = new ArrayDeque<>();
+      root.id = 0;
+      order.add(root);
+      edges.add('\0');
+      queue.add(root);
+      while (!queue.isEmpty()) {
+        Node node = queue.poll();
+        node.childStart = order.size();
+        for (Map.Entry<Character, Node> e : node.children.entrySet()) {
+          Node child = e.getValue();
+          child.id = order.size();
+          order.add(child);
+          edges.add(e.getKey());
+          queue.add(child);
+        }
+      }
+
+      int size = order.size();
+      char[] edge = new char[size];
+      int[] childStart = new int[size];
+      int[] childCount = new int[size];
+      int[][] best = new int[size][];
+      for (int i = size - 1; i >= 0; i--) {
+        Node node = order.get(i);
+        edge[i] = edges.get(i);
+        childStart[i] = node.childStart;
+        childCount[i] = node.children.size();
+        List<Integer> candidates = new ArrayList<>(node.payloads);
+        for (Node child : node.children.values()) for (int p : best[child.id]) candidates.add(p);
+        best[i] = pick(candidates);
+      }
+
+      int[] topStart = new int[size];
+      int[] topCount = new int[size];
+      int total = 0;
+      for (int[] b : best) total += b.length;
+      int[] tops = new int[total];
+      int at = 0;
+      for (int i = 0; i < size; i++) {
+        topStart[i] = at;
+        topCount[i] = best[i].length;
+        System.arraycopy(best[i], 0, tops, at, best[i].length);
+        at += best[i].length;
+      }
+      return new PrefixTrie(edge, childStart, childCount, topStart, topCount, tops);
+    }
+
+    private int[] pick(List<Integer> candidates) {
+      candidates.sort((a, b) -> Double.compare(weights.get(b), weights.get(a)));
+      int[] out = new int[Math.min(k, candidates.size())];
+      int n = 0;
+      for (int p : candidates) {
+        if (n == out.length) break;
+        boolean seen = false;
+        for (int j = 0; j < n && !seen; j++) seen = out[j] == p;
+        if (!seen) out[n++] = p;
+      }
+      return Arrays.copyOf(out, n);
+    }
+  }
+
+  private static final class Node {
+    final TreeMap<Character, Node> children = new TreeMap<>();
+    final List<Integer> payloads = new ArrayList<>(1);
+    int id;
+    int childStart;
+  }
+}
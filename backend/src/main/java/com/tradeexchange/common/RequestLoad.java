@@ -0,0 +1,59 @@
+package com.tradeexchange.common;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Observed request load: requests currently being handled and requests started in the last minute
+ * (per-second buckets). Parked long polls are not counted once their handler thread is released.
+ * Background work such as {@link DatabaseMaintenance} uses it to find quiet windows.
+ */
+@Component
+public class RequestLoad implements Filter {
+
+  private static final int WINDOW_SECONDS = 60;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLongArray counts = new AtomicLongArray(WINDOW_SECONDS);
+  private final AtomicLongArray seconds = new AtomicLongArray(WINDOW_SECONDS);
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+    record(System.currentTimeMillis() / 1000);
+    inFlight.incrementAndGet();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  public long lastMinute() {
+    long now = System.currentTimeMillis() / 1000;
+    long total = 0;
+    for (int i = 0; i < WINDOW_SECONDS; i++) {
+      if (now - seconds.get(i) < WINDOW_SECONDS) total += counts.get(i);
+    }
+    return total;
+  }
+
+  private void record(long second) {
+    int slot = (int) (second % WINDOW_SECONDS);
+    long seen = seconds.get(slot);
+    // First request in a new second resets its bucket; a lost race only miscounts one request
+    if (seen != second && seconds.compareAndSet(slot, seen, second)) counts.set(slot, 0);
+    counts.incrementAndGet(slot);
+  }
+}
@@ -1,19 +1,42 @@
 package com.tradeexchange.common;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.UUID;
 
 @Component
 public class SessionResolver {
 
   public record UserSession(String id, String name, String email, String role, String providerPlayerId) {}
 
+  private record StoredSession(UserSession user, long createdAt, long lastSeenAt) {}
+
   private final JdbcTemplate jdbc;
+  private final SessionTokens signed;
+  private final long idleTtlMs;
+  private final long maxAgeMs;
+  private final long refreshAfterMs;
+  private final int maxPerUser;
 
-  public SessionResolver(JdbcTemplate jdbc) {
+  public SessionResolver(JdbcTemplate jdbc,
+                         SessionTokens signed,
+                         @Value("${app.sessions.ttl:12h}") Duration idleTtl,
+                         @Value("${app.sessions.max-age:30d}") Duration maxAge,
+                         @Value("${app.sessions.refresh-after:5m}") Duration refreshAfter,
+                         @Value("${app.sessions.max-per-user:10}") int maxPerUser) {
     this.jdbc = jdbc;
+    this.signed = signed;
+    this.idleTtlMs = idleTtl.toMillis();
+    this.maxAgeMs = maxAge.toMillis();
+    this.refreshAfterMs = refreshAfter.toMillis();
+    this.maxPerUser = Math.max(1, maxPerUser);
   }
 
   public Optional<UserSession> fromAuthorization(String authorizationHeader) {
@@ -24,27 +47,69 @@ public class SessionResolver {
 
   public Optional<UserSession> fromToken(String token) {
     if (token == null || token.isBlank()) return Optional.empty();
+    if (SessionTokens.looksSigned(token)) {
+      return signed.enabled() ? signed.verify(token) : Optional.empty();
+    }
+    byte[] hash = hash(token);
+    long now = System.currentTimeMillis();
     try {
-      return jdbc.query(
-        "SELECT u.id, u.name, u.email, u.role, u.providerPlayerId FROM sessions s JOIN users u ON u.id = s.userId WHERE s.token = ?",
-        ps -> ps.setString(1, token),
+      StoredSession stored = jdbc.query(
+        "SELECT u.id, u.name, u.email, u.role, u.providerPlayerId, s.createdAt, s.lastSeenAt FROM sessions s JOIN users u ON u.id = s.userId WHERE s.tokenHash = ? AND s.expiresAt > ?",
+        ps -> { ps.setBytes(1, hash); ps.setLong(2, now); },
         rs -> {
-          if (!rs.next()) return Optional.empty();
+          if (!rs.next()) return null;
           String role = Optional.ofNullable(rs.getString("role")).map(String::toUpperCase).orElse("USER");
-          return Optional.of(new UserSession(
+          return new StoredSession(new UserSession(
             rs.getString("id"),
             rs.getString("name"),
             rs.getString("email"),
             role,
             rs.getString("providerPlayerId")
-          ));
+          ), rs.getLong("createdAt"), rs.getLong("lastSeenAt"));
         }
       );
+      if (stored == null) return Optional.empty();
+      // Sliding expiry, written at most once per refresh window so most requests stay read-only
+      if (now - stored.lastSeenAt() >= refreshAfterMs) {
+        long expiresAt = Math.min(now + idleTtlMs, stored.createdAt() + maxAgeMs);
+        try{ jdbc.update("UPDATE sessions SET lastSeenAt=?, expiresAt=? WHERE tokenHash=?", now, expiresAt, hash); }catch(Exception ignore){}
+      }
+      return Optional.of(stored.user());
     } catch (Exception e) {
       return Optional.empty();
     }
   }
 
+  /** Starts a session for the user: a signed token in {@code signed} mode, otherwise a {@code sessions} row. */
+  public String open(String userId) {
+    if (signed.enabled()) {
+      Optional<UserSession> user = loadUser(userId);
+      if (user.isPresent()) return signed.issue(user.get());
+    }
+    String token = UUID.randomUUID().toString().replace("-", "").substring(0, 24);
+    long now = System.currentTimeMillis();
+    jdbc.update("INSERT OR REPLACE INTO sessions (tokenHash,userId,createdAt,lastSeenAt,expiresAt) VALUES (?,?,?,?,?)",
+      hash(token), userId, now, now, now + Math.min(idleTtlMs, maxAgeMs));
+    // Keep only the most recently used sessions per user
+    jdbc.update("DELETE FROM sessions WHERE userId=? AND tokenHash NOT IN (SELECT tokenHash FROM sessions WHERE userId=? ORDER BY lastSeenAt DESC LIMIT ?)",
+      userId, userId, maxPerUser);
+    return token;
+  }
+
+  public void close(String token) {
+    if (token == null || token.isBlank()) return;
+    if (SessionTokens.looksSigned(token)) {
+      if (signed.enabled()) signed.revoke(token);
+      return;
+    }
+    jdbc.update("DELETE FROM sessions WHERE tokenHash=?", (Object) hash(token));
+  }
+
+  public void closeAll(String userId) {
+    jdbc.update("DELETE FROM sessions WHERE userId=?", userId);
+    if (signed.enabled()) signed.revokeUser(userId);
+  }
+
   public String extractToken(String authorizationHeader){
     if (authorizationHeader == null) return "";
     if (authorizationHeader.regionMatches(true, 0, "Bearer ", 0, 7)) {
@@ -52,4 +117,25 @@ public class SessionResolver {
     }
     return authorizationHeader.trim();
   }
+
+  /** SHA-256 of the raw token; only the digest is stored, keeping the primary key a fixed 32 bytes. */
+  public static byte[] hash(String token) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 unavailable", e);
+    }
+  }
+
+  private Optional<UserSession> loadUser(String userId) {
+    return jdbc.query(
+      "SELECT id, name, email, role, providerPlayerId FROM users WHERE id = ?",
+      ps -> ps.setString(1, userId),
+      rs -> {
+        if (!rs.next()) return Optional.empty();
+        String role = Optional.ofNullable(rs.getString("role")).map(String::toUpperCase).orElse("USER");
+        return Optional.of(new UserSession(rs.getString("id"), rs.getString("name"), rs.getString("email"), role, rs.getString("providerPlayerId")));
+      }
+    );
+  }
 }
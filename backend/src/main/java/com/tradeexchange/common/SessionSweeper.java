@@ -0,0 +1,43 @@
+package com.tradeexchange.common;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deletes expired rows from {@code sessions} in small autocommit batches, pausing between
+ * batches so request-path writers never wait behind one long delete.
+ */
+@Component
+public class SessionSweeper {
+
+  private final JdbcTemplate jdbc;
+  private final int batchSize;
+  private final long pauseMs;
+
+  public SessionSweeper(JdbcTemplate jdbc,
+                        @Value("${app.sessions.sweep-batch:200}") int batchSize,
+                        @Value("${app.sessions.sweep-pause-ms:50}") long pauseMs) {
+    this.jdbc = jdbc;
+    this.batchSize = Math.max(1, batchSize);
+    this.pauseMs = Math.max(0, pauseMs);
+  }
+
+  @Scheduled(initialDelayString = "PT1M", fixedDelayString = "${app.sessions.sweep-interval:PT10M}")
+  public void sweep() {
+    long now = System.currentTimeMillis();
+    try {
+      int deleted;
+      do {
+        deleted = jdbc.update(
+          "DELETE FROM sessions WHERE tokenHash IN (SELECT tokenHash FROM sessions WHERE expiresAt <= ? LIMIT ?)",
+          now, batchSize);
+        if (deleted == batchSize && pauseMs > 0) Thread.sleep(pauseMs);
+      } while (deleted == batchSize);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception ignored) {
+    }
+  }
+}
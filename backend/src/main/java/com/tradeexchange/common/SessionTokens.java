@@ -0,0 +1,181 @@
+package com.tradeexchange.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.tradeexchange.common.SessionResolver.UserSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HS256-signed session tokens carrying the user's id, role and provider id, so any node holding
+ * {@code app.jwt.secret} can authenticate a request without touching the database.
+ *
+ * Revocations (sign-out of one token, or every token of a deleted user) are written to the small
+ * {@code session_revocations} table and mirrored in memory; each node re-reads that table on a
+ * short interval and drops entries once the tokens they cover have expired anyway.
+ */
+@Component
+public class SessionTokens {
+
+  private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+  private static final int MIN_SECRET_BYTES = 32;
+  private static final String HEADER = B64.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+  private final JdbcTemplate jdbc;
+  private final ObjectMapper json;
+  private final IdGenerator ids;
+  private final boolean enabled;
+  private final Duration ttl;
+  private final SecretKeySpec key;
+  private final ThreadLocal<Mac> macs;
+
+  // jti -> token expiry, and userId -> revocation time (tokens issued at or before it are rejected)
+  private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+  private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();
+
+  public SessionTokens(JdbcTemplate jdbc,
+                       ObjectMapper json,
+                       IdGenerator ids,
+                       @Value("${app.sessions.mode:table}") String mode,
+                       @Value("${app.sessions.ttl:12h}") Duration ttl,
+                       @Value("${app.jwt.secret:}") String secret) {
+    this.jdbc = jdbc;
+    this.json = json;
+    this.ids = ids;
+    this.enabled = "signed".equalsIgnoreCase(mode == null ? "" : mode.trim());
+    this.ttl = ttl;
+    // Anyone who knows the secret can mint an admin token, so signed mode refuses to start with a weak one
+    byte[] secretBytes = secret == null ? new byte[0] : secret.getBytes(StandardCharsets.UTF_8);
+    if (enabled && (secretBytes.length < MIN_SECRET_BYTES || "dev-secret".equals(secret))) {
+      throw new IllegalStateException("app.sessions.mode=signed needs JWT_SECRET set to a private value of at least " + MIN_SECRET_BYTES + " bytes");
+    }
+    this.key = enabled ? new SecretKeySpec(secretBytes, "HmacSHA256") : null;
+    this.macs = ThreadLocal.withInitial(() -> {
+      try {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(key);
+        return mac;
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("HmacSHA256 unavailable", e);
+      }
+    });
+  }
+
+  public boolean enabled() {
+    return enabled;
+  }
+
+  public static boolean looksSigned(String token) {
+    int first = token.indexOf('.');
+    return first > 0 && token.indexOf('.', first + 1) > first;
+  }
+
+  public String issue(UserSession user) {
+    long now = System.currentTimeMillis() / 1000;
+    ObjectNode claims = json.createObjectNode();
+    claims.put("sub", user.id());
+    claims.put("role", user.role());
+    claims.put("pid", user.providerPlayerId());
+    claims.put("name", user.name());
+    claims.put("email", user.email());
+    claims.put("jti", ids.next());
+    claims.put("iat", now);
+    claims.put("exp", now + ttl.toSeconds());
+    String body = HEADER + "." + B64.encodeToString(claims.toString().getBytes(StandardCharsets.UTF_8));
+    return body + "." + B64.encodeToString(sign(body));
+  }
+
+  public Optional<UserSession> verify(String token) {
+    Optional<JsonNode> claims = claims(token);
+    if (claims.isEmpty()) return Optional.empty();
+    JsonNode c = claims.get();
+    long now = System.currentTimeMillis() / 1000;
+    if (c.path("exp").asLong(0) <= now) return Optional.empty();
+    if (revokedTokens.containsKey(c.path("jti").asText(""))) return Optional.empty();
+    String userId = c.path("sub").asText("");
+    Long notBefore = revokedUsers.get(userId);
+    if (notBefore != null && c.path("iat").asLong(0) <= notBefore) return Optional.empty();
+    return Optional.of(new UserSession(
+      userId,
+      text(c, "name"),
+      text(c, "email"),
+      Optional.ofNullable(text(c, "role")).map(String::toUpperCase).orElse("USER"),
+      text(c, "pid")
+    ));
+  }
+
+  /** Revokes a single signed token until it would have expired anyway. */
+  public void revoke(String token) {
+    Optional<JsonNode> claims = claims(token);
+    if (claims.isEmpty()) return;
+    String jti = claims.get().path("jti").asText("");
+    long exp = claims.get().path("exp").asLong(0);
+    if (jti.isEmpty()) return;
+    revokedTokens.put(jti, exp);
+    jdbc.update("INSERT OR REPLACE INTO session_revocations (id,kind,revokedAt,expiresAt) VALUES (?,?,?,?)",
+      jti, "token", System.currentTimeMillis() / 1000, exp);
+  }
+
+  /** Revokes every token issued to the user up to now. */
+  public void revokeUser(String userId) {
+    long now = System.currentTimeMillis() / 1000;
+    revokedUsers.put(userId, now);
+    jdbc.update("INSERT OR REPLACE INTO session_revocations (id,kind,revokedAt,expiresAt) VALUES (?,?,?,?)",
+      userId, "user", now, now + ttl.toSeconds());
+  }
+
+  @Scheduled(fixedDelayString = "${app.sessions.revocation-refresh:PT15S}")
+  public void refreshRevocations() {
+    if (!enabled) return;
+    long now = System.currentTimeMillis() / 1000;
+    try {
+      jdbc.update("DELETE FROM session_revocations WHERE expiresAt <= ?", now);
+      jdbc.query("SELECT id, kind, revokedAt, expiresAt FROM session_revocations", rs -> {
+        if ("user".equals(rs.getString(2))) revokedUsers.merge(rs.getString(1), rs.getLong(3), Math::max);
+        else revokedTokens.put(rs.getString(1), rs.getLong(4));
+      });
+      revokedTokens.values().removeIf(exp -> exp <= now);
+      revokedUsers.values().removeIf(at -> at + ttl.toSeconds() <= now);
+    } catch (Exception ignored) {
+    }
+  }
+
+  private Optional<JsonNode> claims(String token) {
+    if (token == null || !looksSigned(token)) return Optional.empty();
+    int dot = token.lastIndexOf('.');
+    String body = token.substring(0, dot);
+    if (!body.startsWith(HEADER + ".")) return Optional.empty();
+    try {
+      byte[] expected = sign(body);
+      byte[] actual = B64D.decode(token.substring(dot + 1));
+      if (!MessageDigest.isEqual(expected, actual)) return Optional.empty();
+      return Optional.of(json.readTree(B64D.decode(body.substring(HEADER.length() + 1))));
+    } catch (Exception e) {
+      return Optional.empty();
+    }
+  }
+
+  private byte[] sign(String body) {
+    return macs.get().doFinal(body.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static String text(JsonNode claims, String field) {
+    JsonNode node = claims.get(field);
+    return node == null || node.isNull() ? null : node.asText();
+  }
+}
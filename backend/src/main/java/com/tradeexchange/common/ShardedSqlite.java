@@ -0,0 +1,94 @@
+package com.tradeexchange.common;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * A fixed set of SQLite files next to the main database ({@code trade.db} gives
+ * {@code trade.<name>-0.db}, {@code trade.<name>-1.db}, ...), each with its own data source and
+ * transaction manager so writes to different shards never wait on the same lock. Keys are routed by
+ * CRC32, which is stable across JVMs and restarts.
+ *
+ * Shard files run in WAL mode with a busy timeout, so readers don't block the shard's single writer.
+ */
+public final class ShardedSqlite {
+
+  public record Shard(int index, Path file, JdbcTemplate jdbc, TransactionTemplate tx) {}
+
+  private final Path directory;
+  private final String prefix;
+  private final List<Shard> shards;
+
+  public ShardedSqlite(Path mainDatabase, String name, int count) {
+    Path dir = mainDatabase.toAbsolutePath().getParent();
+    String file = mainDatabase.getFileName().toString();
+    String stem = file.endsWith(".db") ? file.substring(0, file.length() - 3) : file;
+    this.directory = dir;
+    this.prefix = stem + "." + name + "-";
+    List<Shard> list = new ArrayList<>();
+    for (int i = 0; i < Math.max(1, count); i++) list.add(open(i, dir.resolve(prefix + i + ".db")));
+    this.shards = List.copyOf(list);
+  }
+
+  public int count() {
+    return shards.size();
+  }
+
+  public List<Shard> all() {
+    return shards;
+  }
+
+  public Shard shard(int index) {
+    return shards.get(index);
+  }
+
+  public int indexOf(String key) {
+    CRC32 crc = new CRC32();
+    crc.update(key.getBytes(StandardCharsets.UTF_8));
+    return (int) (crc.getValue() % shards.size());
+  }
+
+  public Shard forKey(String key) {
+    return shards.get(indexOf(key));
+  }
+
+  /** Existing shard files beyond {@link #count()}, left behind when the shard count was lowered. */
+  public List<Shard> stray() {
+    List<Shard> out = new ArrayList<>();
+    Pattern pattern = Pattern.compile(Pattern.quote(prefix) + "(\\d+)\\.db");
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*.db")) {
+      for (Path file : files) {
+        Matcher m = pattern.matcher(file.getFileName().toString());
+        if (!m.matches()) continue;
+        int index = Integer.parseInt(m.group(1));
+        if (index >= shards.size()) out.add(open(index, file));
+      }
+    } catch (IOException | NumberFormatException ignored) {
+    }
+    return out;
+  }
+
+  private static Shard open(int index, Path file) {
+    SQLiteConfig config = new SQLiteConfig();
+    config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+    config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+    config.setBusyTimeout(5000);
+    SQLiteDataSource ds = new SQLiteDataSource(config);
+    ds.setUrl("jdbc:sqlite:" + file);
+    return new Shard(index, file, new JdbcTemplate(ds), new TransactionTemplate(new DataSourceTransactionManager(ds)));
+  }
+}
@@ -0,0 +1,68 @@
+package com.tradeexchange.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Newest-first keyset paging over a hot table and its archived rows. Every archived row is at or
+ * before the archive's horizon (its newest timestamp), so a page whose hot rows all lie after the
+ * horizon is answered from the hot table alone; the archive is only read once the cursor reaches
+ * past the hot window. The cursor is the last row's (timestamp, id), base64url-encoded.
+ */
+public final class TieredPages {
+
+  /** Up to {@code limit} rows strictly before ({@code at}, {@code id}), newest first; both null for the first page. */
+  @FunctionalInterface
+  public interface Query<T> {
+    List<T> before(Long at, String id, int limit);
+  }
+
+  public record Page<T>(List<T> rows, String next) {}
+
+  private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+  private TieredPages() {}
+
+  public static <T> Page<T> newestFirst(String cursor, int limit, Long horizon, Query<T> hot, Query<T> archive,
+                                        Function<T, Long> at, Function<T, String> id) {
+    String[] after = decode(cursor);
+    Long afterAt = after == null ? null : Long.parseLong(after[0]);
+    String afterId = after == null ? null : after[1];
+    List<T> rows = hot.before(afterAt, afterId, limit + 1);
+    boolean reachesArchive = horizon != null
+      && (rows.size() <= limit || Objects.requireNonNullElse(at.apply(rows.get(limit - 1)), 0L) <= horizon);
+    if (reachesArchive) {
+      Comparator<T> newest = Comparator.comparing((T row) -> Objects.requireNonNullElse(at.apply(row), 0L))
+        .thenComparing(id, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .reversed();
+      // A row caught mid-move can briefly be in both tiers
+      Map<String, T> merged = new LinkedHashMap<>();
+      for (T row : rows) merged.put(id.apply(row), row);
+      for (T row : archive.before(afterAt, afterId, limit + 1)) merged.putIfAbsent(id.apply(row), row);
+      rows = new ArrayList<>(merged.values());
+      rows.sort(newest);
+    }
+    if (rows.size() <= limit) return new Page<>(rows, null);
+    List<T> page = List.copyOf(rows.subList(0, limit));
+    T last = page.get(limit - 1);
+    return new Page<>(page, encode(Objects.requireNonNullElse(at.apply(last), 0L), id.apply(last)));
+  }
+
+  private static String encode(long at, String id) {
+    return B64.encodeToString((at + ":" + id).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String[] decode(String cursor) {
+    if (cursor == null || cursor.isBlank()) return null;
+    try {
+      String[] parts = new String(B64D.decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+      if (parts.length != 2) return null;
+      Long.parseLong(parts[0]);
+      return parts;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
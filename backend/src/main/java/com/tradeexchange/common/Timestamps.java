@@ -0,0 +1,23 @@
+package com.tradeexchange.common;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+
+/** Timestamps are stored as INTEGER epoch millis and rendered as ISO-8601 strings in API responses. */
+public final class Timestamps {
+  private Timestamps() {}
+
+  public static String iso(long epochMillis) {
+    return Instant.ofEpochMilli(epochMillis).toString();
+  }
+
+  public static String iso(Long epochMillis) {
+    return epochMillis == null ? null : iso(epochMillis.longValue());
+  }
+
+  public static String iso(ResultSet rs, String column) throws SQLException {
+    long value = rs.getLong(column);
+    return rs.wasNull() ? null : iso(value);
+  }
+}
@@ -0,0 +1,206 @@
+package com.tradeexchange.common.bulk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Pull-style reader over an uploaded NDJSON or CSV body: one record at a time, so memory use does not
+ * grow with the file. A malformed record comes back with {@link Record#error} set and reading carries on
+ * with the next one. Field names are matched case-insensitively; values are strings ({@code null} when
+ * absent or JSON null).
+ */
+public abstract class Records implements Closeable {
+
+  public enum Format {
+    NDJSON, CSV;
+
+    /** From {@code ?format=} when given, otherwise from the Content-Type; NDJSON by default. */
+    public static Format of(String format, String contentType) {
+      String hint = (format != null && !format.isBlank() ? format : String.valueOf(contentType)).toLowerCase(Locale.ROOT);
+      return hint.contains("csv") ? CSV : NDJSON;
+    }
+  }
+
+  /** {@code line} is where the record starts in the upload (1-based). */
+  public record Record(long line, Map<String, String> fields, String error) {
+    public String get(String name) {
+      return fields.get(name.toLowerCase(Locale.ROOT));
+    }
+  }
+
+  /** Longest accepted record; longer ones are reported as errors instead of buffered. */
+  static final int MAX_RECORD_CHARS = 1 << 20;
+
+  protected final BufferedReader in;
+  protected long line;
+
+  Records(InputStream body) {
+    this.in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16);
+  }
+
+  public static Records open(InputStream body, Format format, ObjectMapper json) {
+    return format == Format.CSV ? new Csv(body) : new Ndjson(body, json);
+  }
+
+  /** The next record, or null at the end of the upload. */
+  public abstract Record next() throws IOException;
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private static final class Ndjson extends Records {
+    private static final String TOO_LONG = new String("");
+
+    private final ObjectMapper json;
+
+    Ndjson(InputStream body, ObjectMapper json) {
+      super(body);
+      this.json = json;
+    }
+
+    @Override
+    public Record next() throws IOException {
+      String text;
+      while ((text = boundedLine()) != null) {
+        line++;
+        if (text == TOO_LONG) return new Record(line, Map.of(), "Record too long");
+        if (text.isBlank()) continue;
+        try {
+          JsonNode node = json.readTree(text);
+          if (!node.isObject()) return new Record(line, Map.of(), "Expected a JSON object");
+          Map<String, String> fields = new HashMap<>();
+          node.fields().forEachRemaining(e -> fields.put(e.getKey().toLowerCase(Locale.ROOT),
+            e.getValue().isNull() ? null : e.getValue().isValueNode() ? e.getValue().asText() : e.getValue().toString()));
+          return new Record(line, fields, null);
+        } catch (IOException e) {
+          return new Record(line, Map.of(), "Invalid JSON");
+        }
+      }
+      return null;
+    }
+
+    // Like readLine, but skips the rest of an over-long line instead of buffering it
+    private String boundedLine() throws IOException {
+      StringBuilder text = new StringBuilder();
+      boolean tooLong = false;
+      int c = in.read();
+      if (c < 0) return null;
+      while (c >= 0 && c != '\n') {
+        if (c != '\r' && !tooLong) {
+          if (text.length() >= MAX_RECORD_CHARS) {
+            tooLong = true;
+            text.setLength(0);
+          } else {
+            text.append((char) c);
+          }
+        }
+        c = in.read();
+      }
+      return tooLong ? TOO_LONG : text.toString();
+    }
+  }
+
+  // RFC 4180: the first record is the header; quoted fields may hold commas, quotes ("") and newlines
+  private static final class Csv extends Records {
+    private List<String> header;
+
+    Csv(InputStream body) {
+      super(body);
+    }
+
+    @Override
+    public Record next() throws IOException {
+      if (header == null) {
+        List<String> names = fields();
+        if (names == null) return null;
+        header = new ArrayList<>();
+        for (String n : names) header.add(n.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT));
+      }
+      while (true) {
+        long start = line + 1;
+        List<String> values;
+        try {
+          values = fields();
+        } catch (TooLong e) {
+          return new Record(start, Map.of(), "Record too long");
+        }
+        if (values == null) return null;
+        if (values.size() == 1 && values.get(0).isEmpty()) continue;
+        if (values.size() != header.size()) {
+          return new Record(start, Map.of(), "Expected " + header.size() + " fields, found " + values.size());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) fields.put(header.get(i), values.get(i));
+        return new Record(start, fields, null);
+      }
+    }
+
+    // One record's fields, or null at the end of input
+    private List<String> fields() throws IOException {
+      int c = in.read();
+      if (c < 0) return null;
+      line++;
+      List<String> out = new ArrayList<>();
+      StringBuilder field = new StringBuilder();
+      int length = 0;
+      boolean quoted = false;
+      boolean tooLong = false;
+      while (c >= 0) {
+        if (++length > MAX_RECORD_CHARS && !tooLong) {
+          tooLong = true;
+          field.setLength(0);
+        }
+        if (quoted) {
+          if (c == '"') {
+            in.mark(1);
+            int n = in.read();
+            if (n == '"') {
+              if (!tooLong) field.append('"');
+            } else {
+              quoted = false;
+              if (n >= 0) in.reset();
+            }
+          } else {
+            if (c == '\n') line++;
+            if (!tooLong) field.append((char) c);
+          }
+        } else if (c == '"' && field.length() == 0) {
+          quoted = true;
+        } else if (c == ',') {
+          if (!tooLong) out.add(field.toString());
+          field.setLength(0);
+        } else if (c == '\n' || c == '\r') {
+          if (c == '\r') {
+            in.mark(1);
+            if (in.read() != '\n') in.reset();
+          }
+          break;
+        } else if (!tooLong) {
+          field.append((char) c);
+        }
+        c = in.read();
+      }
+      if (tooLong) throw new TooLong();
+      out.add(field.toString());
+      return out;
+    }
+  }
+
+  private static final class TooLong extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    TooLong() {
+      super("Record too long");
+    }
+  }
+}
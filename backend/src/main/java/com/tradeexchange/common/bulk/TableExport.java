@@ -0,0 +1,127 @@
+package com.tradeexchange.common.bulk;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+/**
+ * Streams a query to the response as NDJSON (one object per row) or CSV (header plus one line per
+ * row), writing each row before the next is read. Column names come from the result set, so callers
+ * choose the exported columns in their SELECT.
+ */
+@Component
+public class TableExport {
+
+  private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+  private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+  private final JdbcTemplate jdbc;
+  private final JsonFactory factory;
+
+  public TableExport(JdbcTemplate jdbc, ObjectMapper json) {
+    this.jdbc = jdbc;
+    this.factory = json.getFactory();
+  }
+
+  public ResponseEntity<StreamingResponseBody> stream(String name, String sql, Records.Format format) {
+    String file = name + (format == Records.Format.CSV ? ".csv" : ".ndjson");
+    return ResponseEntity.ok()
+      .contentType(format == Records.Format.CSV ? CSV : NDJSON)
+      .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(file).build().toString())
+      .body(out -> {
+        try {
+          if (format == Records.Format.CSV) csv(sql, out); else ndjson(sql, out);
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
+        }
+      });
+  }
+
+  private void ndjson(String sql, OutputStream out) throws IOException {
+    try (JsonGenerator gen = factory.createGenerator(out, JsonEncoding.UTF8)) {
+      gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      gen.setRootValueSeparator(null);
+      jdbc.query(sql, (ResultSet rs) -> {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        SerializedString[] names = new SerializedString[columns];
+        for (int i = 0; i < columns; i++) names[i] = new SerializedString(meta.getColumnLabel(i + 1));
+        try {
+          while (rs.next()) {
+            gen.writeStartObject();
+            for (int i = 0; i < columns; i++) {
+              gen.writeFieldName(names[i]);
+              Object value = rs.getObject(i + 1);
+              if (value == null) gen.writeNull();
+              else if (value instanceof Integer || value instanceof Long) gen.writeNumber(((Number) value).longValue());
+              else if (value instanceof Number n) gen.writeNumber(n.doubleValue());
+              else gen.writeString(value.toString());
+            }
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return null;
+      });
+    }
+  }
+
+  private void csv(String sql, OutputStream out) throws IOException {
+    Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    jdbc.query(sql, (ResultSet rs) -> {
+      try {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        for (int i = 1; i <= columns; i++) {
+          if (i > 1) w.write(',');
+          field(w, meta.getColumnLabel(i));
+        }
+        w.write("\r\n");
+        while (rs.next()) {
+          for (int i = 1; i <= columns; i++) {
+            if (i > 1) w.write(',');
+            Object value = rs.getObject(i);
+            if (value != null) field(w, value.toString());
+          }
+          w.write("\r\n");
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return null;
+    });
+    w.flush();
+  }
+
+  // Quoted only when needed; embedded quotes are doubled
+  private static void field(Writer w, String value) throws IOException {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      w.write(value);
+      return;
+    }
+    w.write('"');
+    w.write(value.replace("\"", "\"\""));
+    w.write('"');
+  }
+}
@@ -0,0 +1,285 @@
+package com.tradeexchange.common.facets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory filter/sort/page index over a small catalog. Each document gets a dense slot number;
+ * every facet value keeps a bitset of the slots carrying it, and every range field keeps its values
+ * in a primitive array sorted by value, so range filters are two binary searches and sorting is a
+ * walk along that array. Writes update only the touched document and take a short write lock.
+ *
+ * Within one facet field the requested values are OR'ed; across fields (and ranges) they are AND'ed.
+ * Facet counts for a field are computed with every filter except that field's own, so a client can
+ * show how many results each alternative value would give.
+ */
+public final class FacetIndex<T> {
+
+  /** A document: its id, the row served back to clients, its facet values and its range values. */
+  public record Doc<T>(String id, T row, Map<String, ? extends Collection<String>> terms, Map<String, Double> ranges) {}
+
+  public record Query(Map<String, Set<String>> terms, Map<String, Double> min, Map<String, Double> max,
+                      String sort, boolean descending, int offset, int limit) {}
+
+  public record Result<T>(int total, List<T> items, Map<String, Map<String, Integer>> facets) {}
+
+  private final List<String> facetFields;
+  private final List<String> rangeFields;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<String, Integer> slots = new HashMap<>();
+  private final List<Doc<T>> docs = new ArrayList<>();
+  private final BitSet live = new BitSet();
+  private final BitSet free = new BitSet();
+  private final Map<String, Map<String, BitSet>> postings = new HashMap<>();
+  private final Map<String, SortedColumn> columns = new HashMap<>();
+
+  public FacetIndex(List<String> facetFields, List<String> rangeFields) {
+    this.facetFields = List.copyOf(facetFields);
+    this.rangeFields = List.copyOf(rangeFields);
+    for (String f : this.facetFields) postings.put(f, new HashMap<>());
+    for (String r : this.rangeFields) columns.put(r, new SortedColumn());
+  }
+
+  public List<String> facetFields() {
+    return facetFields;
+  }
+
+  public List<String> rangeFields() {
+    return rangeFields;
+  }
+
+  public void put(Doc<T> doc) {
+    lock.writeLock().lock();
+    try {
+      unindex(doc.id());
+      int slot = free.isEmpty() ? docs.size() : free.nextSetBit(0);
+      if (slot == docs.size()) docs.add(doc); else { docs.set(slot, doc); free.clear(slot); }
+      slots.put(doc.id(), slot);
+      live.set(slot);
+      for (String f : facetFields) {
+        Collection<String> values = doc.terms().get(f);
+        if (values == null) continue;
+        Map<String, BitSet> byValue = postings.get(f);
+        for (String v : values) byValue.computeIfAbsent(v, k -> new BitSet()).set(slot);
+      }
+      for (String r : rangeFields) {
+        columns.get(r).add(value(doc, r), slot);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String id) {
+    lock.writeLock().lock();
+    try {
+      unindex(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Replaces the whole index with {@code all}, compacting slots. */
+  public void reset(Collection<Doc<T>> all) {
+    lock.writeLock().lock();
+    try {
+      slots.clear();
+      docs.clear();
+      live.clear();
+      free.clear();
+      postings.values().forEach(Map::clear);
+      columns.replaceAll((k, v) -> new SortedColumn());
+      for (Doc<T> doc : all) put(doc);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Ids of the documents carrying {@code value} in facet {@code field}. */
+  public List<String> idsWith(String field, String value) {
+    lock.readLock().lock();
+    try {
+      BitSet bits = postings.getOrDefault(field, Map.of()).get(value);
+      List<String> out = new ArrayList<>();
+      if (bits == null) return out;
+      for (int s = bits.nextSetBit(0); s >= 0; s = bits.nextSetBit(s + 1)) out.add(docs.get(s).id());
+      return out;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Result<T> search(Query q) {
+    lock.readLock().lock();
+    try {
+      BitSet ranged = (BitSet) live.clone();
+      for (String r : rangeFields) {
+        Double lo = q.min().get(r), hi = q.max().get(r);
+        if (lo != null || hi != null) ranged.and(columns.get(r).between(lo, hi));
+      }
+      Map<String, BitSet> termMasks = new LinkedHashMap<>();
+      for (String f : facetFields) {
+        Set<String> wanted = q.terms().get(f);
+        if (wanted == null || wanted.isEmpty()) continue;
+        BitSet any = new BitSet();
+        Map<String, BitSet> byValue = postings.get(f);
+        for (String v : wanted) {
+          BitSet bits = byValue.get(v);
+          if (bits != null) any.or(bits);
+        }
+        termMasks.put(f, any);
+      }
+
+      BitSet match = (BitSet) ranged.clone();
+      termMasks.values().forEach(match::and);
+
+      Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+      for (String f : facetFields) {
+        BitSet base = match;
+        if (termMasks.containsKey(f)) {
+          base = (BitSet) ranged.clone();
+          for (Map.Entry<String, BitSet> e : termMasks.entrySet()) if (!e.getKey().equals(f)) base.and(e.getValue());
+        }
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, BitSet> e : postings.get(f).entrySet()) {
+          int n = intersectionCount(e.getValue(), base);
+          if (n > 0) counts.put(e.getKey(), n);
+        }
+        facets.put(f, counts);
+      }
+
+      List<T> items = new ArrayList<>();
+      int skip = Math.max(0, q.offset());
+      int limit = Math.max(0, q.limit());
+      SortedColumn order = q.sort() == null ? null : columns.get(q.sort());
+      int[] seen = {0};
+      if (order != null) {
+        order.walk(q.descending(), slot -> {
+          if (!match.get(slot)) return true;
+          if (seen[0]++ >= skip) items.add(docs.get(slot).row());
+          return items.size() < limit;
+        });
+      } else {
+        for (int s = match.nextSetBit(0); s >= 0 && items.size() < limit; s = match.nextSetBit(s + 1)) {
+          if (seen[0]++ >= skip) items.add(docs.get(s).row());
+        }
+      }
+      return new Result<>(match.cardinality(), items, facets);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return slots.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void unindex(String id) {
+    Integer slot = slots.remove(id);
+    if (slot == null) return;
+    Doc<T> old = docs.get(slot);
+    for (String f : facetFields) {
+      Collection<String> values = old.terms().get(f);
+      if (values == null) continue;
+      Map<String, BitSet> byValue = postings.get(f);
+      for (String v : values) {
+        BitSet bits = byValue.get(v);
+        if (bits == null) continue;
+        bits.clear(slot);
+        if (bits.isEmpty()) byValue.remove(v);
+      }
+    }
+    for (String r : rangeFields) {
+      columns.get(r).remove(value(old, r), slot);
+    }
+    docs.set(slot, null);
+    live.clear(slot);
+    free.set(slot);
+  }
+
+  private static double value(Doc<?> doc, String field) {
+    Double v = doc.ranges().get(field);
+    return v == null ? 0 : v;
+  }
+
+  private static int intersectionCount(BitSet a, BitSet b) {
+    BitSet x = (BitSet) a.clone();
+    x.and(b);
+    return x.cardinality();
+  }
+
+  interface SlotVisitor {
+    boolean visit(int slot);
+  }
+
+  /** (value, slot) pairs kept sorted by value then slot in two parallel primitive arrays. */
+  static final class SortedColumn {
+    private double[] values = new double[16];
+    private int[] slots = new int[16];
+    private int size;
+
+    void add(double value, int slot) {
+      int at = position(value, slot);
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+        slots = Arrays.copyOf(slots, size * 2);
+      }
+      System.arraycopy(values, at, values, at + 1, size - at);
+      System.arraycopy(slots, at, slots, at + 1, size - at);
+      values[at] = value;
+      slots[at] = slot;
+      size++;
+    }
+
+    void remove(double value, int slot) {
+      int at = position(value, slot);
+      if (at >= size || values[at] != value || slots[at] != slot) return;
+      System.arraycopy(values, at + 1, values, at, size - at - 1);
+      System.arraycopy(slots, at + 1, slots, at, size - at - 1);
+      size--;
+    }
+
+    BitSet between(Double min, Double max) {
+      int from = min == null ? 0 : position(min, Integer.MIN_VALUE);
+      int to = max == null ? size : position(max, Integer.MAX_VALUE);
+      BitSet out = new BitSet();
+      for (int i = from; i < to; i++) out.set(slots[i]);
+      return out;
+    }
+
+    void walk(boolean descending, SlotVisitor visitor) {
+      if (descending) {
+        for (int i = size - 1; i >= 0; i--) if (!visitor.visit(slots[i])) return;
+      } else {
+        for (int i = 0; i < size; i++) if (!visitor.visit(slots[i])) return;
+      }
+    }
+
+    // First index whose (value, slot) is >= the given pair
+    private int position(double value, int slot) {
+      int lo = 0, hi = size;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        int c = Double.compare(values[mid], value);
+        if (c == 0) c = Integer.compare(slots[mid], slot);
+        if (c < 0) lo = mid + 1; else hi = mid;
+      }
+      return lo;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.tradeexchange.common.geo;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline geocoder for the free-text {@code players.location} field, backed by the bundled
+ * {@code geo/us-places.csv}. Accepts "City, ST", "City ST", a bare city name when it is unambiguous,
+ * or a literal "lat,lon" pair.
+ */
+@Component
+public class Gazetteer {
+
+  public record Point(double lat, double lon) {}
+
+  private static final double EARTH_RADIUS_KM = 6371.0088;
+  private static final double KM_PER_MILE = 1.609344;
+  private static final Pattern LAT_LON = Pattern.compile("^\\s*(-?\\d{1,2}(?:\\.\\d+)?)\\s*,\\s*(-?\\d{1,3}(?:\\.\\d+)?)\\s*$");
+  private static final Pattern DISTANCE = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(km|kilomet\\w*|mi\\w*)?", Pattern.CASE_INSENSITIVE);
+
+  private final Map<String, Point> byCityState = new HashMap<>();
+  // City name alone; null marks a name shared by several states
+  private final Map<String, Point> byCity = new HashMap<>();
+
+  public Gazetteer() {
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new ClassPathResource("geo/us-places.csv").getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.isBlank() || line.startsWith("#")) continue;
+        String[] f = line.split(",");
+        if (f.length < 4) continue;
+        Point p = new Point(Double.parseDouble(f[2].trim()), Double.parseDouble(f[3].trim()));
+        String city = key(f[0]);
+        byCityState.put(city + " " + key(f[1]), p);
+        if (byCity.containsKey(city)) byCity.put(city, null); else byCity.put(city, p);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read geo/us-places.csv", e);
+    }
+  }
+
+  public Optional<Point> locate(String text) {
+    if (text == null || text.isBlank()) return Optional.empty();
+    Matcher m = LAT_LON.matcher(text);
+    if (m.matches()) {
+      double lat = Double.parseDouble(m.group(1)), lon = Double.parseDouble(m.group(2));
+      if (Math.abs(lat) <= 90 && Math.abs(lon) <= 180) return Optional.of(new Point(lat, lon));
+      return Optional.empty();
+    }
+    String k = key(text);
+    Point p = byCityState.get(k);
+    if (p == null) {
+      int comma = text.indexOf(',');
+      p = byCity.get(comma > 0 ? key(text.substring(0, comma)) : k);
+    }
+    return Optional.ofNullable(p);
+  }
+
+  /** First distance in text like "15 miles" or "60 miles (travel fee after 30)", in km; miles when no unit is given. */
+  public static Optional<Double> radiusKm(String text) {
+    if (text == null) return Optional.empty();
+    Matcher m = DISTANCE.matcher(text);
+    if (!m.find()) return Optional.empty();
+    double value = Double.parseDouble(m.group(1));
+    String unit = m.group(2) == null ? "mi" : m.group(2).toLowerCase(Locale.ROOT);
+    return Optional.of(unit.startsWith("k") ? value : value * KM_PER_MILE);
+  }
+
+  public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLon = Math.toRadians(lon2 - lon1);
+    double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+      + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+    return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  private static String key(String text) {
+    return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+  }
+}
@@ -0,0 +1,79 @@
+package com.tradeexchange.common.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.tradeexchange.common.Timestamps;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A projected result row that knows how to write itself as one JSON object.
+ * Implementations keep their field names as pre-encoded {@code SerializedString}s.
+ * Rows placed inside an ordinary response body are written the same way via {@link Serializer}.
+ */
+@JsonSerialize(using = JsonRow.Serializer.class)
+public interface JsonRow {
+  void writeTo(JsonGenerator gen) throws IOException;
+
+  final class Serializer extends JsonSerializer<JsonRow> {
+    @Override
+    public void serialize(JsonRow value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+      value.writeTo(gen);
+    }
+  }
+
+  static void string(JsonGenerator gen, SerializableString name, String value) throws IOException {
+    gen.writeFieldName(name);
+    gen.writeString(value);
+  }
+
+  static void number(JsonGenerator gen, SerializableString name, double value) throws IOException {
+    gen.writeFieldName(name);
+    gen.writeNumber(value);
+  }
+
+  static void number(JsonGenerator gen, SerializableString name, long value) throws IOException {
+    gen.writeFieldName(name);
+    gen.writeNumber(value);
+  }
+
+  static void number(JsonGenerator gen, SerializableString name, Double value) throws IOException {
+    gen.writeFieldName(name);
+    if (value == null) gen.writeNull(); else gen.writeNumber(value);
+  }
+
+  static void number(JsonGenerator gen, SerializableString name, Long value) throws IOException {
+    gen.writeFieldName(name);
+    if (value == null) gen.writeNull(); else gen.writeNumber(value);
+  }
+
+  static void timestamp(JsonGenerator gen, SerializableString name, Long epochMillis) throws IOException {
+    gen.writeFieldName(name);
+    gen.writeString(Timestamps.iso(epochMillis));
+  }
+
+  static void bool(JsonGenerator gen, SerializableString name, boolean value) throws IOException {
+    gen.writeFieldName(name);
+    gen.writeBoolean(value);
+  }
+
+  static String orElse(String value, String fallback) {
+    return value == null ? fallback : value;
+  }
+
+  /** Reads a nullable numeric column without going through {@code getObject}. */
+  static Double nullableDouble(ResultSet rs, int column) throws SQLException {
+    double v = rs.getDouble(column);
+    return rs.wasNull() ? null : v;
+  }
+
+  static Long nullableLong(ResultSet rs, int column) throws SQLException {
+    long v = rs.getLong(column);
+    return rs.wasNull() ? null : v;
+  }
+}
@@ -0,0 +1,124 @@
+package com.tradeexchange.common.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+
+/**
+ * Streams query results straight to the response as a JSON array, mapping each row
+ * by column index into a {@link JsonRow} and writing it before the next row is read.
+ */
+@Component
+public class JsonRowStreamer {
+
+  private static final Logger log = LoggerFactory.getLogger(JsonRowStreamer.class);
+
+  /** One named array inside a streamed JSON object. */
+  public record Section(SerializableString name, String sql, PreparedStatementSetter args, RowMapper<? extends JsonRow> mapper) {
+    public Section(String name, String sql, PreparedStatementSetter args, RowMapper<? extends JsonRow> mapper) {
+      this(new SerializedString(name), sql, args, mapper);
+    }
+  }
+
+  private final JdbcTemplate jdbc;
+  private final JsonFactory factory;
+
+  public JsonRowStreamer(JdbcTemplate jdbc, ObjectMapper mapper) {
+    this.jdbc = jdbc;
+    this.factory = mapper.getFactory();
+  }
+
+  public ResponseEntity<StreamingResponseBody> array(String sql, PreparedStatementSetter args, RowMapper<? extends JsonRow> mapper) {
+    return ok(out -> {
+      try (JsonGenerator gen = generator(out)) {
+        writeArray(gen, sql, args, mapper);
+      }
+    });
+  }
+
+  public ResponseEntity<StreamingResponseBody> object(Section... sections) {
+    return ok(out -> {
+      try (JsonGenerator gen = generator(out)) {
+        gen.writeStartObject();
+        for (Section section : sections) {
+          gen.writeFieldName(section.name());
+          writeArray(gen, section.sql(), section.args(), section.mapper());
+        }
+        gen.writeEndObject();
+      }
+    });
+  }
+
+  public ResponseEntity<StreamingResponseBody> error(HttpStatus status, String key, String message) {
+    return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(out -> {
+      try (JsonGenerator gen = generator(out)) {
+        gen.writeStartObject();
+        gen.writeStringField(key, message);
+        gen.writeEndObject();
+      }
+    });
+  }
+
+  private ResponseEntity<StreamingResponseBody> ok(StreamingResponseBody body) {
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  private JsonGenerator generator(OutputStream out) throws IOException {
+    JsonGenerator gen = factory.createGenerator(out, JsonEncoding.UTF8);
+    gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // An aborted stream must stay truncated rather than be closed into valid JSON
+    gen.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+    return gen;
+  }
+
+  // A query that fails before the first row still yields an empty array, matching the old fallback.
+  // Once rows are out, the failure is rethrown so the response is aborted instead of looking complete.
+  private void writeArray(JsonGenerator gen, String sql, PreparedStatementSetter args, RowMapper<? extends JsonRow> mapper) throws IOException {
+    gen.writeStartArray();
+    int[] written = { 0 };
+    try {
+      jdbc.query(sql, args, (ResultSet rs) -> {
+        while (rs.next()) {
+          write(gen, mapper.mapRow(rs, written[0]));
+          written[0]++;
+        }
+        return null;
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } catch (RuntimeException e) {
+      if (written[0] > 0) {
+        log.error("Streaming query failed after {} rows; aborting response", written[0], e);
+        throw e;
+      }
+      log.warn("Streaming query failed; returning an empty array", e);
+    }
+    gen.writeEndArray();
+  }
+
+  private static void write(JsonGenerator gen, JsonRow row) {
+    try {
+      row.writeTo(gen);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package com.tradeexchange.config;
 
+import com.tradeexchange.common.ListingTags;
 import com.tradeexchange.common.PasswordService;
+import com.tradeexchange.common.ShardedSqlite;
 import jakarta.annotation.PostConstruct;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -15,9 +17,13 @@ import java.util.Collections;
 public class DataSeeder {
   private final JdbcTemplate jdbc;
   private final PasswordService passwords;
-  public DataSeeder(JdbcTemplate jdbc, PasswordService passwords){
+  private final ListingTags listingTags;
+  private final ShardedSqlite messageShards;
+  public DataSeeder(JdbcTemplate jdbc, PasswordService passwords, ListingTags listingTags, ShardedSqlite messageShards){
     this.jdbc = jdbc;
     this.passwords = passwords;
+    this.listingTags = listingTags;
+    this.messageShards = messageShards;
   }
 
   private static final String[] PLAYER_COLUMN_ARRAY = {
@@ -37,17 +43,22 @@ public class DataSeeder {
     ensurePlayers();
     ensureListings();
     ensureUsers();
+    try { listingTags.backfill(); } catch (Exception ignored) {}
   }
 
   private void cleanLegacyMessaging(){
     try { jdbc.update("DELETE FROM messages WHERE role = 'assistant'"); } catch (Exception ignored) {}
     try { jdbc.update("DELETE FROM conversations WHERE kind = 'AI' OR title = 'AI Chat'"); } catch (Exception ignored) {}
+    // The rest derives conversations from messages in this database, which only holds them until
+    // MessageStore first moves them to the message shards; after that conversations are kept as they are
+    if (!messagesInMainDatabase()) return;
     try {
       jdbc.update("DELETE FROM messages WHERE role = 'system' AND conversationId NOT IN (SELECT conversationId FROM messages WHERE role <> 'system')");
     } catch (Exception ignored) {}
     try {
       jdbc.update("DELETE FROM conversations WHERE id NOT IN (SELECT DISTINCT conversationId FROM messages)");
     } catch (Exception ignored) {}
+    try { jdbc.update("DELETE FROM conversation_members WHERE conversationId NOT IN (SELECT id FROM conversations)"); } catch (Exception ignored) {}
     try {
       jdbc.update("""
         UPDATE conversations
@@ -61,6 +72,19 @@ public class DataSeeder {
     } catch (Exception ignored) {}
   }
 
+  private boolean messagesInMainDatabase(){
+    try {
+      if (!Boolean.TRUE.equals(jdbc.query("SELECT 1 FROM messages LIMIT 1", rs -> { return rs.next(); }))) return false;
+      for (ShardedSqlite.Shard shard : messageShards.all()) {
+        if (Boolean.TRUE.equals(shard.jdbc().query("SELECT 1 FROM sqlite_master WHERE name='messages'", rs -> { return rs.next(); }))
+            && Boolean.TRUE.equals(shard.jdbc().query("SELECT 1 FROM messages LIMIT 1", rs -> { return rs.next(); }))) return false;
+      }
+      return true;
+    } catch (Exception ignored) {
+      return false;
+    }
+  }
+
   private void ensurePlayers(){
     try {
       Integer count = jdbc.queryForObject("SELECT COUNT(*) FROM players WHERE id IN (?,?,?)", Integer.class, "p_ava", "p_milo", "p_morgan");
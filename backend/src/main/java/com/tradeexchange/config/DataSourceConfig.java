@@ -1,5 +1,7 @@
 package com.tradeexchange.config;
 
+import com.tradeexchange.common.ArchiveDatabase;
+import com.tradeexchange.common.ShardedSqlite;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,6 +12,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.sqlite.SQLiteConfig;
 import org.sqlite.SQLiteDataSource;
 
 @Configuration
@@ -18,9 +21,15 @@ public class DataSourceConfig {
   @Value("${app.sqlite.path:trade.db}")
   private String sqlitePath;
 
+  // WAL so long reads (rollup rebuilds, reports, backups) never block writers, and writers wait out
+  // each other's commits instead of failing with SQLITE_BUSY; the same settings as the message shards
   @Bean
   public DataSource dataSource(){
-    SQLiteDataSource ds = new SQLiteDataSource();
+    SQLiteConfig config = new SQLiteConfig();
+    config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+    config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+    config.setBusyTimeout(5000);
+    SQLiteDataSource ds = new SQLiteDataSource(config);
     String resolvedPath = resolveSqlitePath(sqlitePath);
     ds.setUrl("jdbc:sqlite:" + resolvedPath);
     return ds;
@@ -31,6 +40,18 @@ public class DataSourceConfig {
     return new JdbcTemplate(ds);
   }
 
+  // Chat messages live in their own files next to the main database, partitioned by conversation id
+  @Bean
+  public ShardedSqlite messageShards(@Value("${app.messages.shards:4}") int shards){
+    return new ShardedSqlite(Paths.get(resolveSqlitePath(sqlitePath)), "messages", shards);
+  }
+
+  // Cold tier for archived orders, messages and interactions
+  @Bean
+  public ArchiveDatabase archiveDatabase(){
+    return new ArchiveDatabase(Paths.get(resolveSqlitePath(sqlitePath)));
+  }
+
   private String resolveSqlitePath(String configuredPath){
     String candidate = (configuredPath == null || configuredPath.isBlank()) ? "trade.db" : configuredPath;
     Path direct = Paths.get(candidate);
@@ -1,22 +1,44 @@
 package com.tradeexchange.config;
 
+import com.tradeexchange.common.SessionResolver;
 import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
+@DependsOn("schemaInit")
 public class DatabaseSchemaInitializer {
 
+  private static final Pattern TITLE_MARKERS = Pattern.compile("\\[provider:([^\\]]+)]\\[user:([^\\]]+)]");
+
   private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final Duration sessionTtl;
 
-  public DatabaseSchemaInitializer(JdbcTemplate jdbc) {
+  public DatabaseSchemaInitializer(JdbcTemplate jdbc, TransactionTemplate tx, @Value("${app.sessions.ttl:12h}") Duration sessionTtl) {
     this.jdbc = jdbc;
+    this.tx = tx;
+    this.sessionTtl = sessionTtl;
   }
 
   @PostConstruct
   public void initialize(){
     ensureUserColumns();
     ensurePlayerColumns();
+    migrateSessions();
+    migrateTypedColumns();
+    ensureConversationColumns();
+    ensureColumn("interactions", "kind", "ALTER TABLE interactions ADD COLUMN kind TEXT");
+    linkProviderConversations();
+    ensureIndexes();
   }
 
   private boolean columnExists(String table, String column){
@@ -72,5 +94,122 @@ public class DatabaseSchemaInitializer {
     ensureColumn("players", "equipment", "ALTER TABLE players ADD COLUMN equipment TEXT DEFAULT ''");
     ensureColumn("players", "createdAt", "ALTER TABLE players ADD COLUMN createdAt TEXT DEFAULT ''");
     ensureColumn("players", "updatedAt", "ALTER TABLE players ADD COLUMN updatedAt TEXT DEFAULT ''");
+    ensureColumn("players", "lat", "ALTER TABLE players ADD COLUMN lat REAL");
+    ensureColumn("players", "lon", "ALTER TABLE players ADD COLUMN lon REAL");
+    ensureColumn("players", "radiusKm", "ALTER TABLE players ADD COLUMN radiusKm REAL");
+  }
+
+  // Legacy sessions kept raw tokens with no expiry; rebuild the table keyed by token hash
+  private void migrateSessions(){
+    if (!columnExists("sessions", "token")) return;
+    try{
+      tx.executeWithoutResult(status -> {
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = jdbc.query("SELECT token, userId FROM sessions WHERE token IS NOT NULL AND userId IS NOT NULL",
+          (rs, n) -> new Object[]{ SessionResolver.hash(rs.getString(1)), rs.getString(2), now, now, now + sessionTtl.toMillis() });
+        jdbc.execute("DROP TABLE sessions");
+        jdbc.execute(SchemaInit.SESSIONS_DDL);
+        jdbc.batchUpdate("INSERT OR REPLACE INTO sessions (tokenHash,userId,createdAt,lastSeenAt,expiresAt) VALUES (?,?,?,?,?)", rows);
+      });
+    }catch(Exception ignored){
+    }
+  }
+
+  private String columnType(String table, String column){
+    try{
+      var types = jdbc.query("PRAGMA table_info(" + table + ")", (rs, rowNum) -> column.equalsIgnoreCase(rs.getString("name")) ? rs.getString("type") : null);
+      for (String type : types){
+        if (type != null) return type;
+      }
+    }catch(Exception ignored){
+    }
+    return null;
+  }
+
+  // ISO-8601 text (what Instant.toString() used to write) to epoch millis; unparseable values become NULL
+  private static String epochMillis(String column){
+    return "CASE WHEN typeof(" + column + ")='integer' THEN " + column +
+      " ELSE CAST(ROUND((julianday(" + column + ") - 2440587.5) * 86400000.0) AS INTEGER) END";
+  }
+
+  // SQLite cannot retype a column in place (TEXT affinity would turn integers back into text), so rebuild the table
+  private void rebuild(String table, String columns, String timestampColumn, String insertColumns, String selectList){
+    String type = columnType(table, timestampColumn);
+    if (type == null || type.equalsIgnoreCase("INTEGER")) return;
+    try{
+      tx.executeWithoutResult(status -> {
+        jdbc.execute("DROP TABLE IF EXISTS " + table + "_typed");
+        jdbc.execute("CREATE TABLE " + table + "_typed " + columns);
+        jdbc.execute("INSERT INTO " + table + "_typed (" + insertColumns + ") SELECT " + selectList + " FROM " + table);
+        jdbc.execute("DROP TABLE " + table);
+        jdbc.execute("ALTER TABLE " + table + "_typed RENAME TO " + table);
+      });
+    }catch(Exception ignored){
+    }
+  }
+
+  private void migrateTypedColumns(){
+    rebuild("conversations", SchemaInit.CONVERSATIONS_COLUMNS, "createdAt",
+      "id,kind,title,createdAt,lastMessage",
+      "id,kind,title," + epochMillis("createdAt") + ",lastMessage");
+    rebuild("messages", SchemaInit.MESSAGES_COLUMNS, "createdAt",
+      "id,conversationId,userId,role,content,createdAt",
+      "id,conversationId,userId,role,content," + epochMillis("createdAt"));
+    rebuild("orders", SchemaInit.ORDERS_COLUMNS, "createdAt",
+      "id,userName,service,status,amount,createdAt,providerId,listingId,conversationId,reqDetails,reqDate,reqTime,reqAck",
+      "id,userName,service,status,CAST(COALESCE(amount,0) AS REAL)," + epochMillis("createdAt") + ",providerId,listingId,conversationId,reqDetails,reqDate,reqTime,CAST(COALESCE(reqAck,0) AS INTEGER)");
+    rebuild("provider_reviews", SchemaInit.PROVIDER_REVIEWS_COLUMNS, "at",
+      "id,providerId,author,rating,text,at",
+      "id,providerId,author,CAST(rating AS INTEGER),text," + epochMillis("at"));
+    rebuild("interactions", SchemaInit.INTERACTIONS_COLUMNS, "at",
+      "id,userId,providerId,listingId,at,note,amount",
+      "id,userId,providerId,listingId,COALESCE(" + epochMillis("at") + ",0),note,CAST(COALESCE(amount,0) AS REAL)");
+    try{ jdbc.execute("UPDATE listings SET price = CAST(price AS REAL) WHERE typeof(price) NOT IN ('real','null')"); }catch(Exception ignored){}
+  }
+
+  private void ensureConversationColumns(){
+    ensureColumn("conversations", "userId", "ALTER TABLE conversations ADD COLUMN userId TEXT");
+    ensureColumn("conversations", "providerId", "ALTER TABLE conversations ADD COLUMN providerId TEXT");
+  }
+
+  // Customer/provider chats used to be found by "[provider:..][user:..]" markers in the title; copy those
+  // into userId/providerId, oldest first, so only one conversation per pair is claimed by the unique index
+  private void linkProviderConversations(){
+    try{
+      List<String[]> pairs = jdbc.query(
+        "SELECT id, title FROM conversations WHERE providerId IS NULL AND title LIKE '%[provider:%' ORDER BY createdAt, id",
+        (rs, n) -> {
+          Matcher m = TITLE_MARKERS.matcher(String.valueOf(rs.getString(2)));
+          return m.find() ? new String[]{ rs.getString(1), m.group(2), m.group(1) } : null;
+        });
+      tx.executeWithoutResult(status -> {
+        for (String[] p : pairs){
+          if (p == null) continue;
+          jdbc.update("UPDATE conversations SET userId=?, providerId=? WHERE id=? AND NOT EXISTS (SELECT 1 FROM conversations WHERE userId=? AND providerId=?)",
+            p[1], p[2], p[0], p[1], p[2]);
+        }
+      });
+    }catch(Exception ignored){
+    }
+  }
+
+  private void ensureIndexes(){
+    String[] ddl = {
+      "CREATE INDEX IF NOT EXISTS sessions_user_last_seen ON sessions (userId, lastSeenAt)",
+      "CREATE INDEX IF NOT EXISTS sessions_expires_at ON sessions (expiresAt)",
+      "CREATE INDEX IF NOT EXISTS orders_created_at ON orders (createdAt)",
+      "CREATE INDEX IF NOT EXISTS orders_provider_created_at ON orders (providerId, createdAt)",
+      "CREATE INDEX IF NOT EXISTS orders_user_name_created_at ON orders (lower(userName), createdAt)",
+      "CREATE INDEX IF NOT EXISTS messages_conversation_created_at ON messages (conversationId, createdAt)",
+      "CREATE INDEX IF NOT EXISTS messages_user_conversation ON messages (userId, conversationId)",
+      "CREATE INDEX IF NOT EXISTS conversations_created_at ON conversations (createdAt)",
+      "CREATE UNIQUE INDEX IF NOT EXISTS conversations_user_provider ON conversations (userId, providerId)",
+      "CREATE INDEX IF NOT EXISTS provider_reviews_provider_at ON provider_reviews (providerId, at)",
+      "CREATE INDEX IF NOT EXISTS provider_reviews_provider_rating_at ON provider_reviews (providerId, rating, at)",
+      "CREATE INDEX IF NOT EXISTS interactions_user_at ON interactions (userId, at)",
+    };
+    for (String statement : ddl){
+      try{ jdbc.execute(statement); }catch(Exception ignored){}
+    }
   }
 }
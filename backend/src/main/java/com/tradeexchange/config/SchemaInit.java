@@ -6,6 +6,15 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class SchemaInit {
+  static final String SESSIONS_DDL = "CREATE TABLE IF NOT EXISTS sessions (tokenHash BLOB PRIMARY KEY, userId TEXT NOT NULL, createdAt INTEGER NOT NULL, lastSeenAt INTEGER NOT NULL, expiresAt INTEGER NOT NULL) WITHOUT ROWID";
+
+  // Column lists for the sort-heavy tables; timestamps are epoch millis
+  static final String CONVERSATIONS_COLUMNS = "(id TEXT PRIMARY KEY, kind TEXT, title TEXT, createdAt INTEGER, lastMessage TEXT, userId TEXT, providerId TEXT)";
+  static final String MESSAGES_COLUMNS = "(id TEXT PRIMARY KEY, conversationId TEXT, userId TEXT, role TEXT, content TEXT, createdAt INTEGER)";
+  static final String ORDERS_COLUMNS = "(id TEXT PRIMARY KEY, userName TEXT, service TEXT, status TEXT, amount REAL NOT NULL DEFAULT 0, createdAt INTEGER, providerId TEXT, listingId TEXT, conversationId TEXT, reqDetails TEXT, reqDate TEXT, reqTime TEXT, reqAck INTEGER NOT NULL DEFAULT 0)";
+  static final String PROVIDER_REVIEWS_COLUMNS = "(id TEXT PRIMARY KEY, providerId TEXT, author TEXT, rating INTEGER, text TEXT, at INTEGER)";
+  static final String INTERACTIONS_COLUMNS = "(id TEXT PRIMARY KEY, userId TEXT NOT NULL REFERENCES users(id), providerId TEXT NOT NULL REFERENCES players(id), listingId TEXT, at INTEGER NOT NULL, note TEXT DEFAULT '', amount REAL DEFAULT 0, kind TEXT)";
+
   private final JdbcTemplate jdbc;
   public SchemaInit(JdbcTemplate jdbc){ this.jdbc = jdbc; }
 
@@ -13,15 +22,42 @@ public class SchemaInit {
   public void init(){
     // Minimal tables used by the app. Existing DBs are respected.
     try{ jdbc.execute("CREATE TABLE IF NOT EXISTS users (id TEXT PRIMARY KEY, name TEXT, email TEXT UNIQUE, role TEXT, providerPlayerId TEXT)"); }catch(Exception ignore){}
-    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS sessions (token TEXT PRIMARY KEY, userId TEXT)"); }catch(Exception ignore){}
+    try{ jdbc.execute(SESSIONS_DDL); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS session_revocations (id TEXT PRIMARY KEY, kind TEXT NOT NULL, revokedAt INTEGER NOT NULL, expiresAt INTEGER NOT NULL)"); }catch(Exception ignore){}
     try{ jdbc.execute("CREATE TABLE IF NOT EXISTS players (id TEXT PRIMARY KEY, name TEXT, role TEXT, rating REAL, jobs INTEGER, bio TEXT, location TEXT, website TEXT, phone TEXT, specialties TEXT, hourlyRate REAL, availability TEXT, experienceYears INTEGER, languages TEXT, certifications TEXT, socialTwitter TEXT, socialInstagram TEXT, portfolio TEXT, sessionLength TEXT, editedPhotos INTEGER, delivery TEXT, turnaround TEXT, onLocation INTEGER, studioAvailable INTEGER, travelRadius TEXT, styles TEXT, equipment TEXT, createdAt TEXT, updatedAt TEXT)"); }catch(Exception ignore){}
     try{ jdbc.execute("CREATE TABLE IF NOT EXISTS listings (id TEXT PRIMARY KEY, title TEXT, description TEXT, price REAL, providerId TEXT, status TEXT, createdAt TEXT, tags TEXT)"); }catch(Exception ignore){}
-    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS conversations (id TEXT PRIMARY KEY, kind TEXT, title TEXT, createdAt TEXT, lastMessage TEXT)"); }catch(Exception ignore){}
-    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS messages (id TEXT PRIMARY KEY, conversationId TEXT, userId TEXT, role TEXT, content TEXT, createdAt TEXT)"); }catch(Exception ignore){}
-    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS orders (id TEXT PRIMARY KEY, userName TEXT, service TEXT, status TEXT, amount REAL, createdAt TEXT, providerId TEXT, listingId TEXT, conversationId TEXT, reqDetails TEXT, reqDate TEXT, reqTime TEXT, reqAck INTEGER)"); }catch(Exception ignore){}
-    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS provider_reviews (id TEXT PRIMARY KEY, providerId TEXT, author TEXT, rating INTEGER, text TEXT, at TEXT)"); }catch(Exception ignore){}
+    // One row per participant: read cursor plus a maintained unread counter; the inbox reads (userId, lastActivityAt)
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS conversation_members (userId TEXT NOT NULL, conversationId TEXT NOT NULL, unread INTEGER NOT NULL DEFAULT 0, lastReadAt INTEGER, lastActivityAt INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (userId, conversationId)) WITHOUT ROWID"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE INDEX IF NOT EXISTS conversation_members_inbox ON conversation_members (userId, lastActivityAt DESC)"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE INDEX IF NOT EXISTS conversation_members_conversation ON conversation_members (conversationId)"); }catch(Exception ignore){}
+    // Normalized listings.tags; tag_counts is kept in step by the triggers below
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS listing_tags (tag TEXT NOT NULL, listingId TEXT NOT NULL, PRIMARY KEY (tag, listingId)) WITHOUT ROWID"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE INDEX IF NOT EXISTS listing_tags_listing ON listing_tags (listingId)"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS tag_counts (tag TEXT PRIMARY KEY, listings INTEGER NOT NULL) WITHOUT ROWID"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE INDEX IF NOT EXISTS tag_counts_listings ON tag_counts (listings DESC, tag)"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TRIGGER IF NOT EXISTS listing_tags_count_insert AFTER INSERT ON listing_tags BEGIN INSERT INTO tag_counts (tag, listings) VALUES (NEW.tag, 1) ON CONFLICT(tag) DO UPDATE SET listings = listings + 1; END"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TRIGGER IF NOT EXISTS listing_tags_count_delete AFTER DELETE ON listing_tags BEGIN UPDATE tag_counts SET listings = listings - 1 WHERE tag = OLD.tag; DELETE FROM tag_counts WHERE tag = OLD.tag AND listings <= 0; END"); }catch(Exception ignore){}
+    // Provider service areas as lat/lon boxes; providerId is an auxiliary (unindexed) column
+    try{ jdbc.execute("CREATE VIRTUAL TABLE IF NOT EXISTS provider_areas USING rtree(id, minLat, maxLat, minLon, maxLon, +providerId TEXT)"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS conversations " + CONVERSATIONS_COLUMNS); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS messages " + MESSAGES_COLUMNS); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS orders " + ORDERS_COLUMNS); }catch(Exception ignore){}
+    // Order count and amount per (UTC day, provider, status); maintained by triggers installed in OrderRollups
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS order_rollups (day TEXT NOT NULL, providerId TEXT NOT NULL, status TEXT NOT NULL, orders INTEGER NOT NULL DEFAULT 0, amount REAL NOT NULL DEFAULT 0, PRIMARY KEY (day, providerId, status)) WITHOUT ROWID"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE INDEX IF NOT EXISTS order_rollups_provider_day ON order_rollups (providerId, day)"); }catch(Exception ignore){}
+    // Provider calendars: weekly hours (minutes from midnight, weekday 1 = Monday) and one booked slot per order
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS provider_hours (providerId TEXT NOT NULL, weekday INTEGER NOT NULL, opens INTEGER NOT NULL, closes INTEGER NOT NULL, PRIMARY KEY (providerId, weekday, opens)) WITHOUT ROWID"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS bookings (orderId TEXT PRIMARY KEY, providerId TEXT NOT NULL, day TEXT NOT NULL, startMinute INTEGER NOT NULL, endMinute INTEGER NOT NULL)"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE UNIQUE INDEX IF NOT EXISTS bookings_provider_slot ON bookings (providerId, day, startMinute)"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS provider_reviews " + PROVIDER_REVIEWS_COLUMNS); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS provider_review_summaries (providerId TEXT PRIMARY KEY, count INTEGER NOT NULL DEFAULT 0, ratingSum INTEGER NOT NULL DEFAULT 0, r1 INTEGER NOT NULL DEFAULT 0, r2 INTEGER NOT NULL DEFAULT 0, r3 INTEGER NOT NULL DEFAULT 0, r4 INTEGER NOT NULL DEFAULT 0, r5 INTEGER NOT NULL DEFAULT 0, latest TEXT NOT NULL DEFAULT '[]', updatedAt INTEGER) WITHOUT ROWID"); }catch(Exception ignore){}
     try{ jdbc.execute("CREATE TABLE IF NOT EXISTS favorites (userId TEXT NOT NULL REFERENCES users(id), providerId TEXT NOT NULL REFERENCES players(id), PRIMARY KEY (userId, providerId))"); }catch(Exception ignore){}
-    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS interactions (id TEXT PRIMARY KEY, userId TEXT NOT NULL REFERENCES users(id), providerId TEXT NOT NULL REFERENCES players(id), listingId TEXT, at TEXT NOT NULL, note TEXT DEFAULT '', amount REAL DEFAULT 0)"); }catch(Exception ignore){}
+    // "Favorited by N" per provider, kept in step with favorites inserts and deletes
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS provider_favorite_counts (providerId TEXT PRIMARY KEY, count INTEGER NOT NULL DEFAULT 0) WITHOUT ROWID"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS interactions " + INTERACTIONS_COLUMNS); }catch(Exception ignore){}
+    // Interaction rollups, kept in step with each flushed batch of events
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS user_provider_interactions (userId TEXT NOT NULL, providerId TEXT NOT NULL, interactions INTEGER NOT NULL DEFAULT 0, lastAt INTEGER, PRIMARY KEY (userId, providerId)) WITHOUT ROWID"); }catch(Exception ignore){}
+    try{ jdbc.execute("CREATE TABLE IF NOT EXISTS provider_daily_interactions (providerId TEXT NOT NULL, day TEXT NOT NULL, total INTEGER NOT NULL DEFAULT 0, profileViews INTEGER NOT NULL DEFAULT 0, listingViews INTEGER NOT NULL DEFAULT 0, contactClicks INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (providerId, day)) WITHOUT ROWID"); }catch(Exception ignore){}
     // Case-insensitive unique email constraint via index
     try{ jdbc.execute("CREATE UNIQUE INDEX IF NOT EXISTS users_email_lower_unique ON users (lower(email))"); }catch(Exception ignore){}
   }
@@ -33,6 +33,7 @@ public class SecurityConfig {
     cfg.setAllowedOrigins(List.of("http://localhost:5173", "http://127.0.0.1:5173"));
     cfg.setAllowedMethods(List.of("GET","POST","PUT","DELETE","OPTIONS"));
     cfg.setAllowedHeaders(List.of("*"));
+    cfg.setExposedHeaders(List.of("ETag", "X-Next-Cursor", "Content-Disposition"));
     cfg.setAllowCredentials(true);
     UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
     source.registerCorsConfiguration("/**", cfg);
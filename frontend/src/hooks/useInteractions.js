@@ -0,0 +1,27 @@
+import { fetchAuthed, getToken } from './useAuth.js'
+
+// Interaction events are queued here and sent in batches; the server only buffers them too
+const MAX_BATCH = 100
+const FLUSH_MS = 5000
+let queue = []
+let timer = null
+
+export function trackInteraction(type, providerId, listingId){
+  const provider = String(providerId || '').trim()
+  if (!provider || !getToken()) return
+  queue.push({ type, providerId: provider, listingId: listingId ? String(listingId) : null })
+  if (queue.length >= MAX_BATCH) flushInteractions()
+  else if (!timer) timer = setTimeout(flushInteractions, FLUSH_MS)
+}
+
+export function flushInteractions(){
+  if (timer){ clearTimeout(timer); timer = null }
+  if (!queue.length) return
+  const events = queue.splice(0, MAX_BATCH)
+  fetchAuthed('/api/interactions', { method:'POST', body: JSON.stringify({ events }), keepalive: true }).catch(()=>{})
+  if (queue.length) timer = setTimeout(flushInteractions, 0)
+}
+
+if (typeof window !== 'undefined'){
+  window.addEventListener('pagehide', flushInteractions)
+}
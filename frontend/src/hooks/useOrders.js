@@ -0,0 +1,17 @@
+import { fetchAuthed } from './useAuth.js'
+
+// /api/orders/mine is paged newest first; follow X-Next-Cursor so totals cover every order
+export async function fetchMyOrders(){
+  const orders = []
+  let cursor = null
+  do{
+    const q = cursor ? `&cursor=${encodeURIComponent(cursor)}` : ''
+    const res = await fetchAuthed(`/api/orders/mine?limit=200${q}`)
+    if (!res.ok) return orders.length ? orders : null
+    const page = await res.json()
+    if (!Array.isArray(page)) break
+    orders.push(...page)
+    cursor = res.headers?.get?.('X-Next-Cursor') || null
+  }while (cursor)
+  return orders
+}
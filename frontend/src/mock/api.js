@@ -170,6 +170,44 @@ export async function mockFetch(path, opts={}){
     setMsgs(conv.id, [])
     return res(200, conv)
   }
+  if (path.startsWith('/api/conversations/search') && method === 'GET'){
+    if (!token) return res(401, { error:'No token' });
+    const q = decodeURIComponent((path.match(/[?&]q=([^&]*)/) || [])[1] || '').trim().toLowerCase()
+    const hits = !q ? [] : getConvs().flatMap(c => getMsgs(c.id)
+      .filter(m => String(m.content || '').toLowerCase().includes(q))
+      .map(m => ({ messageId: m.id, conversationId: c.id, conversationTitle: c.title, userId: m.userId, role: m.role, createdAt: m.createdAt, snippet: m.content })))
+    return res(200, { hits, next: null })
+  }
+  if (path === '/api/conversations/unread' && method === 'GET'){
+    if (!token) return res(401, { error:'No token' });
+    return res(200, { unread: 0, conversations: 0 })
+  }
+  if (/^\/api\/conversations\/[^/]+\/read$/.test(path) && method === 'POST'){
+    if (!token) return res(401, { error:'No token' });
+    return res(200, { ok:true })
+  }
+  const changesMatch = path.match(/^\/api\/conversations\/([^/]+)\/messages\/changes(?:\?cursor=(.*))?$/)
+  if (changesMatch && method === 'GET'){
+    if (!token) return res(401, { error:'No token' });
+    const all = getMsgs(changesMatch[1])
+    const after = changesMatch[2] ? decodeURIComponent(changesMatch[2]) : null
+    const start = after ? all.findIndex(m => m.id === after) + 1 : 0
+    const messages = all.slice(start)
+    if (messages.length === 0) await new Promise(resolve => setTimeout(resolve, 3000))
+    return res(200, { messages, cursor: messages.length ? messages[messages.length - 1].id : after })
+  }
+  const providerConvMatch = path.match(/^\/api\/conversations\/providers\/([^/]+)$/)
+  if (providerConvMatch && method === 'PUT'){
+    if (!token) return res(401, { error:'No token' });
+    const pid = decodeURIComponent(providerConvMatch[1])
+    const all = getConvs()
+    const existing = all.find(c => c.providerId === pid)
+    if (existing) return res(200, { ...existing, created:false })
+    const conv = { id: uid(), kind:'CHAT', title:'Chat · Trader', createdAt: now, lastMessage:'', providerId: pid }
+    all.unshift(conv); setConvs(all)
+    setMsgs(conv.id, [])
+    return res(200, { ...conv, created:true })
+  }
   const msgListMatch = path.match(/^\/api\/conversations\/([^/]+)\/messages$/)
   if (msgListMatch && method === 'GET'){
     if (!token) return res(401, { error:'No token' });
@@ -208,6 +246,46 @@ export async function mockFetch(path, opts={}){
       { id:'l2', title:'Portrait Session — 1 hour', description:'Natural light portraits.', price:220, providerId:'p2', status:'LISTED', createdAt:now, tags:'photo,creative,portrait,camera' },
     ]);
   }
+  if (path.startsWith('/api/discover/providers') && method === 'GET'){
+    const items = [
+      { id: 'p1', name: 'Ava Provider', role:'PROVIDER', rating:4.8, jobs:124, location:'Austin, TX', hourlyRate:75, bio:'Reliable outdoor work.' },
+      { id: 'p2', name: 'Milo Provider', role:'PROVIDER', rating:4.6, jobs:58, location:'Seattle, WA', hourlyRate:120, bio:'Natural light portraits.' },
+    ];
+    return res(200, { total: items.length, offset: 0, limit: 24, items, facets: { specialty: { lawn: 1, weekly: 1, photo: 1, portrait: 1 }, language: { english: 2, spanish: 1 } } });
+  }
+  if (path.startsWith('/api/providers/near') && method === 'GET'){
+    const near = decodeURIComponent((path.match(/[?&]near=([^&]*)/) || [])[1] || '').toLowerCase();
+    if (!near.includes('austin')) return res(400, { error:'Unknown location' });
+    return res(200, { point: { lat: 30.2672, lon: -97.7431 }, providers: [
+      { id: 'p1', name: 'Ava Provider', role:'PROVIDER', rating:4.8, jobs:124, location:'Austin, TX', hourlyRate:75, bio:'Reliable outdoor work.', distanceKm:0, serviceRadiusKm:24.1 },
+    ] });
+  }
+  if (path.startsWith('/api/providers/batch') && method === 'GET'){
+    const ids = decodeURIComponent((path.match(/[?&]ids=([^&]*)/) || [])[1] || '').split(',').filter(Boolean);
+    const all = {
+      p1: [{ id:'l1', title:'Lawn Care — quarter acre', description:'Mow, trim, and edge.', price:85, providerId:'p1', status:'LISTED', createdAt:now, tags:'home,outdoor,weekly,lawn,mow' }],
+      p2: [{ id:'l2', title:'Portrait Session — 1 hour', description:'Natural light portraits.', price:220, providerId:'p2', status:'LISTED', createdAt:now, tags:'photo,creative,portrait,camera' }],
+    };
+    return res(200, { providers: ids.filter(id => all[id]).map(id => ({ id, provider: { id }, listings: all[id] })), missing: ids.filter(id => !all[id]) });
+  }
+  const slotsMatch = path.match(/^\/api\/providers\/([^/?]+)\/slots(?:\?(.*))?$/);
+  if (slotsMatch && method === 'GET'){
+    const params = new URLSearchParams(slotsMatch[2] || '');
+    const from = params.get('from') || new Date().toISOString().slice(0, 10);
+    const to = params.get('to') || from;
+    const days = [];
+    for (let d = new Date(`${from}T00:00:00Z`); d <= new Date(`${to}T00:00:00Z`); d.setUTCDate(d.getUTCDate() + 1)){
+      const weekday = d.getUTCDay();
+      days.push({ date: d.toISOString().slice(0, 10), slots: weekday === 0 || weekday === 6 ? [] : ['09:00','10:00','11:00','13:00','14:00','15:00','16:00'] });
+    }
+    return res(200, { providerId: slotsMatch[1], slotMinutes: 60, from, to, days });
+  }
+  if (/^\/api\/providers\/[^/]+\/reviews\/summary$/.test(path) && method === 'GET'){
+    return res(200, { count: 0, average: 0.0, histogram: { 1:0, 2:0, 3:0, 4:0, 5:0 }, latest: [] });
+  }
+  if (/^\/api\/providers\/[^/]+\/reviews(?:\?.*)?$/.test(path) && method === 'GET'){
+    return res(200, []);
+  }
   const provMatch = path.match(/^\/api\/providers\/(.+)$/);
   if (provMatch && method === 'GET'){
     const id = provMatch[1];
@@ -221,6 +299,21 @@ export async function mockFetch(path, opts={}){
     if (!token) return res(401, { error:'No token' });
     return res(200, []);
   }
+  if (path.startsWith('/api/admin/reports/orders') && method === 'GET'){
+    if (!token) return res(401, { error:'No token' });
+    const groupBy = new URLSearchParams(path.split('?')[1] || '').get('groupBy') || 'day';
+    return res(200, { groupBy, total: 0, buckets: [] });
+  }
+  const favoriteMatch = path.match(/^\/api\/user\/favorites\/(.+)$/);
+  if (favoriteMatch && (method === 'PUT' || method === 'DELETE')){
+    if (!token) return res(401, { error:'No token' });
+    return res(200, { favorited: method === 'PUT', changed: true, favoritedBy: method === 'PUT' ? 1 : 0 });
+  }
+  if (path === '/api/interactions' && method === 'POST'){
+    if (!token) return res(401, { error:'No token' });
+    const events = Array.isArray(body?.events) ? body.events : [];
+    return res(202, { accepted: events.length, dropped: 0, invalid: 0 });
+  }
   if (path === '/api/user/history' && method === 'GET'){
     if (!token) return res(401, { error:'No token' });
     return res(200, []);
@@ -268,7 +361,7 @@ export async function mockFetch(path, opts={}){
     }
     return res(200, { ok:true });
   }
-  if (path === '/api/orders/mine' && method === 'GET'){
+  if (path.split('?')[0] === '/api/orders/mine' && method === 'GET'){
     if (!token) return res(401, { error:'No token' });
     const user = getUser();
     const nameKey = (user?.name || '').toLowerCase();
@@ -1,6 +1,6 @@
 import React, { useEffect, useMemo, useState } from 'react'
 import { fetchAuthed } from '../hooks/useAuth.js'
-import { Section, Button, Pill, Badge } from '../components/ui.js'
+import { Section, Button, Pill, Badge, currency } from '../components/ui.js'
 
 function groupBy(arr, key){
   const map = new Map()
@@ -22,15 +22,19 @@ export default function AdminDashboard(){
   const [users, setUsers] = useState([])
   const [providers, setProviders] = useState([])
   const [listings, setListings] = useState([])
+  const [orderStatuses, setOrderStatuses] = useState([])
+  const [orderProviders, setOrderProviders] = useState([])
   const [loading, setLoading] = useState(true)
 
   const load = async () => {
     setLoading(true)
     try{
-      const [uRes, pRes, lRes] = await Promise.all([
+      const [uRes, pRes, lRes, sRes, oRes] = await Promise.all([
         fetchAuthed('/api/admin/users'),
         fetchAuthed('/api/players'),
-        fetchAuthed('/api/listings')
+        fetchAuthed('/api/listings'),
+        fetchAuthed('/api/admin/reports/orders?groupBy=status'),
+        fetchAuthed('/api/admin/reports/orders?groupBy=provider')
       ])
       const usersJson = uRes.ok ? await uRes.json() : []
       const providersJson = pRes.ok ? await pRes.json() : []
@@ -39,10 +43,16 @@ export default function AdminDashboard(){
       const providerList = Array.isArray(providersJson) ? providersJson : []
       setProviders(providerList.filter(p => String(p.role || '').toUpperCase() === 'PROVIDER'))
       setListings(Array.isArray(listingsJson) ? listingsJson : [])
+      const statusJson = sRes.ok ? await sRes.json() : null
+      const providerJson = oRes.ok ? await oRes.json() : null
+      setOrderStatuses(Array.isArray(statusJson?.buckets) ? statusJson.buckets : [])
+      setOrderProviders(Array.isArray(providerJson?.buckets) ? providerJson.buckets : [])
     }catch{
       setUsers([])
       setProviders([])
       setListings([])
+      setOrderStatuses([])
+      setOrderProviders([])
     }finally{
       setLoading(false)
     }
@@ -93,6 +103,25 @@ export default function AdminDashboard(){
       .slice(0, 6)
   }, [listings])
 
+  const orderTotals = useMemo(() => {
+    const totals = { orders: 0, revenue: 0, completed: 0, refunded: 0 }
+    for (const bucket of orderStatuses){
+      totals.orders += bucket.orders || 0
+      totals.revenue += bucket.revenue || 0
+      if (bucket.key === 'complete') totals.completed += bucket.orders || 0
+      if (bucket.key === 'refunded') totals.refunded += bucket.orders || 0
+    }
+    return totals
+  }, [orderStatuses])
+
+  const topEarners = useMemo(() => {
+    const names = new Map(providers.map(provider => [provider.id, provider.name]))
+    return [...orderProviders]
+      .sort((a, b) => (b.revenue || 0) - (a.revenue || 0))
+      .slice(0, 6)
+      .map(bucket => ({ ...bucket, name: names.get(bucket.key) || bucket.key || 'Unassigned' }))
+  }, [orderProviders, providers])
+
   const providerLocations = useMemo(() => {
     const map = groupBy(providers, provider => provider?.location || 'Unspecified')
     return Array.from(map.entries()).map(([location, count]) => ({ location, count })).sort((a, b) => b.count - a.count)
@@ -130,6 +159,54 @@ export default function AdminDashboard(){
         </div>
       </section>
 
+      <Section
+        title="Orders, last 30 days"
+        right={<span className="text-xs text-gray-500">{orderTotals.orders} orders · {currency(orderTotals.revenue)} completed revenue</span>}
+      >
+        <div className="grid gap-3 lg:grid-cols-2">
+          <div className="space-y-2">
+            <div className="grid grid-cols-2 gap-2 text-xs text-gray-500">
+              <div className="rounded-2xl border border-gray-200 bg-white p-4">
+                <div className="font-semibold uppercase tracking-wide text-gray-400">Completion rate</div>
+                <div className="mt-1 text-xl font-semibold text-gray-900">{orderTotals.orders ? Math.round(orderTotals.completed * 100 / orderTotals.orders) : 0}%</div>
+              </div>
+              <div className="rounded-2xl border border-gray-200 bg-white p-4">
+                <div className="font-semibold uppercase tracking-wide text-gray-400">Refund rate</div>
+                <div className="mt-1 text-xl font-semibold text-gray-900">{orderTotals.orders ? Math.round(orderTotals.refunded * 100 / orderTotals.orders) : 0}%</div>
+              </div>
+            </div>
+            {orderStatuses.map(bucket => (
+              <div key={bucket.key} className="flex items-center justify-between rounded-2xl border border-gray-200 bg-white p-4">
+                <div>
+                  <div className="text-sm font-semibold text-gray-900">{titleCase(bucket.key)}</div>
+                  <p className="text-xs text-gray-500">{currency(bucket.amount)} across these orders.</p>
+                </div>
+                <Badge className="border-gray-200 text-gray-700">{bucket.orders}</Badge>
+              </div>
+            ))}
+            {orderStatuses.length === 0 && <div className="text-sm text-gray-500">No orders in this period.</div>}
+          </div>
+          <div className="rounded-2xl border border-gray-200 bg-white p-4">
+            <div className="text-sm font-semibold text-gray-900">Top providers by revenue</div>
+            <div className="mt-2 space-y-2 text-xs text-gray-500">
+              {topEarners.map(entry => (
+                <div key={entry.key} className="flex items-center justify-between rounded-xl border border-gray-100 bg-gray-50 p-3">
+                  <div>
+                    <div className="text-sm font-semibold text-gray-900">{entry.name}</div>
+                    <div>{entry.orders} order(s) · {Math.round((entry.completionRate || 0) * 100)}% completed</div>
+                  </div>
+                  <div className="text-right">
+                    <div>{currency(entry.revenue)}</div>
+                    {entry.refunded > 0 && <div>{currency(entry.refunded)} refunded</div>}
+                  </div>
+                </div>
+              ))}
+              {topEarners.length === 0 && <div>No provider revenue recorded.</div>}
+            </div>
+          </div>
+        </div>
+      </Section>
+
       <Section
         title="Role distribution"
         right={<span className="text-xs text-gray-500">{roleBreakdown.reduce((acc, item) => acc + item.count, 0)} accounts</span>}
@@ -21,6 +21,7 @@ export default function CheckoutPage(){
   const [listing, setListing] = useState(null)
   const [loadingCheckout, setLoadingCheckout] = useState(false)
   const [error, setError] = useState('')
+  const [freeSlots, setFreeSlots] = useState(null)
 
   const amount = Number(price) || Number(listing?.price || 0)
   const customerKey = useMemo(() => `${location.pathname}${location.search}`, [location.pathname, location.search])
@@ -59,6 +60,20 @@ export default function CheckoutPage(){
     setTime(saved.time || '')
   }, [navigate, customerDetailsHref])
 
+  // Free start times for the chosen date, so only bookable times are offered
+  useEffect(() => {
+    if (!providerId || !/^\d{4}-\d{2}-\d{2}$/.test(date)){ setFreeSlots(null); return }
+    let cancelled = false
+    ;(async () => {
+      try{
+        const res = await fetch(`/api/providers/${encodeURIComponent(providerId)}/slots?from=${date}&to=${date}`)
+        const d = res.ok ? await res.json() : null
+        if (!cancelled) setFreeSlots(d?.days?.[0]?.date === date ? d.days[0].slots : null)
+      }catch{ if (!cancelled) setFreeSlots(null) }
+    })()
+    return () => { cancelled = true }
+  }, [providerId, date])
+
   const submit = async (e) => {
     e.preventDefault()
     setError('')
@@ -66,6 +81,10 @@ export default function CheckoutPage(){
       alert('Please fill name, email, phone, address, and preferred date')
       return
     }
+    if (freeSlots && time && !freeSlots.includes(time)){
+      setError('That time is no longer available. Pick one of the free times for this date.')
+      return
+    }
 
     try{
       const snapshot = { ...(getCustomerProfile() || {}), name, email, phone, address, date, time, tasks }
@@ -173,6 +192,20 @@ export default function CheckoutPage(){
                   <Input type="time" value={time} onChange={setTime} />
                 </div>
               </div>
+              {freeSlots && (
+                <div className="space-y-2">
+                  <div className="text-xs font-semibold uppercase tracking-wide text-gray-400">Free times on this date</div>
+                  {freeSlots.length === 0
+                    ? <div className="text-sm text-gray-500">No free times on this date. Try another day.</div>
+                    : (
+                      <div className="flex flex-wrap gap-2">
+                        {freeSlots.map(slot => (
+                          <Button key={slot} type="button" variant={slot === time ? 'primary' : 'ghost'} onClick={() => setTime(slot)}>{slot}</Button>
+                        ))}
+                      </div>
+                    )}
+                </div>
+              )}
               <div className="grid gap-4 sm:grid-cols-2">
                 <div className="space-y-1">
                   <label className="text-xs font-semibold uppercase tracking-wide text-gray-400">Contact phone</label>
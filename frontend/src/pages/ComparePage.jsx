@@ -8,17 +8,20 @@ export default function ComparePage(){
   const [params] = useSearchParams()
   const ids = (params.get('ids')||'').split(',').map(s=>s.trim()).filter(Boolean)
 
+  const idsKey = ids.join(',')
+
   useEffect(()=>{
+    if (!idsKey) return
     (async ()=>{
       try{
-        const [p,l] = await Promise.all([fetch('/api/players'), fetch('/api/listings')])
-        const playersData = await p.json()
-        const listingsData = await l.json()
-        setPlayers(Array.isArray(playersData) ? playersData.map(pl => ({ ...pl, id: String(pl.id) })) : [])
-        setListings(Array.isArray(listingsData) ? listingsData.map(it => ({ ...it, id: String(it.id||`${it.providerId}_${it.title||''}`), providerId: String(it.providerId), price: Number(it.price||0)||0 })) : [])
+        const res = await fetch(`/api/providers/batch?ids=${encodeURIComponent(idsKey)}&fields=name,rating,jobs,listings`)
+        const data = res.ok ? await res.json() : {}
+        const entries = Array.isArray(data?.providers) ? data.providers : []
+        setPlayers(entries.map(e => ({ ...e.provider, id: String(e.id) })))
+        setListings(entries.flatMap(e => (Array.isArray(e.listings) ? e.listings : []).map(it => ({ ...it, id: String(it.id||`${it.providerId}_${it.title||''}`), providerId: String(it.providerId), price: Number(it.price||0)||0 }))))
       }catch{}
     })()
-  },[])
+  },[idsKey])
 
   const rows = useMemo(()=>{
     const selected = players.filter(p=>ids.includes(String(p.id)))
@@ -28,7 +31,7 @@ export default function ComparePage(){
       const minPrice = mine.length? Math.min(...mine.map(m=>m.price||Infinity)) : null
       return { provider:{ ...p, id: pid }, listings:mine, minPrice }
     })
-  }, [players, listings, ids])
+  }, [players, listings, idsKey])
 
   return (
     <main className="max-w-6xl mx-auto px-4 py-6">
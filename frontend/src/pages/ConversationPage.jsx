@@ -7,13 +7,33 @@ export default function ConversationPage(){
   const { id } = useParams()
   const [messages, setMessages] = useState([])
   const [text, setText] = useState('')
+  const [earlier, setEarlier] = useState(null)
   const listRef = useRef(null)
+  const keepScroll = useRef(false)
 
+  // The endpoint returns the latest page; X-Next-Cursor points at the page before it
   async function load(){
-    try{ const r = await fetchAuthed(`/api/conversations/${id}/messages`); if (r.ok) setMessages(await r.json()) }catch{}
+    try{
+      const r = await fetchAuthed(`/api/conversations/${id}/messages`)
+      if (r.ok){ setMessages(await r.json()); setEarlier(r.headers?.get?.('X-Next-Cursor') || null) }
+    }catch{}
+  }
+  async function loadEarlier(){
+    if (!earlier) return
+    try{
+      const r = await fetchAuthed(`/api/conversations/${id}/messages?cursor=${encodeURIComponent(earlier)}`)
+      if (!r.ok) return
+      const older = await r.json()
+      keepScroll.current = true
+      setMessages(prev => [...older, ...prev])
+      setEarlier(r.headers?.get?.('X-Next-Cursor') || null)
+    }catch{}
   }
   useEffect(()=>{ load() },[id])
-  useEffect(()=>{ listRef.current?.scrollTo?.(0, listRef.current.scrollHeight) },[messages])
+  useEffect(()=>{
+    if (keepScroll.current){ keepScroll.current = false; return }
+    listRef.current?.scrollTo?.(0, listRef.current.scrollHeight)
+  },[messages])
 
   const send = async (e) => {
     e?.preventDefault?.()
@@ -32,6 +52,11 @@ export default function ConversationPage(){
         <h1 className="text-lg font-semibold">Conversation</h1>
       </div>
       <div ref={listRef} className="border rounded-2xl p-3 h-[60vh] overflow-y-auto bg-white shadow-sm">
+        {earlier && (
+          <div className="text-center my-1">
+            <button type="button" onClick={loadEarlier} className="text-xs text-gray-500 underline">Load earlier messages</button>
+          </div>
+        )}
         {messages.filter(m => m.role !== 'system' && String(m.content || '').trim() !== '').map(m => (
           <div key={m.id} className={`my-2 ${m.role==='user' ? 'text-right' : 'text-left'}`}>
             <div className={`inline-block px-3 py-2 rounded-2xl border shadow-sm ${m.role==='user'?'bg-black text-white border-black':'bg-gray-50 text-gray-800 border-gray-200'}`}>
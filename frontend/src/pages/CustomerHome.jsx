@@ -4,6 +4,7 @@ import { JourneyStepper } from '../components/JourneyStepper.jsx'
 import { Section, Button, Badge, Input } from '../components/ui.js'
 import { fetchAuthed } from '../hooks/useAuth.js'
 import { ensureConversationWithProvider } from '../hooks/useConversations.js'
+import { fetchMyOrders } from '../hooks/useOrders.js'
 
 const STATUS_PRIORITY = ['approved', 'discuss', 'pending', 'in_progress']
 
@@ -43,14 +44,7 @@ export default function CustomerHome({ me }){
   const loadOrders = useCallback(async () => {
     setOrdersLoading(true)
     try{
-      const res = await fetchAuthed('/api/orders/mine')
-      if (res.ok){
-        const data = await res.json()
-        if (Array.isArray(data)) setOrders(data)
-        else setOrders([])
-      } else {
-        setOrders([])
-      }
+      setOrders(await fetchMyOrders() || [])
     }catch{
       setOrders([])
     }finally{
@@ -1,7 +1,25 @@
-import React from 'react'
+import React, { useEffect, useState } from 'react'
 import { JourneyStepper } from '../components/JourneyStepper.jsx'
 
 export default function HomeSearch({ onSearch, q, setQ }){
+  const [suggestions, setSuggestions] = useState([])
+
+  useEffect(() => {
+    const term = (q || '').trim()
+    if (term.length < 2){ setSuggestions([]); return }
+    let ignore = false
+    const timer = setTimeout(async () => {
+      try{
+        const res = await fetch(`/api/suggest?q=${encodeURIComponent(term)}&limit=8`)
+        const data = res.ok ? await res.json() : []
+        if (!ignore) setSuggestions(Array.isArray(data) ? data : [])
+      }catch{
+        if (!ignore) setSuggestions([])
+      }
+    }, 120)
+    return () => { ignore = true; clearTimeout(timer) }
+  }, [q])
+
   return (
     <main className="tx-container">
       <section className="tx-section space-y-12 text-center">
@@ -18,9 +36,14 @@ export default function HomeSearch({ onSearch, q, setQ }){
             <input
               value={q}
               onChange={e=>setQ(e.target.value)}
+              list="home-search-suggestions"
+              autoComplete="off"
               placeholder="Search services or categories"
               className="w-full rounded-xl border border-gray-200 bg-white px-4 py-3 text-sm font-medium text-gray-700 focus:border-gray-400 focus:outline-none focus:ring-2 focus:ring-gray-300/70"
             />
+            <datalist id="home-search-suggestions">
+              {suggestions.map(s => <option key={`${s.type}:${s.id}`} value={s.text} />)}
+            </datalist>
             <button className="w-full rounded-xl bg-gray-900 px-6 py-3 text-sm font-semibold text-white shadow-sm hover:bg-gray-800 sm:w-auto">
               Search marketplace
             </button>
@@ -1,5 +1,6 @@
 import React, { useEffect, useState } from 'react'
 import { Link } from 'react-router-dom'
+import { Button, Input } from '../components/ui.js'
 import { fetchAuthed } from '../hooks/useAuth.js'
 
 export default function MessagesList(){
@@ -8,6 +9,22 @@ export default function MessagesList(){
     try{ const r = await fetchAuthed('/api/conversations'); if (r.ok) setItems(await r.json()) }catch{}
   }
   useEffect(()=>{ load() },[])
+  const unread = items.reduce((n, c) => n + (c.unread || 0), 0)
+
+  const [query, setQuery] = useState('')
+  const [results, setResults] = useState(null)
+  async function search(e, cursor){
+    e?.preventDefault?.()
+    const q = query.trim()
+    if (!q){ setResults(null); return }
+    try{
+      const r = await fetchAuthed(`/api/conversations/search?q=${encodeURIComponent(q)}${cursor ? `&cursor=${encodeURIComponent(cursor)}` : ''}`)
+      if (r.ok){
+        const d = await r.json()
+        setResults(prev => ({ hits: cursor && prev ? [...prev.hits, ...d.hits] : d.hits, next: d.next }))
+      }
+    }catch{}
+  }
 
   // New chat with a trader is initiated from the provider page; disabled here.
 
@@ -15,16 +32,34 @@ export default function MessagesList(){
     <main className="max-w-3xl mx-auto px-4 py-6">
       <div className="flex items-center justify-between mb-4">
         <h1 className="text-2xl font-semibold">Messages</h1>
+        {unread > 0 && <span className="rounded-full bg-black px-2.5 py-0.5 text-xs font-semibold text-white">{unread} unread</span>}
       </div>
+      <form onSubmit={search} className="mb-4 flex gap-2">
+        <Input value={query} onChange={v => { setQuery(v); if (!v.trim()) setResults(null) }} placeholder="Search messages" />
+        <Button type="submit">Search</Button>
+      </form>
+      {results && (
+        <div className="mb-6 space-y-2">
+          {results.hits.map(h => (
+            <Link key={h.messageId} to={`/messages/${h.conversationId}`} className="block border rounded-2xl p-3 hover:bg-gray-50 bg-white shadow-sm">
+              <div className="text-xs text-gray-500">{h.conversationTitle || 'Conversation'} · {new Date(h.createdAt).toLocaleString()}</div>
+              <div className="text-sm">{h.snippet}</div>
+            </Link>
+          ))}
+          {results.hits.length===0 && <div className="text-sm text-gray-500">No matching messages.</div>}
+          {results.next && <Button onClick={() => search(null, results.next)}>More results</Button>}
+        </div>
+      )}
       <div className="space-y-2">
         {items.map(c => (
           <Link key={c.id} to={`/messages/${c.id}`} className="block border rounded-2xl p-3 hover:bg-gray-50 bg-white shadow-sm">
             <div className="flex items-center gap-3">
               <div className="size-8 rounded-full bg-gradient-to-tr from-gray-200 to-gray-50 border grid place-items-center text-xs font-semibold">💬</div>
-              <div className="min-w-0">
-                <div className="text-sm font-medium">{c.title || 'Conversation'}</div>
+              <div className="min-w-0 flex-1">
+                <div className={`text-sm ${c.unread > 0 ? 'font-semibold' : 'font-medium'}`}>{c.title || 'Conversation'}</div>
                 <div className="text-xs text-gray-500 truncate">{c.lastMessage || 'No messages yet'}</div>
               </div>
+              {c.unread > 0 && <span className="grid min-w-5 place-items-center rounded-full bg-black px-1.5 text-[11px] font-semibold text-white">{c.unread}</span>}
             </div>
           </Link>
         ))}
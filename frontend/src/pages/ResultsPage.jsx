@@ -19,9 +19,38 @@ function scoreProviderForQuery(provider, listings, query){
   return s;
 }
 
+const PAGE_SIZE = 24;
+const FACET_LIMIT = 10;
+const NEAR_LIMIT = 50;
+const NO_FILTERS = { specialty: [], language: [], minHourlyRate: '', maxHourlyRate: '', minRating: '' };
+const splitTags = (tags) => typeof tags === 'string' ? tags.split(',').map(t=>t.trim()).filter(Boolean) : Array.isArray(tags) ? tags : [];
+
+function discoverQuery(filters, offset){
+  const qs = new URLSearchParams({ role: 'provider', sort: '-rating', limit: String(PAGE_SIZE), offset: String(offset) });
+  for (const v of filters.specialty) qs.append('specialty', v);
+  for (const v of filters.language) qs.append('language', v);
+  if (filters.minHourlyRate !== '') qs.set('minHourlyRate', filters.minHourlyRate);
+  if (filters.maxHourlyRate !== '') qs.set('maxHourlyRate', filters.maxHourlyRate);
+  if (filters.minRating !== '') qs.set('minRating', filters.minRating);
+  return qs.toString();
+}
+
+// Listings for a page of providers in one request
+async function listingsFor(ids){
+  const wanted = ids.filter(Boolean);
+  if (wanted.length === 0) return {};
+  const res = await fetch(`/api/providers/batch?ids=${encodeURIComponent(wanted.join(','))}&fields=listings`);
+  const body = res.ok ? await res.json() : null;
+  const found = {};
+  for (const entry of (body?.providers || [])) found[entry.id] = (entry.listings || []).map(l => ({ ...l, tags: splitTags(l.tags) }));
+  return found;
+}
+
+function topFacet(counts){
+  return Object.entries(counts || {}).sort((a,b) => b[1]-a[1] || a[0].localeCompare(b[0])).slice(0, FACET_LIMIT);
+}
+
 export default function ResultsPage(){
-  const [players, setPlayers] = useState([]);
-  const [listings, setListings] = useState([]);
   const [params] = useSearchParams();
   const q = params.get('q') || '';
   const navigate = useNavigate();
@@ -30,19 +59,85 @@ export default function ResultsPage(){
   const [searchListings, setSearchListings] = useState([]);
   const [searchLoading, setSearchLoading] = useState(false);
   const [searchFetched, setSearchFetched] = useState(false);
+  // Browsing without a query: one filtered, sorted page at a time from the server's facet index
+  const [filters, setFilters] = useState(NO_FILTERS);
+  const [draft, setDraft] = useState(NO_FILTERS);
+  const [offset, setOffset] = useState(0);
+  const [browse, setBrowse] = useState({ total: 0, items: [], facets: {} });
+  const [browseLoading, setBrowseLoading] = useState(false);
+  const [listingsByProvider, setListingsByProvider] = useState({});
+  // A location switches browsing to the providers whose service area covers it, nearest first
+  const [nearDraft, setNearDraft] = useState('');
+  const [near, setNear] = useState('');
+  const [nearResult, setNearResult] = useState({ providers: [], error: '' });
+  const [nearLoading, setNearLoading] = useState(false);
 
   useEffect(() => {
+    if (q) return;
+    let ignore = false;
+    setBrowseLoading(true);
     (async () => {
       try{
-        const [p,l] = await Promise.all([fetch('/api/players'), fetch('/api/listings')]);
-        const playersJson = await p.json();
-        setPlayers(Array.isArray(playersJson) ? playersJson : []);
-        const raw = await l.json();
-        const mapped = Array.isArray(raw) ? raw : [];
-        setListings(mapped.map(x => ({...x, tags: typeof x.tags === 'string' ? x.tags.split(',').map(t=>t.trim()).filter(Boolean) : Array.isArray(x.tags) ? x.tags : [] })));
-      }catch{}
+        const res = await fetch(`/api/discover/providers?${discoverQuery(filters, offset)}`);
+        const data = res.ok ? await res.json() : null;
+        if (ignore) return;
+        const items = Array.isArray(data?.items) ? data.items : [];
+        setBrowse(prev => ({
+          total: Number(data?.total) || 0,
+          items: offset > 0 ? [...prev.items, ...items] : items,
+          facets: data?.facets || {},
+        }));
+        const found = await listingsFor(items.map(p => p.id));
+        if (!ignore) setListingsByProvider(prev => ({ ...prev, ...found }));
+      }catch{
+        if (!ignore && offset === 0) setBrowse({ total: 0, items: [], facets: {} });
+      }finally{
+        if (!ignore) setBrowseLoading(false);
+      }
     })();
-  }, []);
+    return () => { ignore = true; };
+  }, [q, filters, offset]);
+
+  useEffect(() => {
+    if (q || !near){
+      setNearResult({ providers: [], error: '' });
+      return;
+    }
+    let ignore = false;
+    setNearLoading(true);
+    (async () => {
+      try{
+        const res = await fetch(`/api/providers/near?near=${encodeURIComponent(near)}&limit=${NEAR_LIMIT}`);
+        const data = await res.json().catch(() => null);
+        if (ignore) return;
+        if (!res.ok){
+          setNearResult({ providers: [], error: data?.error || 'Unknown location' });
+          return;
+        }
+        const providers = Array.isArray(data?.providers) ? data.providers : [];
+        setNearResult({ providers, error: '' });
+        const found = await listingsFor(providers.map(p => p.id));
+        if (!ignore) setListingsByProvider(prev => ({ ...prev, ...found }));
+      }catch{
+        if (!ignore) setNearResult({ providers: [], error: 'Could not search near that location' });
+      }finally{
+        if (!ignore) setNearLoading(false);
+      }
+    })();
+    return () => { ignore = true; };
+  }, [q, near]);
+
+  const applyFilters = (next) => {
+    setOffset(0);
+    setFilters(next);
+  };
+  const toggleFacet = (field, value) => {
+    const current = filters[field];
+    const next = { ...filters, [field]: current.includes(value) ? current.filter(v => v !== value) : [...current, value] };
+    setDraft(d => ({ ...d, [field]: next[field] }));
+    applyFilters(next);
+  };
+  const filtered = filters.specialty.length > 0 || filters.language.length > 0 || filters.minHourlyRate !== '' || filters.maxHourlyRate !== '' || filters.minRating !== '';
 
   useEffect(() => {
     let ignore = false;
@@ -64,7 +159,7 @@ export default function ResultsPage(){
           const prov = Array.isArray(data?.providers) ? data.providers : [];
           const list = Array.isArray(data?.listings) ? data.listings : [];
           setSearchProviders(prov);
-          setSearchListings(list.map(x => ({...x, tags: typeof x.tags === 'string' ? x.tags.split(',').map(t=>t.trim()).filter(Boolean) : Array.isArray(x.tags) ? x.tags : [] })));
+          setSearchListings(list.map(x => ({...x, tags: splitTags(x.tags) })));
         } else {
           setSearchProviders([]);
           setSearchListings([]);
@@ -85,9 +180,13 @@ export default function ResultsPage(){
   }, [q]);
 
   const recs = useMemo(() => {
-    const sourceProviders = q ? searchProviders : players;
-    const sourceListings = q ? searchListings : listings;
-    const providers = (sourceProviders || []).filter(p => String(p.role || '').toUpperCase() === 'PROVIDER');
+    if (!q){
+      return (near ? nearResult.providers : browse.items).map(p => {
+        const mine = listingsByProvider[p.id] || [];
+        return { provider: p, listings: mine, score: scoreProviderForQuery(p, mine, '') };
+      });
+    }
+    const providers = (searchProviders || []).filter(p => String(p.role || '').toUpperCase() === 'PROVIDER');
     const unique = [];
     const seen = new Set();
     for (const p of providers){
@@ -98,10 +197,11 @@ export default function ResultsPage(){
     }
     return unique.map(p => ({
       provider: p,
-      listings: sourceListings.filter(l => String(l.providerId) === String(p.id)),
-      score: scoreProviderForQuery(p, sourceListings, q)
+      listings: searchListings.filter(l => String(l.providerId) === String(p.id)),
+      score: scoreProviderForQuery(p, searchListings, q)
     })).sort((a,b)=>b.score-a.score);
-  }, [players, listings, searchProviders, searchListings, q]);
+  }, [browse, near, nearResult, listingsByProvider, searchProviders, searchListings, q]);
+  const matchCount = q || near ? recs.length : browse.total;
 
   return (
     <main className="tx-container py-10 space-y-8">
@@ -119,8 +219,55 @@ export default function ResultsPage(){
       <section className="space-y-6">
         <div className="flex flex-wrap items-center justify-between gap-3">
           <h2>{q ? `Results for “${q}”` : 'Recommended traders'}</h2>
-          <div className="text-sm font-medium text-gray-500">{recs.length} {recs.length === 1 ? 'match' : 'matches'}</div>
+          <div className="text-sm font-medium text-gray-500">{matchCount} {matchCount === 1 ? 'match' : 'matches'}</div>
         </div>
+        {!q && (
+          <div className="tx-card space-y-4 p-5">
+            <form
+              className="flex flex-col gap-3 sm:flex-row"
+              onSubmit={(e)=>{ e.preventDefault(); setNear(nearDraft.trim()); }}
+            >
+              <Input value={nearDraft} onChange={setNearDraft} placeholder="Near a city, e.g. Austin, TX" />
+              <Button type="submit" variant="subtle">Find nearby</Button>
+              {near && <Button variant="ghost" onClick={() => { setNearDraft(''); setNear(''); }}>Clear location</Button>}
+            </form>
+            {near && nearResult.error && <div className="text-sm text-red-600">{nearResult.error}</div>}
+            {!near && [['specialty', 'Specialty'], ['language', 'Language']].map(([field, label]) => {
+              const values = topFacet(browse.facets?.[field]);
+              const selected = filters[field].filter(v => !values.some(([value]) => value === v)).map(v => [v, 0]);
+              if (values.length === 0 && selected.length === 0) return null;
+              return (
+                <div key={field} className="space-y-2">
+                  <div className="text-xs font-semibold uppercase tracking-wide text-gray-400">{label}</div>
+                  <div className="flex flex-wrap gap-2">
+                    {[...selected, ...values].map(([value, count]) => (
+                      <Button key={value} variant={filters[field].includes(value) ? 'primary' : 'ghost'} onClick={() => toggleFacet(field, value)}>
+                        {value} <span className="text-xs opacity-70">{count}</span>
+                      </Button>
+                    ))}
+                  </div>
+                </div>
+              );
+            })}
+            {!near && <form
+              className="grid gap-3 sm:grid-cols-4"
+              onSubmit={(e)=>{ e.preventDefault(); applyFilters({ ...filters, minHourlyRate: draft.minHourlyRate, maxHourlyRate: draft.maxHourlyRate, minRating: draft.minRating }); }}
+            >
+              <Input type="number" value={draft.minHourlyRate} onChange={v => setDraft(d => ({ ...d, minHourlyRate: v }))} placeholder="Min $/hr" />
+              <Input type="number" value={draft.maxHourlyRate} onChange={v => setDraft(d => ({ ...d, maxHourlyRate: v }))} placeholder="Max $/hr" />
+              <Input type="number" value={draft.minRating} onChange={v => setDraft(d => ({ ...d, minRating: v }))} placeholder="Min rating" />
+              <div className="flex gap-2">
+                <Button type="submit" variant="subtle">Apply</Button>
+                {filtered && <Button variant="ghost" onClick={() => { setDraft(NO_FILTERS); applyFilters(NO_FILTERS); }}>Clear</Button>}
+              </div>
+            </form>}
+          </div>
+        )}
+        {!q && !(near ? nearLoading || nearResult.error : browseLoading) && recs.length === 0 && (
+          <div className="rounded-xl border border-dashed border-gray-300 bg-white/70 px-4 py-3 text-sm text-gray-600">
+            {near ? 'No traders serve that location yet. Try a nearby city.' : 'No traders match these filters. Try removing one.'}
+          </div>
+        )}
         {q && searchLoading && (
           <div className="rounded-xl border border-dashed border-gray-300 bg-white/70 px-4 py-3 text-sm text-gray-600">Searching providers…</div>
         )}
@@ -136,6 +283,7 @@ export default function ResultsPage(){
                 <PlayerBadge player={item.provider} />
                 <div className="text-right">
                   {item.provider.location && <div className="text-xs font-medium uppercase tracking-wide text-gray-400">{item.provider.location}</div>}
+                  {item.provider.distanceKm != null && <div className="text-xs text-gray-500">{item.provider.distanceKm} km away</div>}
                   <Badge className="mt-1 border-gray-200 text-gray-600">Match {Math.round(item.score)}</Badge>
                 </div>
               </div>
@@ -179,6 +327,11 @@ export default function ResultsPage(){
             </article>
           ))}
         </div>
+        {!q && !near && browse.items.length < browse.total && (
+          <div className="flex justify-center">
+            <Button variant="ghost" disabled={browseLoading} onClick={() => setOffset(browse.items.length)}>{browseLoading ? 'Loading…' : 'Show more traders'}</Button>
+          </div>
+        )}
       </section>
     </main>
   )
@@ -3,6 +3,7 @@ import { useNavigate, useParams, useSearchParams, useLocation } from 'react-rout
 import { PlayerBadge, Badge, Pill, Button, Input, currency } from '../components/ui.js'
 import { JourneyStepper } from '../components/JourneyStepper.jsx'
 import { fetchAuthed } from '../hooks/useAuth.js'
+import { trackInteraction } from '../hooks/useInteractions.js'
 
 function Tiers({ basePrice, listingId, providerId, onSelect }){
   const tiers = [
@@ -49,6 +50,7 @@ export default function TraderDetailsPage(){
   const [activeListingId, setActiveListingId] = useState(selectedId || '');
   const [showConsultCard, setShowConsultCard] = useState(Boolean(shouldPrefillConsult));
   const [consultFeedback, setConsultFeedback] = useState('');
+  const [favorited, setFavorited] = useState(false);
 
   useEffect(() => {
     (async () => {
@@ -86,6 +88,39 @@ export default function TraderDetailsPage(){
     }
   }, [data?.listings, selectedId, activeListingId]);
 
+  useEffect(() => {
+    if (!me || !id) return;
+    (async () => {
+      try{
+        const res = await fetchAuthed('/api/user/favorites');
+        if (res.ok){
+          const list = await res.json();
+          setFavorited(list.some(f => String(f.providerId) === String(id)));
+        }
+      }catch{}
+    })();
+  }, [me, id]);
+
+  const toggleFavorite = async () => {
+    if (!data?.provider?.id || !me) return;
+    const next = !favorited;
+    setFavorited(next);
+    try{
+      const res = await fetchAuthed(`/api/user/favorites/${encodeURIComponent(data.provider.id)}`, { method: next ? 'PUT' : 'DELETE' });
+      if (!res.ok) setFavorited(!next);
+    }catch{
+      setFavorited(!next);
+    }
+  };
+
+  useEffect(() => {
+    if (data?.provider?.id) trackInteraction('profile_view', data.provider.id, null);
+  }, [data?.provider?.id]);
+
+  useEffect(() => {
+    if (data?.provider?.id && activeListingId) trackInteraction('listing_view', data.provider.id, activeListingId);
+  }, [data?.provider?.id, activeListingId]);
+
   useEffect(() => {
     if (shouldPrefillConsult && !showConsultCard){
       setShowConsultCard(true);
@@ -95,10 +130,11 @@ export default function TraderDetailsPage(){
   const ensureConversation = useCallback(async () => {
     if (conversationId) return conversationId
     if (!data?.provider?.id) return null
+    trackInteraction('contact_click', data.provider.id, activeListingId || null)
     const id = await ensureConversationWithProvider(data.provider.id, data.provider.name)
     if (id) setConversationId(id)
     return id
-  }, [conversationId, data?.provider?.id, data?.provider?.name])
+  }, [conversationId, data?.provider?.id, data?.provider?.name, activeListingId])
 
   const activeListing = data?.listings?.find((l) => String(l.id) === String(activeListingId)) || data?.listings?.[0];
 
@@ -137,7 +173,11 @@ export default function TraderDetailsPage(){
         setConsultNote('');
       } else {
         let err = 'Unable to send request. Try again shortly.';
-        try{ const data = await res.json(); err = data?.error || data?.message || err; }catch{}
+        try{
+          const data = await res.json();
+          err = data?.error || data?.message || err;
+          if (res.status === 409 && data?.free?.length) err = `${err}. Free times that day: ${data.free.join(', ')}`;
+        }catch{}
         setConsultFeedback(err);
       }
     }catch{
@@ -156,6 +196,9 @@ export default function TraderDetailsPage(){
         <section className="space-y-6">
           <div className="flex flex-wrap items-center justify-between gap-4">
             <PlayerBadge player={data.provider} />
+            {me && (
+              <Button variant="ghost" onClick={toggleFavorite}>{favorited ? '★ Saved' : '☆ Save'}</Button>
+            )}
           </div>
           {(data.provider.bio || data.provider.location || data.provider.website || data.provider.phone || data.provider.specialties) && (
             <div className="tx-card space-y-4 p-6">
@@ -310,27 +353,13 @@ function EmbeddedChat({ providerId, providerName, ensureConversation, conversati
   const [text, setText] = React.useState('')
   const ensureConv = React.useCallback(async () => {
     if (convId) return convId
-    if (typeof ensureConversation === 'function'){
-      const ensured = await ensureConversation()
-      if (ensured){
-        setConvId(ensured)
-        onConversation?.(ensured)
-        return ensured
-      }
-      return null
+    const ensured = typeof ensureConversation === 'function' ? await ensureConversation() : await ensureConversationWithProvider(providerId)
+    if (ensured){
+      setConvId(ensured)
+      onConversation?.(ensured)
     }
-    try{
-      const res = await fetchAuthed('/api/conversations')
-      if (res.ok){
-        const list = await res.json()
-        const found = (list||[]).find(c => (c.title||'').includes(providerName))
-        if (found){ setConvId(found.id); onConversation?.(found.id); return found.id }
-      }
-      const mk = await fetchAuthed('/api/conversations', { method:'POST', headers:{'Content-Type':'application/json'}, body: JSON.stringify({ kind:'CHAT', title:`Chat with ${providerName}`, providerId }) })
-      if (mk.ok){ const d = await mk.json(); setConvId(d.id); onConversation?.(d.id); return d.id }
-    }catch{}
-    return null
-  }, [convId, ensureConversation, onConversation, providerName])
+    return ensured || null
+  }, [convId, ensureConversation, onConversation, providerId])
 
   React.useEffect(() => {
     if (conversationId && conversationId !== convId){
@@ -338,20 +367,34 @@ function EmbeddedChat({ providerId, providerName, ensureConversation, conversati
     }
   }, [conversationId, convId])
 
-  const load = React.useCallback(async () => {
-    const id = await ensureConv()
-    if (!id) return
-    try{
-      const r = await fetchAuthed(`/api/conversations/${id}/messages`)
-      if (r.ok) setMessages(await r.json())
-    }catch{}
-  }, [ensureConv])
-
+  // Long-poll the change feed: each call returns only messages after the cursor, and waits server-side when there are none
   React.useEffect(() => {
-    load()
-    const iv = setInterval(load, 3000)
-    return () => clearInterval(iv)
-  }, [load, providerId, providerName])
+    let stopped = false
+    let cursor = null
+    setMessages([])
+    const run = async () => {
+      const id = await ensureConv()
+      if (!id) return
+      while (!stopped){
+        try{
+          const q = cursor ? `?cursor=${encodeURIComponent(cursor)}` : ''
+          const r = await fetchAuthed(`/api/conversations/${id}/messages/changes${q}`, { timeoutMs: 35000 })
+          if (!r.ok) throw new Error(String(r.status))
+          const d = await r.json()
+          if (stopped) return
+          cursor = d.cursor || cursor
+          if (d.messages?.length){
+            setMessages(prev => [...prev, ...d.messages])
+            fetchAuthed(`/api/conversations/${id}/read`, { method:'POST' }).catch(()=>{})
+          }
+        }catch{
+          await new Promise(resolve => setTimeout(resolve, 3000))
+        }
+      }
+    }
+    run()
+    return () => { stopped = true }
+  }, [ensureConv, providerId, providerName])
 
   const send = async (e) => {
     e?.preventDefault?.()
@@ -360,7 +403,7 @@ function EmbeddedChat({ providerId, providerName, ensureConversation, conversati
     if (!id) return
     try{
       const r = await fetchAuthed(`/api/conversations/${id}/messages`, { method:'POST', headers:{'Content-Type':'application/json'}, body: JSON.stringify({ content: text }) })
-      if (r.ok){ setText(''); load() }
+      if (r.ok) setText('')
     }catch{}
   }
 
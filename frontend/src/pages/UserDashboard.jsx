@@ -2,6 +2,7 @@ import React, { useCallback, useEffect, useMemo, useState } from 'react'
 import { useNavigate } from 'react-router-dom'
 import { fetchAuthed } from '../hooks/useAuth.js'
 import { ensureConversationWithProvider } from '../hooks/useConversations.js'
+import { fetchMyOrders } from '../hooks/useOrders.js'
 import { Section, Button, Badge } from '../components/ui.js'
 import { JourneyStepper } from '../components/JourneyStepper.jsx'
 import { getCustomerProfile, CUSTOMER_PROFILES_KEY, LEGACY_CUSTOMER_KEY } from '../utils/customerProfile.js'
@@ -51,13 +52,7 @@ export default function UserDashboard(){
   const loadOrders = useCallback(async () => {
     setOrdersLoading(true)
     try{
-      const res = await fetchAuthed('/api/orders/mine')
-      if (res.ok){
-        const data = await res.json()
-        setOrders(Array.isArray(data) ? data : [])
-      } else {
-        setOrders([])
-      }
+      setOrders(await fetchMyOrders() || [])
     }catch{
       setOrders([])
     }finally{
@@ -1,13 +1,15 @@
 import React from 'react'
 import { useParams, useNavigate } from 'react-router-dom'
 import { PlayerBadge, Pill, Badge, Button, currency } from '../components/ui.js'
-import { fetchAuthed } from '../hooks/useAuth.js'
+import { ensureConversationWithProvider } from '../hooks/useConversations.js'
 
 export default function ViewDetails(){
   const { id } = useParams()
   const navigate = useNavigate()
   const [data, setData] = React.useState(null)
   const [reviews, setReviews] = React.useState([])
+  const [reviewsNext, setReviewsNext] = React.useState(null)
+  const [reviewSummary, setReviewSummary] = React.useState(null)
   const [error, setError] = React.useState('')
 
   React.useEffect(() => {
@@ -34,20 +36,30 @@ export default function ViewDetails(){
           }catch{ setError('Could not load provider') }
         }
       }catch(e){ setError('Could not load provider') }
-      try{ const rv = await fetch(`/api/providers/${encodeURIComponent(String(id||''))}/reviews`); if (rv.ok) setReviews(await rv.json()) }catch{}
+      // Reviews come a page at a time (X-Next-Cursor); count and average come from the stored summary
+      try{
+        const rv = await fetch(`/api/providers/${encodeURIComponent(String(id||''))}/reviews`)
+        if (rv.ok){ setReviews(await rv.json()); setReviewsNext(rv.headers?.get?.('X-Next-Cursor') || null) }
+      }catch{}
+      try{ const rs = await fetch(`/api/providers/${encodeURIComponent(String(id||''))}/reviews/summary`); if (rs.ok) setReviewSummary(await rs.json()) }catch{}
     })()
   }, [id])
 
-  async function message(){
+  async function loadMoreReviews(){
+    if (!reviewsNext) return
     try{
-      const list = await (await fetchAuthed('/api/conversations')).json()
-      let conv = (list||[]).find(c => (c.title||'').includes(data?.provider?.name||''))
-      if (!conv){
-        const mk = await fetchAuthed('/api/conversations', { method:'POST', headers:{'Content-Type':'application/json'}, body: JSON.stringify({ kind:'CHAT', title:`Chat with ${data?.provider?.name||'Provider'}` }) })
-        if (mk.ok) conv = await mk.json()
-      }
-      if (conv){ navigate(`/messages/${conv.id}`) } else { navigate('/messages') }
-    }catch{ navigate('/messages') }
+      const rv = await fetch(`/api/providers/${encodeURIComponent(String(id||''))}/reviews?cursor=${encodeURIComponent(reviewsNext)}`)
+      if (!rv.ok) return
+      const more = await rv.json()
+      setReviews(prev => [...prev, ...(more||[])])
+      setReviewsNext(rv.headers?.get?.('X-Next-Cursor') || null)
+    }catch{}
+  }
+
+  // The server finds or creates the customer/provider conversation, so both sides are members
+  async function message(){
+    const convId = await ensureConversationWithProvider(data?.provider?.id || id)
+    navigate(convId ? `/messages/${convId}` : '/messages')
   }
 
   if (error) return <main className="max-w-6xl mx-auto px-4 py-6"><div className="text-sm text-red-600">{error}</div></main>
@@ -96,7 +108,12 @@ export default function ViewDetails(){
           </div>
 
           <div className="border rounded-2xl p-4 bg-white">
-            <div className="text-sm font-medium mb-2">Reviews</div>
+            <div className="flex items-center justify-between mb-2">
+              <div className="text-sm font-medium">Reviews</div>
+              {reviewSummary && reviewSummary.count > 0 && (
+                <div className="text-xs text-gray-600">⭐ {Number(reviewSummary.average||0).toFixed(1)} · {reviewSummary.count} review{reviewSummary.count === 1 ? '' : 's'}</div>
+              )}
+            </div>
             <div className="space-y-2">
               {reviews.map(r => (
                 <div key={r.id} className="border rounded-xl p-2">
@@ -105,6 +122,11 @@ export default function ViewDetails(){
                 </div>
               ))}
               {reviews.length===0 && <div className="text-sm text-gray-500">No reviews yet.</div>}
+              {reviewsNext && (
+                <button type="button" onClick={loadMoreReviews} className="text-xs text-gray-600 underline">
+                  Load more reviews{reviewSummary?.count > reviews.length ? ` (${reviewSummary.count - reviews.length} more)` : ''}
+                </button>
+              )}
             </div>
           </div>
         </section>